@@ -0,0 +1,260 @@
+package org.gicentre.tests.network;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.gicentre.utils.network.traer.physics.Integrator;
+import org.gicentre.utils.network.traer.physics.Particle;
+import org.gicentre.utils.network.traer.physics.ParticleSystem;
+
+// ****************************************************************************************
+/** Measures the speed of the traer physics engine without any display. Each scenario is 
+ *  built at a range of sizes and ticked with every integration method, first for a warm-up
+ *  period and then for a measurement period, reporting ticks per second and, where the JVM
+ *  supports it, the number of bytes allocated per tick. Scenarios are a cloth-like grid of 
+ *  springs, a sparse random graph of springs and repulsive attractions, and a cloud of 
+ *  particles acted on only by gravity and drag. Any combination of scenario names, particle 
+ *  counts, integration method names and <code>arrays</code> (to enable array storage) can be 
+ *  given as command line arguments to restrict the runs. For example:<br />
+ *  <code>java org.gicentre.tests.network.PhysicsBenchmark CLOTH 10000 VERLET arrays</code>
+ *  @author giCentre, City University London.
+ *  @version 1.0, 17th October, 2026.
+ */ 
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can 
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  
+ * See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+public class PhysicsBenchmark
+{
+	// ----------------------------- Object variables ------------------------------
+
+	private static final int[] DEFAULT_SIZES = {1000, 10000, 100000};
+	private static final long WARMUP_TIME = 1000;		// Warm-up period for each run in milliseconds.
+	private static final long MEASURE_TIME = 2000;		// Measurement period for each run in milliseconds.
+	private static final float DELTA_T = 0.1f;			// Time step small enough for all integrators to remain stable.
+
+	/** Lists the systems that can be benchmarked. */
+	public enum SCENARIO
+	{
+		/** Square grid of particles joined to their neighbours by springs and hung from two corners. */
+		CLOTH,
+		/** Random tree of springs in which each particle also repels four others. */
+		GRAPH,
+		/** Particles with random velocities acted on only by gravity and drag. */
+		CLOUD
+	}
+
+	// ------------------------------ Starter method -------------------------------
+
+	/** Runs the benchmarks and reports results on standard output.
+	 *  @param args Optional scenario names, particle counts, integration method names and 'arrays' to 
+	 *              restrict the benchmarks that are run.
+	 */
+	public static void main(String[] args)
+	{
+		boolean[] scenarios = new boolean[SCENARIO.values().length];
+		boolean[] methods = new boolean[Integrator.METHOD.values().length];
+		int[] sizes = new int[args.length];
+		int numSizes = 0;
+		boolean isAnyScenario = false, isAnyMethod = false, isArrayStorage = false;
+
+		for (String arg : args)
+		{
+			if (arg.equalsIgnoreCase("arrays"))
+			{
+				isArrayStorage = true;
+			}
+			else if (arg.matches("\\d+"))
+			{
+				sizes[numSizes++] = Integer.parseInt(arg);
+			}
+			else
+			{
+				try
+				{
+					scenarios[SCENARIO.valueOf(arg.toUpperCase()).ordinal()] = true;
+					isAnyScenario = true;
+				}
+				catch (IllegalArgumentException e)
+				{
+					try
+					{
+						methods[Integrator.METHOD.valueOf(arg.toUpperCase()).ordinal()] = true;
+						isAnyMethod = true;
+					}
+					catch (IllegalArgumentException e2)
+					{
+						System.err.println("Ignoring unknown argument '"+arg+"'.");
+					}
+				}
+			}
+		}
+		if (numSizes == 0)
+		{
+			sizes = DEFAULT_SIZES;
+			numSizes = sizes.length;
+		}
+
+		System.out.println("Scenario  Particles  Method           Ticks/s     ms/tick   Bytes/tick     MB/s");
+		for (SCENARIO scenario : SCENARIO.values())
+		{
+			if (isAnyScenario && !scenarios[scenario.ordinal()])
+			{
+				continue;
+			}
+			for (int s=0; s<numSizes; s++)
+			{
+				for (Integrator.METHOD method : Integrator.METHOD.values())
+				{
+					if (isAnyMethod && !methods[method.ordinal()])
+					{
+						continue;
+					}
+					ParticleSystem physics = build(scenario, sizes[s]);
+					physics.setIntegrator(method);
+					physics.setArrayStorage(isArrayStorage);
+					run(physics, scenario, sizes[s], method);
+				}
+			}
+		}
+	}
+
+	// ------------------------------ Private methods ------------------------------
+
+	/** Creates a particle system for the given scenario.
+	 *  @param scenario Type of system to create.
+	 *  @param n Approximate number of particles in the system.
+	 *  @return New particle system.
+	 */
+	private static ParticleSystem build(SCENARIO scenario, int n)
+	{
+		Random rand = new Random(n);
+		ParticleSystem physics;
+
+		switch (scenario)
+		{
+			case CLOTH:
+				physics = new ParticleSystem(0.1f, 0.01f);
+				int gridSize = Math.max(2, (int)Math.round(Math.sqrt(n)));
+				Particle[][] grid = new Particle[gridSize][gridSize];
+				for (int i=0; i<gridSize; i++)
+				{
+					for (int j=0; j<gridSize; j++)
+					{
+						grid[i][j] = physics.makeParticle(0.2f, j*10, i*10, 0);
+						if (j > 0)
+						{
+							physics.makeSpring(grid[i][j-1], grid[i][j], 0.2f, 0.1f, 10);
+						}
+						if (i > 0)
+						{
+							physics.makeSpring(grid[i-1][j], grid[i][j], 0.2f, 0.1f, 10);
+						}
+					}
+				}
+				grid[0][0].makeFixed();
+				grid[0][gridSize-1].makeFixed();
+				break;
+
+			case GRAPH:
+				physics = new ParticleSystem(0, 0.1f);
+				Particle[] nodes = new Particle[n];
+				for (int i=0; i<n; i++)
+				{
+					nodes[i] = physics.makeParticle(1, rand.nextFloat()*1000, rand.nextFloat()*1000, 0);
+					if (i > 0)
+					{
+						physics.makeSpring(nodes[rand.nextInt(i)], nodes[i], 0.1f, 0.1f, 20);
+					}
+				}
+				for (int i=0; i<n; i++)
+				{
+					for (int k=0; k<4; k++)
+					{
+						physics.makeAttraction(nodes[i], nodes[rand.nextInt(n)], -50, 5);
+					}
+				}
+				break;
+
+			default:
+				physics = new ParticleSystem(0.1f, 0.05f);
+				for (int i=0; i<n; i++)
+				{
+					Particle p = physics.makeParticle(1, rand.nextFloat()*1000, rand.nextFloat()*1000, rand.nextFloat()*1000);
+					p.velocity().set(rand.nextFloat()-0.5f, rand.nextFloat()-0.5f, rand.nextFloat()-0.5f);
+				}
+		}
+		physics.setDeltaT(DELTA_T);
+		return physics;
+	}
+
+	/** Ticks the given system for the warm-up and measurement periods and reports the results.
+	 *  @param physics Particle system to benchmark.
+	 *  @param scenario Type of system being benchmarked.
+	 *  @param n Requested number of particles.
+	 *  @param method Integration method used by the system.
+	 */
+	private static void run(ParticleSystem physics, SCENARIO scenario, int n, Integrator.METHOD method)
+	{
+		ticksFor(physics, WARMUP_TIME);
+		System.gc();
+
+		long startBytes = allocatedBytes();
+		long startTime = System.nanoTime();
+		long numTicks = ticksFor(physics, MEASURE_TIME);
+		long elapsed = System.nanoTime()-startTime;
+		long bytes = allocatedBytes()-startBytes;
+
+		double seconds = elapsed/1e9;
+		String allocation = (startBytes < 0) ? String.format("%12s %8s", "n/a", "n/a") : 
+		                     String.format("%12d %8.1f", bytes/numTicks, bytes/(1024*1024*seconds));
+		System.out.println(String.format("%-9s %9d  %-13s %10.1f %11.3f %s", 
+		                   scenario, Integer.valueOf(physics.getNumParticles()), method, Double.valueOf(numTicks/seconds), 
+		                   Double.valueOf(1000*seconds/numTicks), allocation));
+	}
+
+	/** Ticks the given particle system repeatedly for the given period, making at least one tick.
+	 *  @param physics Particle system to tick.
+	 *  @param period Time for which to tick the system in milliseconds.
+	 *  @return Number of ticks made.
+	 */
+	private static long ticksFor(ParticleSystem physics, long period)
+	{
+		long endTime = System.nanoTime() + period*1000000L;
+		long numTicks = 0;
+		do
+		{
+			physics.tick();
+			numTicks++;
+		}
+		while (System.nanoTime()-endTime < 0);
+		return numTicks;
+	}
+
+	/** Reports the number of bytes allocated by the current thread since it started. This relies on an 
+	 *  extension of the thread management bean provided by HotSpot based JVMs.
+	 *  @return Number of bytes allocated, or -1 if not supported by this JVM.
+	 */
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -32,6 +32,188 @@ import processing.core.PConstants;
 
 public class Ease 
 {
+    /** Lists the easing functions so that one can be chosen and stored, for example when scheduling
+     *  tweens with a {@link TweenScheduler}.
+     */
+    public enum Type
+    {
+        /** No easing, so that value changes at a constant rate. */
+        LINEAR
+        {
+            @Override
+            public float ease(float t)
+            {
+                return t;
+            }
+        },
+
+        /** Sinusoidal easing in. */
+        SIN_IN
+        {
+            @Override
+            public float ease(float t)
+            {
+                return sinIn(t);
+            }
+        },
+
+        /** Sinusoidal easing out. */
+        SIN_OUT
+        {
+            @Override
+            public float ease(float t)
+            {
+                return sinOut(t);
+            }
+        },
+
+        /** Sinusoidal easing in and out. */
+        SIN_BOTH
+        {
+            @Override
+            public float ease(float t)
+            {
+                return sinBoth(t);
+            }
+        },
+
+        /** Cubic easing in. */
+        CUBIC_IN
+        {
+            @Override
+            public float ease(float t)
+            {
+                return cubicIn(t);
+            }
+        },
+
+        /** Cubic easing out. */
+        CUBIC_OUT
+        {
+            @Override
+            public float ease(float t)
+            {
+                return cubicOut(t);
+            }
+        },
+
+        /** Cubic easing in and out. */
+        CUBIC_BOTH
+        {
+            @Override
+            public float ease(float t)
+            {
+                return cubicBoth(t);
+            }
+        },
+
+        /** Quartic easing in. */
+        QUARTIC_IN
+        {
+            @Override
+            public float ease(float t)
+            {
+                return quarticIn(t);
+            }
+        },
+
+        /** Quartic easing out. */
+        QUARTIC_OUT
+        {
+            @Override
+            public float ease(float t)
+            {
+                return quarticOut(t);
+            }
+        },
+
+        /** Quartic easing in and out. */
+        QUARTIC_BOTH
+        {
+            @Override
+            public float ease(float t)
+            {
+                return quarticBoth(t);
+            }
+        },
+
+        /** Quintic easing in. */
+        QUINTIC_IN
+        {
+            @Override
+            public float ease(float t)
+            {
+                return quinticIn(t);
+            }
+        },
+
+        /** Quintic easing out. */
+        QUINTIC_OUT
+        {
+            @Override
+            public float ease(float t)
+            {
+                return quinticOut(t);
+            }
+        },
+
+        /** Quintic easing in and out. */
+        QUINTIC_BOTH
+        {
+            @Override
+            public float ease(float t)
+            {
+                return quinticBoth(t);
+            }
+        },
+
+        /** Bouncing easing in. */
+        BOUNCE_IN
+        {
+            @Override
+            public float ease(float t)
+            {
+                return bounceIn(t);
+            }
+        },
+
+        /** Bouncing easing out. */
+        BOUNCE_OUT
+        {
+            @Override
+            public float ease(float t)
+            {
+                return bounceOut(t);
+            }
+        },
+
+        /** Elastic easing in. */
+        ELASTIC_IN
+        {
+            @Override
+            public float ease(float t)
+            {
+                return elasticIn(t);
+            }
+        },
+
+        /** Elastic easing out. */
+        ELASTIC_OUT
+        {
+            @Override
+            public float ease(float t)
+            {
+                return elasticOut(t);
+            }
+        };
+
+        /** Should provide the eased value at the given time step.
+         *  @param t Time value between 0-1.
+         *  @return Eased value at the given time step.
+         */
+        public abstract float ease(float t);
+    }
+    
     /** Private constructor to prevent inadvertent instantiation of this utility class 
      */
     private Ease()
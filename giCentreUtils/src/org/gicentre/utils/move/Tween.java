@@ -0,0 +1,188 @@
+package org.gicentre.utils.move;
+
+// *****************************************************************************************
+/** A single value that changes from a start to an end value over a given time using one of
+ *  the {@link Ease} functions. Tweens are made and advanced by a {@link TweenScheduler}.
+ *  @author giCentre, City University London.
+ *  @version 3.3.1, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can 
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  
+ * See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+public class Tween
+{
+	// ---------------------------- Object variables -----------------------------
+
+	private TweenScheduler scheduler;	// Scheduler that advances this tween.
+	private float start,end;			// Values at the start and end of the tween.
+	private long durationNanos;			// Time taken to move from the start to end value.
+	private long delayNanos;			// Time before the value starts to change.
+	private long elapsedNanos;			// Time since the tween was started.
+	private Ease.Type easing;			// Easing function used to interpolate values.
+
+	boolean isActive;					// Whether the tween is among those advanced by its scheduler.
+
+	// ------------------------------- Constructor ------------------------------- 
+
+	/** Do not use this constructor but instead create tweens with <code>TweenScheduler.makeTween()</code>.
+	 *  @param scheduler Scheduler that will advance the tween.
+	 *  @param start Value at the start of the tween.
+	 *  @param end Value at the end of the tween.
+	 *  @param durationMillis Duration of the tween in milliseconds.
+	 *  @param easing Easing function used to interpolate between the start and end values.
+	 */
+	Tween(TweenScheduler scheduler, float start, float end, float durationMillis, Ease.Type easing)
+	{
+		this.scheduler = scheduler;
+		this.start = start;
+		this.end = end;
+		this.easing = (easing == null) ? Ease.Type.LINEAR : easing;
+		setDuration(durationMillis);
+	}
+
+	// --------------------------------- Methods ---------------------------------
+
+	/** Reports the current value of the tween. This is the start value until any delay has passed, and
+	 *  the end value once the tween has finished.
+	 *  @return Current value of the tween.
+	 */
+	public float getValue()
+	{
+		return start + (end-start)*easing.ease(getProgress());
+	}
+
+	/** Reports the proportion of the tween's duration that has passed, before any easing is applied.
+	 *  @return Progress of the tween between 0 and 1.
+	 */
+	public float getProgress()
+	{
+		long t = elapsedNanos-delayNanos;
+		if (t <= 0)
+		{
+			return 0;
+		}
+		if (t >= durationNanos)
+		{
+			return 1;
+		}
+		return t/(float)durationNanos;
+	}
+
+	/** Reports whether the tween has reached its end value.
+	 *  @return True if the tween has finished.
+	 */
+	public boolean isFinished()
+	{
+		return elapsedNanos >= delayNanos+durationNanos;
+	}
+
+	/** Restarts the tween from its start value.
+	 */
+	public void restart()
+	{
+		elapsedNanos = 0;
+		scheduler.activate(this);
+	}
+
+	/** Starts a new tween from the current value to the given end value, using the same duration and easing.
+	 *  Any delay is not repeated. This allows a transition to be redirected smoothly while it is running.
+	 *  @param newEnd New value at the end of the tween.
+	 */
+	public void setTarget(float newEnd)
+	{
+		start = getValue();
+		end = newEnd;
+		elapsedNanos = delayNanos;
+		scheduler.activate(this);
+	}
+
+	/** Reports the value at the start of the tween.
+	 *  @return Start value.
+	 */
+	public float getStart()
+	{
+		return start;
+	}
+
+	/** Reports the value at the end of the tween.
+	 *  @return End value.
+	 */
+	public float getEnd()
+	{
+		return end;
+	}
+
+	/** Sets the time taken for the tween to move from its start to end value.
+	 *  @param durationMillis Duration in milliseconds. Values of 0 or less move to the end value immediately.
+	 */
+	public void setDuration(float durationMillis)
+	{
+		durationNanos = Math.max(0, (long)(durationMillis*1000000.0));
+	}
+
+	/** Reports the time taken for the tween to move from its start to end value.
+	 *  @return Duration in milliseconds.
+	 */
+	public float getDuration()
+	{
+		return durationNanos/1000000f;
+	}
+
+	/** Sets the time after the tween starts before its value begins to change.
+	 *  @param delayMillis Delay in milliseconds.
+	 */
+	public void setDelay(float delayMillis)
+	{
+		delayNanos = Math.max(0, (long)(delayMillis*1000000.0));
+	}
+
+	/** Reports the time after the tween starts before its value begins to change.
+	 *  @return Delay in milliseconds.
+	 */
+	public float getDelay()
+	{
+		return delayNanos/1000000f;
+	}
+
+	/** Sets the easing function used to interpolate between the start and end values.
+	 *  @param easing Easing function to use.
+	 */
+	public void setEasing(Ease.Type easing)
+	{
+		this.easing = (easing == null) ? Ease.Type.LINEAR : easing;
+	}
+
+	/** Reports the easing function used to interpolate between the start and end values.
+	 *  @return Easing function.
+	 */
+	public Ease.Type getEasing()
+	{
+		return easing;
+	}
+
+	// ----------------------------- Package methods -----------------------------
+
+	/** Advances the tween by the given elapsed time.
+	 *  @param nanos Time in nanoseconds by which to advance.
+	 *  @return True if the tween has finished.
+	 */
+	boolean advance(long nanos)
+	{
+		elapsedNanos = Math.min(elapsedNanos+nanos, delayNanos+durationNanos);
+		return isFinished();
+	}
+}
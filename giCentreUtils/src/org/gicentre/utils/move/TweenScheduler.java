@@ -0,0 +1,167 @@
+package org.gicentre.utils.move;
+
+import java.util.ArrayList;
+
+// *****************************************************************************************
+/** Advances a set of tweens by elapsed time. Each tween moves a value from a start to an end
+ *  over a given duration using one of the {@link Ease} functions. Because tweens advance by 
+ *  the time that has passed rather than by a fixed amount each frame, a transition lasts the
+ *  same time whatever the frame rate, so a sketch may lower its frame rate under load, or 
+ *  only draw frames when something changes, without altering its animations. Finished tweens
+ *  are no longer advanced until they are restarted or given a new end value.
+ *  @author giCentre, City University London.
+ *  @version 3.3.1, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can 
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  
+ * See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+public class TweenScheduler
+{
+	// ---------------------------- Object variables -----------------------------
+
+	private ArrayList<Tween> active;		// Tweens that have not yet finished.
+	private long lastUpdateNanos;			// Time of the last call to update().
+
+	// ------------------------------- Constructor ------------------------------- 
+
+	/** Creates a scheduler with no tweens.
+	 */
+	public TweenScheduler()
+	{
+		active = new ArrayList<Tween>();
+		lastUpdateNanos = System.nanoTime();
+	}
+
+	// --------------------------------- Methods ---------------------------------
+
+	/** Creates a tween that changes linearly from the given start to end value over the given duration.
+	 *  The tween starts immediately.
+	 *  @param start Value at the start of the tween.
+	 *  @param end Value at the end of the tween.
+	 *  @param durationMillis Duration of the tween in milliseconds.
+	 *  @return New tween advanced by this scheduler.
+	 */
+	public Tween makeTween(float start, float end, float durationMillis)
+	{
+		return makeTween(start, end, durationMillis, Ease.Type.LINEAR);
+	}
+
+	/** Creates a tween that changes from the given start to end value over the given duration using the
+	 *  given easing function. The tween starts immediately.
+	 *  @param start Value at the start of the tween.
+	 *  @param end Value at the end of the tween.
+	 *  @param durationMillis Duration of the tween in milliseconds.
+	 *  @param easing Easing function used to interpolate between the start and end values.
+	 *  @return New tween advanced by this scheduler.
+	 */
+	public Tween makeTween(float start, float end, float durationMillis, Ease.Type easing)
+	{
+		Tween tween = new Tween(this, start, end, durationMillis, easing);
+		activate(tween);
+		return tween;
+	}
+
+	/** Advances all unfinished tweens by the time elapsed since this method was last called. This would
+	 *  normally be called once at the start of a sketch's <code>draw()</code> method. If all tweens had 
+	 *  finished, time starts again from the moment a tween is made or restarted.
+	 */
+	public void update()
+	{
+		long now = System.nanoTime();
+		long elapsedNanos = now-lastUpdateNanos;
+		lastUpdateNanos = now;
+		update(elapsedNanos);
+	}
+
+	/** Advances all unfinished tweens by the given elapsed time.
+	 *  @param elapsedNanos Time in nanoseconds by which to advance the tweens.
+	 */
+	public void update(long elapsedNanos)
+	{
+		if (elapsedNanos <= 0)
+		{
+			return;
+		}
+
+		// Advance each tween, compacting those still running to the front of the list.
+		int numActive = active.size();
+		int numRunning = 0;
+		for (int i=0; i<numActive; i++)
+		{
+			Tween tween = active.get(i);
+			if (tween.advance(elapsedNanos))
+			{
+				tween.isActive = false;
+			}
+			else
+			{
+				active.set(numRunning++, tween);
+			}
+		}
+		for (int i=numActive-1; i>=numRunning; i--)
+		{
+			active.remove(i);
+		}
+	}
+
+	/** Reports whether any tween made by this scheduler has yet to finish. When this is false, nothing
+	 *  will change until a tween is made or restarted, so a sketch may call <code>noLoop()</code> until then.
+	 *  @return True if at least one tween is still running.
+	 */
+	public boolean isAnimating()
+	{
+		return !active.isEmpty();
+	}
+
+	/** Reports the number of tweens made by this scheduler that have yet to finish.
+	 *  @return Number of running tweens.
+	 */
+	public int getNumAnimating()
+	{
+		return active.size();
+	}
+
+	/** Stops all running tweens, leaving each at its current value.
+	 */
+	public void clear()
+	{
+		for (Tween tween : active)
+		{
+			tween.isActive = false;
+		}
+		active.clear();
+	}
+
+	// ----------------------------- Package methods -----------------------------
+
+	/** Adds the given tween to those advanced by <code>update()</code> if it is not already among them.
+	 *  @param tween Tween to advance.
+	 */
+	void activate(Tween tween)
+	{
+		if (!tween.isActive)
+		{
+			if (active.isEmpty())
+			{
+				// Do not count time spent idle when the sketch may not have been calling update().
+				lastUpdateNanos = System.nanoTime();
+			}
+			tween.isActive = true;
+			active.add(tween);
+		}
+	}
+}
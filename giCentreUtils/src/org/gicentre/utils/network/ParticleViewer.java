@@ -205,13 +205,12 @@ public class ParticleViewer<N extends Node, E extends Edge>
 		}
 
 		// We may have to remove existing force if it exists between these two nodes.
-		for (int i=0; i<physics.getNumAttractions(); i++)
+		for (TwoBodyForce f : physics.getConnections(p1))
 		{
-			Attraction a = physics.getAttraction(i);
-			if (((a.getOneEnd() == p1) && (a.getTheOtherEnd() == p2)) ||
-				((a.getOneEnd() == p2) && (a.getTheOtherEnd() == p1)))
+			Particle other = (f.getOneEnd() == p1) ? f.getTheOtherEnd() : f.getOneEnd();
+			if ((f instanceof Attraction) && (other == p2))
 			{
-				physics.removeAttraction(a);
+				physics.removeAttraction((Attraction)f);
 				break;
 			}
 		}
@@ -256,14 +255,12 @@ public class ParticleViewer<N extends Node, E extends Edge>
 		}
 
 		// We may have to remove existing spring if it exists between these two nodes.
-		for (int i=0; i<physics.getNumSprings(); i++)
+		for (TwoBodyForce f : physics.getConnections(p1))
 		{
-			Spring spring = physics.getSpring(i);
-			if ((((spring.getOneEnd() == p1) && (spring.getTheOtherEnd() == p2)) ||
-				((spring.getOneEnd() == p2) && (spring.getTheOtherEnd() == p1))) &&
-				(spring.strength() != EDGE_STRENGTH))
+			Particle other = (f.getOneEnd() == p1) ? f.getTheOtherEnd() : f.getOneEnd();
+			if ((f instanceof Spring) && (other == p2) && (((Spring)f).strength() != EDGE_STRENGTH))
 			{
-				physics.removeSpring(spring);
+				physics.removeSpring((Spring)f);
 				break;
 			}
 		}
@@ -0,0 +1,84 @@
+package org.gicentre.utils.network.traer.animation;
+
+//  *****************************************************************************************
+/** Base class for smoothers that can report when they have reached their targets, allowing
+ *  the {@link Animator} that made them to stop advancing them until a new target is set. 
+ *  Settled smoothers are left at their current values rather than being moved onto their 
+ *  targets. Smoothers can be advanced either by a frame at a time or by an elapsed time, 
+ *  where the smoothness gives the proportion of the distance to the target that remains 
+ *  after {@link Animator#REFERENCE_FRAME_NANOS}.
+ *  @author giCentre, City University London.
+ *  @version 17th October 2026.
+ */
+//  *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+abstract class AbstractSmoother implements Tickable
+{
+	// ----------------------------- Object variables ------------------------------
+
+	Animator animator;		// Animator that advances this smoother, or null if not made by an animator.
+	boolean isActive;		// Whether the smoother is among those currently advanced by its animator.
+
+	// ---------------------------------- Methods ----------------------------------
+
+	/** Should advance the smoother towards its target by the given elapsed time. Advancing by 
+	 *  {@link Animator#REFERENCE_FRAME_NANOS} is equivalent to calling <code>tick()</code>, so a 
+	 *  transition takes the same time regardless of the rate at which this method is called.
+	 *  @param elapsedNanos Time in nanoseconds since the smoother was last advanced.
+	 */
+	public abstract void tick(long elapsedNanos);
+
+	// ------------------------------ Package methods ------------------------------
+
+	/** Should report whether the smoother has effectively stopped moving, either because every value is 
+	 *  within the given distance of its target or because the last tick changed none of its values. This 
+	 *  is called immediately after the smoother has been ticked.
+	 *  @param tolerance Largest distance from a target at which a value is considered to have reached it.
+	 *  @return True if the smoother has settled on its targets.
+	 */
+	abstract boolean isSettled(float tolerance);
+
+	/** Ensures that this smoother is advanced by its animator. This should be called whenever a target
+	 *  changes.
+	 */
+	final void wake()
+	{
+		if ((animator != null) && !isActive)
+		{
+			animator.activate(this);
+		}
+	}
+
+	/** Reports the proportion of the distance to a target that remains after advancing a smoother with
+	 *  the given smoothness by the given elapsed time.
+	 *  @param smoothness Proportion of the distance remaining after one reference frame.
+	 *  @param elapsedNanos Elapsed time in nanoseconds.
+	 *  @return Proportion of the distance remaining after the elapsed time.
+	 */
+	static float getDecay(float smoothness, long elapsedNanos)
+	{
+		if (elapsedNanos <= 0)
+		{
+			return 1;
+		}
+		if (smoothness <= 0)
+		{
+			return 0;
+		}
+		return (float)Math.pow(smoothness, elapsedNanos/(double)Animator.REFERENCE_FRAME_NANOS);
+	}
+}
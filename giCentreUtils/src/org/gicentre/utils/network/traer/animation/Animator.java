@@ -1,11 +1,15 @@
 package org.gicentre.utils.network.traer.animation;
 
+import java.util.ArrayList;
 import java.util.Vector;
 
 //  *****************************************************************************************
 /** Class for controlling all the smoothers. It can be used to create smoothers and then call
  *  this class's <code>tick()</code> method inside a sketch's <code>draw()</code> to advance 
- *  the time for all smoothers.
+ *  the time for all smoothers. Only smoothers that are still moving are advanced. A smoother
+ *  stops being advanced once it is within the settle tolerance of its target, and starts again
+ *  when it is given a new target. <code>isAnimating()</code> reports whether any smoother is 
+ *  still moving, so a sketch can stop looping while nothing changes.
  *  @author Jeffrey Traer Bernstein with Minor Modifications by Jo Wood.
  *  @version 31st July 2012.
  */
@@ -21,7 +25,19 @@ public class Animator implements Tickable
 	// ----------------------------- Object variables ------------------------------
 
 	private Vector<Tickable> smoothers;
+	private ArrayList<AbstractSmoother> active;	// Smoothers that have not yet settled on their targets.
 	private float smoothness;
+	private float settleTolerance;
+	private long lastUpdateNanos;			// Time of the last call to update(), or 0 if not yet known.
+	
+	/** Default distance from a target within which a smoother is considered to have reached it.
+	 */
+	public static final float DEFAULT_SETTLE_TOLERANCE = 0.001f;
+	
+	/** Duration of the frame over which the smoothness is defined when smoothers are advanced by elapsed 
+	 *  time. This is one sixtieth of a second, Processing's default frame rate.
+	 */
+	public static final long REFERENCE_FRAME_NANOS = 1000000000L/60;
 	
 	// ------------------------------- Constructors --------------------------------
 	
@@ -34,6 +50,8 @@ public class Animator implements Tickable
 	{
 		this.smoothness = smoothness;
 		smoothers = new Vector<Tickable>();
+		active = new ArrayList<AbstractSmoother>();
+		settleTolerance = DEFAULT_SETTLE_TOLERANCE;
 	}
 
 	// ---------------------------------- Methods ----------------------------------
@@ -45,6 +63,7 @@ public class Animator implements Tickable
 	public final Smoother makeSmoother()
 	{
 		Smoother s = new Smoother(smoothness);
+		s.animator = this;
 		smoothers.add(s);
 		return s;
 	}
@@ -56,6 +75,7 @@ public class Animator implements Tickable
 	public final Smoother2D make2DSmoother()
 	{
 		Smoother2D s = new Smoother2D(smoothness);
+		s.animator = this;
 		smoothers.add(s);
 		return s;
 	}
@@ -67,19 +87,88 @@ public class Animator implements Tickable
 	public final Smoother3D make3DSmoother()
 	{
 		Smoother3D s = new Smoother3D(smoothness);
+		s.animator = this;
+		smoothers.add(s);
+		return s;
+	}
+
+	/** Adds a bank of smoothers that will be handled by this animator. A smoother bank advances many values 
+	 *  towards their targets together and is more efficient than making a separate smoother for each value.
+	 *  @param size Number of smoothers in the bank.
+	 *  @return The smoother bank that has been added to those handled by this animator.
+	 */
+	public final SmootherBank makeSmootherBank(int size)
+	{
+		SmootherBank s = new SmootherBank(size, smoothness);
+		s.animator = this;
 		smoothers.add(s);
 		return s;
 	}
 
-	/** Advances time for all smoothers that have been made by this animator. This method is normally 
-	 *  called from within the sketch wishing to smooth transitions.
+	/** Advances time for all smoothers made by this animator that have not yet settled on their targets. 
+	 *  This method is normally called from within the sketch wishing to smooth transitions.
 	 */
 	public final void tick()
 	{
-		for (Tickable t : smoothers)
-		{
-			t.tick();
-		}
+		advance(-1);
+	}
+	
+	/** Advances all smoothers made by this animator that have not yet settled on their targets by the given
+	 *  elapsed time. Unlike <code>tick()</code>, transitions take the same time regardless of frame rate.
+	 *  @param elapsedNanos Time in nanoseconds since the smoothers were last advanced.
+	 */
+	public final void tick(long elapsedNanos)
+	{
+		advance(Math.max(0, elapsedNanos));
+	}
+	
+	/** Advances all smoothers made by this animator that have not yet settled on their targets by the time
+	 *  elapsed since this method was last called. This can be called from a sketch's <code>draw()</code>
+	 *  in place of <code>tick()</code> so that transitions last the same time even if the frame rate drops
+	 *  or frames are only drawn on demand. If all smoothers had settled, time starts again from the moment
+	 *  a new target is set.
+	 */
+	public final void update()
+	{
+		long now = System.nanoTime();
+		long elapsedNanos = (lastUpdateNanos == 0) ? REFERENCE_FRAME_NANOS : now-lastUpdateNanos;
+		lastUpdateNanos = now;
+		advance(elapsedNanos);
+	}
+	
+	/** Reports whether any smoother made by this animator is still moving towards its target. When this
+	 *  is false, calling <code>tick()</code> will change nothing until a new target is set, so a sketch 
+	 *  may call <code>noLoop()</code> until then.
+	 *  @return True if at least one smoother has not yet settled on its target.
+	 */
+	public final boolean isAnimating()
+	{
+		return !active.isEmpty();
+	}
+	
+	/** Reports the number of smoothers made by this animator that are still moving towards their targets.
+	 *  @return Number of smoothers that will be advanced by the next call to <code>tick()</code>.
+	 */
+	public final int getNumAnimating()
+	{
+		return active.size();
+	}
+	
+	/** Sets the distance from a target within which a smoother is considered to have reached it and stops
+	 *  being advanced. The smoother is left at its current value rather than moved onto the target.
+	 *  @param tolerance New settle tolerance. A value of 0 advances smoothers until their values stop changing.
+	 */
+	public final void setSettleTolerance(float tolerance)
+	{
+		settleTolerance = Math.max(0, tolerance);
+	}
+	
+	/** Reports the distance from a target within which a smoother is considered to have reached it.
+	 *  @return Settle tolerance.
+	 */
+	public final float getSettleTolerance()
+	{
+		return settleTolerance;
 	}
 
 	/** Sets the smoothness of all smoothers that have been made by this animator.
@@ -94,4 +183,66 @@ public class Animator implements Tickable
 			t.setSmoothness(smoothness);
 		}
 	}
+	
+	// ------------------------------ Package methods ------------------------------
+	
+	/** Adds the given smoother to those advanced by <code>tick()</code> if it is not already among them.
+	 *  This is called by smoothers made by this animator when they are given a new target.
+	 *  @param s Smoother to advance.
+	 */
+	void activate(AbstractSmoother s)
+	{
+		if (!s.isActive)
+		{
+			if (active.isEmpty() && (lastUpdateNanos != 0))
+			{
+				// Do not count time spent idle when the sketch may not have been calling update().
+				lastUpdateNanos = System.nanoTime();
+			}
+			s.isActive = true;
+			active.add(s);
+		}
+	}
+	
+	// ------------------------------ Private methods ------------------------------
+	
+	/** Advances each active smoother, removing those that have settled on their targets.
+	 *  @param elapsedNanos Time in nanoseconds by which to advance, or negative to advance by a single tick.
+	 */
+	private void advance(long elapsedNanos)
+	{
+		if (elapsedNanos == 0)
+		{
+			// No time has passed, so nothing moves and nothing should be treated as having settled.
+			return;
+		}
+		
+		// Advance each active smoother, compacting those still moving to the front of the list.
+		int numActive = active.size();
+		int numMoving = 0;
+		for (int i=0; i<numActive; i++)
+		{
+			AbstractSmoother s = active.get(i);
+			if (elapsedNanos < 0)
+			{
+				s.tick();
+			}
+			else
+			{
+				s.tick(elapsedNanos);
+			}
+			if (s.isSettled(settleTolerance))
+			{
+				s.isActive = false;
+			}
+			else
+			{
+				active.set(numMoving++, s);
+			}
+		}
+		for (int i=numActive-1; i>=numMoving; i--)
+		{
+			active.remove(i);
+		}
+	}
 }
\ No newline at end of file
@@ -12,7 +12,7 @@ package org.gicentre.utils.network.traer.animation;
  * Jeff Traer. See http://web.archive.org/web/20060911111322/http://www.cs.princeton.edu/~traer/animation/
  * for an archive of the original animation package.
  */
-public class Smoother implements Tickable
+public class Smoother extends AbstractSmoother
 {
 
 	// ----------------------------- Object variables ------------------------------
@@ -21,6 +21,7 @@ public class Smoother implements Tickable
 	private float gain;
 	private float lastOutput;
 	private float input;
+	private boolean isChanging;		// Whether the last tick changed the output.
 
 	// ------------------------------- Constructors --------------------------------
 
@@ -64,7 +65,23 @@ public class Smoother implements Tickable
 	 */
 	public final void tick()
 	{
+		float previous = lastOutput;
 		lastOutput = gain * input - a * lastOutput;
+		isChanging = (lastOutput != previous);
+	}
+	
+	/** Advances the smoother towards its target by the given elapsed time. The smoothness is the proportion
+	 *  of the distance to the target remaining after {@link Animator#REFERENCE_FRAME_NANOS}, so advancing by
+	 *  that time gives the same result as <code>tick()</code>, and a transition lasts the same time whether
+	 *  the sketch draws frames quickly, slowly or irregularly.
+	 *  @param elapsedNanos Time in nanoseconds since the smoother was last advanced.
+	 */
+	public final void tick(long elapsedNanos)
+	{
+		float decay = getDecay(-a, elapsedNanos);
+		float previous = lastOutput;
+		lastOutput = (1.0F - decay) * input + decay * lastOutput;
+		isChanging = (lastOutput != previous);
 	}
 
 	/** Sets the target value aimed at by the smoother.
@@ -73,6 +90,7 @@ public class Smoother implements Tickable
 	public final void setTarget(float target)
 	{
 		input = target;
+		wake();
 	}
 	
 	/** Reports the target value aimed at by this smoother at a rate determined by the smoothness.
@@ -100,4 +118,16 @@ public class Smoother implements Tickable
 	{
 		return lastOutput;
 	}
+	
+	// ------------------------------ Package methods ------------------------------
+
+	/** Reports whether the smoother has effectively stopped moving, either because its value is within
+	 *  the given distance of its target or because the last tick did not change it.
+	 *  @param tolerance Largest distance from the target at which the value is considered to have reached it.
+	 *  @return True if the smoother has settled on its target.
+	 */
+	boolean isSettled(float tolerance)
+	{
+		return !isChanging || (Math.abs(input - lastOutput) <= tolerance);
+	}
 }
\ No newline at end of file
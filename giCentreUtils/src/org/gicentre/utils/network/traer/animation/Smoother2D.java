@@ -13,7 +13,7 @@ package org.gicentre.utils.network.traer.animation;
  * Jeff Traer. See http://web.archive.org/web/20060911111322/http://www.cs.princeton.edu/~traer/animation/
  * for an archive of the original animation package.
  */
-public class Smoother2D implements Tickable
+public class Smoother2D extends AbstractSmoother
 {
 	// ----------------------------- Object variables ------------------------------
 
@@ -66,6 +66,15 @@ public class Smoother2D implements Tickable
 		y.tick();
 	}
 	
+	/** Advances the smoother towards its targets by the given elapsed time rather than by a single frame.
+	 *  @param elapsedNanos Time in nanoseconds since the smoother was last advanced.
+	 */
+	public final void tick(long elapsedNanos)
+	{
+		x.tick(elapsedNanos);
+		y.tick(elapsedNanos);
+	}
+	
 	/** Move the smoother to the given values immediately regardless of the smoothness value.
 	 *  @param valueX New x target value to jump to.
 	 *  @param valueY New y target value to jump to.
@@ -100,6 +109,7 @@ public class Smoother2D implements Tickable
 	{
 		x.setTarget(targetX);
 		y.setTarget(targetY);
+		wake();
 	}
 	
 	/** Sets the target x value aimed at by the smoother.
@@ -108,6 +118,7 @@ public class Smoother2D implements Tickable
 	public final void setXTarget(float targetX)
 	{
 		x.setTarget(targetX);
+		wake();
 	}
 
 	/** Sets the target y value aimed at by the smoother.
@@ -116,6 +127,7 @@ public class Smoother2D implements Tickable
 	public final void setYTarget(float targetY)
 	{
 		y.setTarget(targetY);
+		wake();
 	}
 
 	/** Reports the target x value aimed at by this smoother at a rate determined by the smoothness.
@@ -171,4 +183,16 @@ public class Smoother2D implements Tickable
 	{
 		return y.getValue();
 	}
+	
+	// ------------------------------ Package methods ------------------------------
+
+	/** Reports whether the smoother has effectively stopped moving, with each of its values either within
+	 *  the given distance of its target or unchanged by the last tick.
+	 *  @param tolerance Largest distance from a target at which a value is considered to have reached it.
+	 *  @return True if the smoother has settled on its targets.
+	 */
+	boolean isSettled(float tolerance)
+	{
+		return x.isSettled(tolerance) && y.isSettled(tolerance);
+	}
 }
\ No newline at end of file
@@ -13,7 +13,7 @@ package org.gicentre.utils.network.traer.animation;
  * Jeff Traer. See http://web.archive.org/web/20060911111322/http://www.cs.princeton.edu/~traer/animation/
  * for an archive of the original animation package.
  */
-public class Smoother3D implements Tickable
+public class Smoother3D extends AbstractSmoother
 {
 	// ----------------------------- Object variables ------------------------------
 
@@ -70,6 +70,16 @@ public class Smoother3D implements Tickable
 		y.tick();
 		z.tick();
 	}
+	
+	/** Advances the smoother towards its targets by the given elapsed time rather than by a single frame.
+	 *  @param elapsedNanos Time in nanoseconds since the smoother was last advanced.
+	 */
+	public final void tick(long elapsedNanos)
+	{
+		x.tick(elapsedNanos);
+		y.tick(elapsedNanos);
+		z.tick(elapsedNanos);
+	}
 
 	/** Sets the target x value aimed at by the smoother.
 	 *  @param targetX X target value aimed at by the smoother.
@@ -77,6 +87,7 @@ public class Smoother3D implements Tickable
 	public final void setXTarget(float targetX)
 	{
 		x.setTarget(targetX);
+		wake();
 	}
 
 	/** Sets the target y value aimed at by the smoother.
@@ -85,6 +96,7 @@ public class Smoother3D implements Tickable
 	public final void setYTarget(float targetY)
 	{
 		y.setTarget(targetY);
+		wake();
 	}
 
 	/** Sets the target z value aimed at by the smoother.
@@ -93,6 +105,7 @@ public class Smoother3D implements Tickable
 	public final void setZTarget(float targetZ)
 	{
 		z.setTarget(targetZ);
+		wake();
 	}
 
 	/** Reports the target x value aimed at by this smoother at a rate determined by the smoothness.
@@ -129,6 +142,7 @@ public class Smoother3D implements Tickable
 		x.setTarget(targetX);
 		y.setTarget(targetY);
 		z.setTarget(targetZ);
+		wake();
 	}
 
 	/** Move the smoother to the given values immediately regardless of the smoothness value.
@@ -223,4 +237,16 @@ public class Smoother3D implements Tickable
 	{
 		return z.getValue();
 	}
+	
+	// ------------------------------ Package methods ------------------------------
+
+	/** Reports whether the smoother has effectively stopped moving, with each of its values either within
+	 *  the given distance of its target or unchanged by the last tick.
+	 *  @param tolerance Largest distance from a target at which a value is considered to have reached it.
+	 *  @return True if the smoother has settled on its targets.
+	 */
+	boolean isSettled(float tolerance)
+	{
+		return x.isSettled(tolerance) && y.isSettled(tolerance) && z.isSettled(tolerance);
+	}
 }
\ No newline at end of file
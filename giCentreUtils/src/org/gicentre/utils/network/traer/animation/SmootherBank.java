@@ -0,0 +1,322 @@
+package org.gicentre.utils.network.traer.animation;
+
+import java.util.Arrays;
+
+//  *****************************************************************************************
+/** A bank of smoothers sharing a single smoothness, each identified by its position in the 
+ *  bank. Current and target values are held in primitive arrays and all are advanced towards 
+ *  their targets in a single loop, so animating many thousands of values, such as the positions
+ *  of map symbols, needs no per-value objects or method calls. Each value behaves exactly as a 
+ *  {@link Smoother} with the same smoothness would. Two or three values can be smoothed together
+ *  by using one bank for each coordinate.
+ *  @author giCentre, City University London.
+ *  @version 17th October 2026.
+ */
+//  *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class SmootherBank extends AbstractSmoother
+{
+	// ----------------------------- Object variables ------------------------------
+
+	private float a;
+	private float gain;
+	private float[] values;
+	private float[] targets;
+	private int size;
+	private float maxDistance;		// Upper bound on the distance of any value from its target.
+
+	// ------------------------------- Constructors --------------------------------
+
+	/** Creates a bank of the given number of smoothers with the given smoothness, all starting at 0.
+	 *  @param size Number of smoothers in the bank.
+	 *  @param smoothness The smoothness of the transition towards a target. It is scaled  between 
+	 *                    0 and 1. A value of 0 has abrupt changes, 1 is very smooth. A value of
+	 *                    0.9 gives nice workable smoothness for typical animations.
+	 *  @throws IllegalArgumentException if the size is negative.
+	 */
+	public SmootherBank(int size, float smoothness) throws IllegalArgumentException
+	{
+		if (size < 0)
+		{
+			throw new IllegalArgumentException("Smoother bank size cannot be negative.");
+		}
+		setSmoothness(smoothness);
+		this.size = size;
+		values = new float[size];
+		targets = new float[size];
+	}
+
+	/** Creates a bank of smoothers with the given smoothness starting at the given values. There is
+	 *  one smoother for each start value.
+	 *  @param smoothness The smoothness of the transition towards a target. It is scaled  between 
+	 *                    0 and 1. A value of 0 has abrupt changes, 1 is very smooth. A value of
+	 *                    0.9 gives nice workable smoothness for typical animations.
+	 *  @param start Start values that will move towards their targets.
+	 */
+	public SmootherBank(float smoothness, float[] start)
+	{
+		this(start.length, smoothness);
+		setValues(start);
+	}
+
+	// ---------------------------------- Methods ----------------------------------
+
+	/** Sets the smoothness value that determines the rate of transition of all smoothers in the bank.
+	 *  @param smoothness The smoothness of the transition towards a target. It is scaled  between 
+	 *                    0 and 1. A value of 0 has abrupt changes, 1 is very smooth. A value of
+	 *                    0.9 gives nice workable smoothness for typical animations.
+	 */
+	public final void setSmoothness(float smoothness)
+	{
+		a = -smoothness;
+		gain = 1.0F + a;
+	}
+
+	/** Advances the time used by all smoothers in the bank to move towards their targets.
+	 */
+	public final void tick()
+	{
+		float[] v = values;
+		float[] t = targets;
+		float g = gain;
+		float pole = a;
+		for (int i=0; i<size; i++)
+		{
+			v[i] = g*t[i] - pole*v[i];
+		}
+		
+		// Each tick scales the distance of every value from its target by the smoothness.
+		maxDistance *= Math.abs(pole);
+	}
+
+	/** Advances all smoothers in the bank towards their targets by the given elapsed time. The 
+	 *  proportion of each distance remaining is calculated once for the whole bank.
+	 *  @param elapsedNanos Time in nanoseconds since the bank was last advanced.
+	 */
+	public final void tick(long elapsedNanos)
+	{
+		float[] v = values;
+		float[] t = targets;
+		float decay = getDecay(-a, elapsedNanos);
+		float g = 1.0F - decay;
+		for (int i=0; i<size; i++)
+		{
+			v[i] = g*t[i] + decay*v[i];
+		}
+		maxDistance *= decay;
+	}
+
+	/** Reports the number of smoothers in the bank.
+	 *  @return Number of smoothers.
+	 */
+	public final int size()
+	{
+		return size;
+	}
+
+	/** Changes the number of smoothers in the bank. Existing smoothers keep their values and targets;
+	 *  any new ones start at rest at 0.
+	 *  @param newSize New number of smoothers in the bank.
+	 *  @throws IllegalArgumentException if the size is negative.
+	 */
+	public final void setSize(int newSize) throws IllegalArgumentException
+	{
+		if (newSize < 0)
+		{
+			throw new IllegalArgumentException("Smoother bank size cannot be negative.");
+		}
+		if (newSize > values.length)
+		{
+			int capacity = Math.max(newSize, 2*values.length);
+			values = Arrays.copyOf(values, capacity);
+			targets = Arrays.copyOf(targets, capacity);
+		}
+		else if (newSize < size)
+		{
+			Arrays.fill(values, newSize, size, 0);
+			Arrays.fill(targets, newSize, size, 0);
+		}
+		size = newSize;
+	}
+
+	/** Sets the target value aimed at by the given smoother.
+	 *  @param i Position of the smoother in the bank.
+	 *  @param target Target value aimed at by the smoother.
+	 */
+	public final void setTarget(int i, float target)
+	{
+		checkIndex(i);
+		targets[i] = target;
+		maxDistance = Math.max(maxDistance, Math.abs(target-values[i]));
+		wake();
+	}
+
+	/** Reports the target value aimed at by the given smoother.
+	 *  @param i Position of the smoother in the bank.
+	 *  @return Target of the smoother.
+	 */
+	public final float getTarget(int i)
+	{
+		checkIndex(i);
+		return targets[i];
+	}
+
+	/** Move the given smoother to the given value immediately regardless of the smoothness value.
+	 *  @param i Position of the smoother in the bank.
+	 *  @param x New target value to jump to.
+	 */
+	public final void setValue(int i, float x)
+	{
+		checkIndex(i);
+		targets[i] = x;
+		values[i] = x;
+	}
+
+	/** Reports the current value of the given smoother. This will be somewhere between the source and
+	 *  target depending on the smoothness and number of times <code>tick()</code> has been called.
+	 *  @param i Position of the smoother in the bank.
+	 *  @return Current value of the smoother.
+	 */
+	public final float getValue(int i)
+	{
+		checkIndex(i);
+		return values[i];
+	}
+
+	/** Sets the targets of all smoothers in the bank from the given array, which must hold one target 
+	 *  for each smoother.
+	 *  @param newTargets Targets to aim at, in bank order.
+	 *  @throws IllegalArgumentException if the array does not have one value for each smoother.
+	 */
+	public final void setTargets(float[] newTargets) throws IllegalArgumentException
+	{
+		checkLength(newTargets);
+		setTargets(newTargets, 0, 0, size);
+	}
+
+	/** Sets the targets of a contiguous range of smoothers from the given array.
+	 *  @param newTargets Array holding the targets to aim at.
+	 *  @param srcOffset Position in the array of the first target to use.
+	 *  @param start Position in the bank of the first smoother to update.
+	 *  @param length Number of smoothers to update.
+	 *  @throws IndexOutOfBoundsException if the range lies outside the array or the bank.
+	 */
+	public final void setTargets(float[] newTargets, int srcOffset, int start, int length) throws IndexOutOfBoundsException
+	{
+		checkRange(start, length);
+		System.arraycopy(newTargets, srcOffset, targets, start, length);
+		float distance = maxDistance;
+		for (int i=start; i<start+length; i++)
+		{
+			distance = Math.max(distance, Math.abs(targets[i]-values[i]));
+		}
+		maxDistance = distance;
+		wake();
+	}
+
+	/** Moves all smoothers in the bank immediately to the values in the given array, which must hold
+	 *  one value for each smoother.
+	 *  @param newValues Values to jump to, in bank order.
+	 *  @throws IllegalArgumentException if the array does not have one value for each smoother.
+	 */
+	public final void setValues(float[] newValues) throws IllegalArgumentException
+	{
+		checkLength(newValues);
+		System.arraycopy(newValues, 0, values, 0, size);
+		System.arraycopy(newValues, 0, targets, 0, size);
+		maxDistance = 0;
+	}
+
+	/** Copies the current values of all smoothers in the bank into the given array. If the array is 
+	 *  null or too small, a new one is created. Passing the same array each frame avoids creating
+	 *  any new objects.
+	 *  @param dest Array into which values are copied, or null.
+	 *  @return Array holding the current values in bank order.
+	 */
+	public final float[] getValues(float[] dest)
+	{
+		float[] out = ((dest == null) || (dest.length < size)) ? new float[size] : dest;
+		System.arraycopy(values, 0, out, 0, size);
+		return out;
+	}
+
+	/** Copies the targets of all smoothers in the bank into the given array. If the array is null or
+	 *  too small, a new one is created.
+	 *  @param dest Array into which targets are copied, or null.
+	 *  @return Array holding the targets in bank order.
+	 */
+	public final float[] getTargets(float[] dest)
+	{
+		float[] out = ((dest == null) || (dest.length < size)) ? new float[size] : dest;
+		System.arraycopy(targets, 0, out, 0, size);
+		return out;
+	}
+
+	// ------------------------------ Package methods ------------------------------
+
+	/** Reports whether the bank has effectively stopped moving, either because every value is within the
+	 *  given distance of its target or because the smoothness prevents values from changing. Rather than
+	 *  testing every value, this uses the largest distance from a target when targets were last set, 
+	 *  reduced by the smoothness at each tick.
+	 *  @param tolerance Largest distance from a target at which a value is considered to have reached it.
+	 *  @return True if every smoother in the bank has settled on its target.
+	 */
+	boolean isSettled(float tolerance)
+	{
+		// Subnormal distances stop shrinking when scaled, so are treated as zero.
+		return (gain == 0) || (maxDistance <= Math.max(tolerance, Float.MIN_NORMAL));
+	}
+
+	// ------------------------------ Private methods ------------------------------
+
+	/** Checks that the given position refers to a smoother in the bank.
+	 *  @param i Position to check.
+	 *  @throws IndexOutOfBoundsException if there is no smoother at the given position.
+	 */
+	private void checkIndex(int i) throws IndexOutOfBoundsException
+	{
+		if ((i < 0) || (i >= size))
+		{
+			throw new IndexOutOfBoundsException("No smoother at position "+i+"; bank has "+size+" smoothers.");
+		}
+	}
+
+	/** Checks that the given range of positions lies within the bank.
+	 *  @param start First position in the range.
+	 *  @param length Number of positions in the range.
+	 *  @throws IndexOutOfBoundsException if the range lies outside the bank.
+	 */
+	private void checkRange(int start, int length) throws IndexOutOfBoundsException
+	{
+		if ((start < 0) || (length < 0) || (start+length > size))
+		{
+			throw new IndexOutOfBoundsException("Range "+start+" to "+(start+length)+" lies outside bank of "+size+" smoothers.");
+		}
+	}
+
+	/** Checks that the given array has one value for each smoother in the bank.
+	 *  @param array Array to check.
+	 *  @throws IllegalArgumentException if the array has the wrong length.
+	 */
+	private void checkLength(float[] array) throws IllegalArgumentException
+	{
+		if (array.length != size)
+		{
+			throw new IllegalArgumentException("Array of "+array.length+" values does not match bank of "+size+" smoothers.");
+		}
+	}
+}
@@ -25,6 +25,7 @@ public abstract class AbstractForce implements Force
 	// the sub-classes should use the methods in this class (e.g., {@link #turnOn()}), hence this field is private and cannot be accessed directly.
 
 	private boolean isOn;
+	int numChanges;			// Number of changes made to this force that may alter the forces it applies.
 	
 	// ------------------------------- Constructors --------------------------------
 	
@@ -69,6 +70,7 @@ public abstract class AbstractForce implements Force
 	public AbstractForce turnOn(@SuppressWarnings("hiding") boolean isOn) 
 	{
 		this.isOn = isOn;
+		numChanges++;
 		return this; 
 	}
 
@@ -87,4 +89,24 @@ public abstract class AbstractForce implements Force
 	{ 
 		return !isOn(); 
 	}
-}
\ No newline at end of file
+	
+	// ------------------------------ Package methods ------------------------------
+	
+	/** Reports whether this force can be applied directly to particles held in primitive array storage
+	 *  with {@link #applyToArrays(ParticleArrays)}. Forces that cannot are applied to the particle objects.
+	 *  @return True if this force can be applied to array storage.
+	 */
+	boolean isArrayForce()
+	{
+		return false;
+	}
+	
+	/** Applies this force to particles held in primitive array storage. Only called if {@link #isArrayForce()} 
+	 *  reports true, so by default this does nothing. Forces that report true should override it.
+	 *  @param a Array storage of the particles.
+	 */
+	void applyToArrays(ParticleArrays a)
+	{
+		// Forces that cannot be applied to array storage are applied to the particle objects instead.
+	}
+}
@@ -0,0 +1,468 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.nio.ByteBuffer;
+
+// *****************************************************************************************
+/** Class capable of performing adaptive Runge Kutta integration using the Dormand-Prince 
+ *  embedded 5th and 4th order method. Each call to {@link #step(float)} is divided into as 
+ *  many internal sub-steps as are needed to keep the estimated local error of every particle
+ *  position and velocity within a tolerance. Sub-steps shrink while the system is moving
+ *  rapidly and grow again as it comes to rest, so this integrator is best used with a larger
+ *  time step than would be stable with the fixed step integrators. The most recent sub-step 
+ *  size is carried over to the next call so that an already settled system is advanced with
+ *  a single sub-step.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class AdaptiveRungeKuttaIntegrator extends Integrator
+{
+	// --------------------------- Class and object variables -----------------------------
+
+	/** Default tolerance of the local error of each particle's position and velocity. */
+	public static final float DEFAULT_TOLERANCE = 0.001f;
+
+	private static final int NUM_STAGES = 7;
+	private static final float MIN_STEP_FRACTION = 1/1024f;	// Smallest sub-step as a proportion of the time step.
+	private static final float SAFETY = 0.9f;				// Scaling applied to the optimal new sub-step size.
+	private static final float MIN_SCALE = 0.2f;			// Largest reduction in sub-step size after a single sub-step.
+	private static final float MAX_SCALE = 5;				// Largest increase in sub-step size after a single sub-step.
+
+	// Dormand-Prince coefficients. The last row gives the 5th order solution, which is also
+	// the point at which the final stage is evaluated so can be reused as the first stage of 
+	// the next sub-step.
+	private static final float[][] A = {
+		{},
+		{1/5f},
+		{3/40f, 9/40f},
+		{44/45f, -56/15f, 32/9f},
+		{19372/6561f, -25360/2187f, 64448/6561f, -212/729f},
+		{9017/3168f, -355/33f, 46732/5247f, 49/176f, -5103/18656f},
+		{35/384f, 0, 500/1113f, 125/192f, -2187/6784f, 11/84f}};
+
+	// Difference between the 5th and 4th order weights, used to estimate the local error.
+	private static final float[] E = {71/57600f, 0, -71/16695f, 71/1920f, -17253/339200f, 22/525f, -1/40f};
+
+	private float tolerance;				// Allowable local error in each component of position and velocity.
+	private float stepSize;					// Size of the next sub-step, or 0 if not yet known.
+	private int numEvaluations;				// Number of force evaluations made by the last call to step().
+	private float[] ox,oy,oz;				// Positions at the start of the sub-step.
+	private float[] ovx,ovy,ovz;			// Velocities at the start of the sub-step.
+	private float[][] kx,ky,kz;				// Velocity at each stage.
+	private float[][] kvx,kvy,kvz;			// Acceleration at each stage.
+	private StageUpdate update;				// Update applied to ranges of particles at each stage.
+
+	// ---------------------------------- Constructors ------------------------------------
+
+	/** Sets up the integrator to be used by the given particle system with the default tolerance.
+	 *  @param s Particle system upon which to perform the integration.
+	 */
+	public AdaptiveRungeKuttaIntegrator(ParticleSystem s)
+	{
+		this(s, DEFAULT_TOLERANCE);
+	}
+
+	/** Sets up the integrator to be used by the given particle system with the given tolerance.
+	 *  @param s Particle system upon which to perform the integration.
+	 *  @param tolerance Allowable local error in each particle's position and velocity per sub-step.
+	 *  @throws IllegalArgumentException if the tolerance is not positive.
+	 */
+	public AdaptiveRungeKuttaIntegrator(ParticleSystem s, float tolerance) throws IllegalArgumentException
+	{
+		super(s);
+		setTolerance(tolerance);
+		kx  = new float[NUM_STAGES][];
+		ky  = new float[NUM_STAGES][];
+		kz  = new float[NUM_STAGES][];
+		kvx = new float[NUM_STAGES][];
+		kvy = new float[NUM_STAGES][];
+		kvz = new float[NUM_STAGES][];
+		update = new StageUpdate();
+	}
+
+	// ------------------------------------ Methods ---------------------------------------
+
+	/** Advances the particles' positions and velocities over the given time step using as many sub-steps
+	 *  as are needed to meet the tolerance.
+	 *  @param deltaT Time step over which to update the particles.
+	 *  @return The integrator that updates the system.
+	 */
+	public AdaptiveRungeKuttaIntegrator step(float deltaT)
+	{
+		ParticleArrays a = loadArrays();
+
+		int n = a.size;
+		if ((ox == null) || (ox.length < n))
+		{
+			allocate(Math.max(n, (ox == null) ? 16 : 2*ox.length));
+		}
+
+		float minStep = deltaT*MIN_STEP_FRACTION;
+		if ((stepSize <= 0) || (stepSize > deltaT))
+		{
+			stepSize = deltaT;
+		}
+
+		update.a = a;
+		numEvaluations = 0;
+		evaluate(a, 0);
+
+		float remaining = deltaT;
+		while (remaining > 0)
+		{
+			boolean isLast = (stepSize >= remaining);
+			float h = isLast ? remaining : stepSize;
+			update.h = h;
+
+			update.mode = StageUpdate.SAVE;
+			s.updateArrays(n, update);
+			for (int stage=1; stage<NUM_STAGES; stage++)
+			{
+				update.mode = StageUpdate.COMBINE;
+				update.stage = stage;
+				s.updateArrays(n, update);
+				evaluate(a, stage);
+			}
+
+			float error = errorRatio(a, h);
+			float scale = (error == 0) ? MAX_SCALE : Math.min(MAX_SCALE, Math.max(MIN_SCALE, SAFETY*(float)Math.pow(error, -0.2)));
+
+			if ((error <= 1) || (h <= minStep))
+			{
+				// Accept the sub-step and reuse the final stage as the first stage of the next one.
+				update.mode = StageUpdate.ACCEPT;
+				s.updateArrays(n, update);
+				swapStages(0, NUM_STAGES-1);
+				remaining = isLast ? 0 : remaining-h;
+				stepSize = isLast ? Math.max(stepSize, h*scale) : h*scale;
+			}
+			else
+			{
+				// Reject the sub-step and try again with a smaller one.
+				update.mode = StageUpdate.RESTORE;
+				s.updateArrays(n, update);
+				stepSize = Math.max(minStep, h*scale);
+			}
+		}
+		update.a = null;
+
+		a.clearForces();
+		storeArrays(a);
+		return this;
+	}
+
+	/** Sets the allowable local error in each component of a particle's position and velocity per sub-step.
+	 *  Errors are measured relative to the magnitude of each component plus one, so the tolerance acts as an
+	 *  absolute limit for small values and a relative limit for large ones.
+	 *  @param tolerance New tolerance; must be positive.
+	 *  @return This integrator with its new tolerance.
+	 *  @throws IllegalArgumentException if the tolerance is not positive.
+	 */
+	public AdaptiveRungeKuttaIntegrator setTolerance(float tolerance) throws IllegalArgumentException
+	{
+		if (tolerance <= 0)
+		{
+			throw new IllegalArgumentException("Tolerance is "+tolerance+"; it must be greater than 0.");
+		}
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/** Reports the allowable local error in each component of a particle's position and velocity per sub-step.
+	 *  @return Tolerance used when choosing the size of each sub-step.
+	 */
+	public float getTolerance()
+	{
+		return tolerance;
+	}
+
+	/** Reports the size of the next internal sub-step. This will be no larger than the most recent time step.
+	 *  @return Size of the next sub-step or 0 if the integrator has not yet been stepped.
+	 */
+	public float getStepSize()
+	{
+		return stepSize;
+	}
+
+	/** Reports the number of times the forces in the particle system were evaluated during the most recent 
+	 *  call to {@link #step(float)}. Each sub-step requires six evaluations.
+	 *  @return Number of force evaluations in the last step.
+	 */
+	public int getNumEvaluations()
+	{
+		return numEvaluations;
+	}
+
+	// -------------------------------- Package methods -----------------------------------
+
+	/** Reports the number of bytes needed to save the tolerance and the size of the next sub-step.
+	 *  @param a Arrays holding the particles of the system being saved.
+	 *  @return Number of bytes written by {@link #writeState(ByteBuffer, ParticleArrays)}.
+	 */
+	@Override
+	int getStateSize(ParticleArrays a)
+	{
+		return 8;
+	}
+
+	/** Writes the tolerance and the size of the next sub-step so that a restored system chooses the 
+	 *  same sub-steps as the original would have done.
+	 *  @param out Buffer into which the state is written.
+	 *  @param a Arrays holding the particles of the system being saved.
+	 */
+	@Override
+	void writeState(ByteBuffer out, ParticleArrays a)
+	{
+		out.putFloat(tolerance).putFloat(stepSize);
+	}
+
+	/** Reads the tolerance and sub-step size previously written by {@link #writeState(ByteBuffer, ParticleArrays)}.
+	 *  @param in Buffer from which the state is read.
+	 *  @param a Arrays holding the particles of the restored system.
+	 */
+	@Override
+	void readState(ByteBuffer in, ParticleArrays a)
+	{
+		setTolerance(in.getFloat());
+		stepSize = in.getFloat();
+	}
+
+	// -------------------------------- Private methods -----------------------------------
+
+	/** Applies the forces of the particle system at the state currently held in the given arrays and 
+	 *  records the resulting velocities and accelerations for the given stage.
+	 *  @param a Arrays holding the state of the particles.
+	 *  @param stage Stage at which the forces are being evaluated.
+	 */
+	private void evaluate(ParticleArrays a, int stage)
+	{
+		a.clearForces();
+		applyForces(a);
+		numEvaluations++;
+
+		update.mode = StageUpdate.DERIVE;
+		update.stage = stage;
+		s.updateArrays(a.size, update);
+	}
+
+	/** Calculates the largest estimated local error of any free particle's position or velocity, relative
+	 *  to the tolerance. Should be called once all stages of a sub-step have been evaluated.
+	 *  @param a Arrays holding the 5th order solution of the sub-step.
+	 *  @param h Size of the sub-step.
+	 *  @return Ratio of the largest error to the tolerance, so a value greater than 1 indicates the 
+	 *          sub-step should be rejected.
+	 */
+	private float errorRatio(ParticleArrays a, float h)
+	{
+		float maxRatio = 0;
+		for (int i=0; i<a.size; i++)
+		{
+			if (a.free[i])
+			{
+				maxRatio = Math.max(maxRatio, componentError(kx,  i, h, ox[i],  a.x[i]));
+				maxRatio = Math.max(maxRatio, componentError(ky,  i, h, oy[i],  a.y[i]));
+				maxRatio = Math.max(maxRatio, componentError(kz,  i, h, oz[i],  a.z[i]));
+				maxRatio = Math.max(maxRatio, componentError(kvx, i, h, ovx[i], a.vx[i]));
+				maxRatio = Math.max(maxRatio, componentError(kvy, i, h, ovy[i], a.vy[i]));
+				maxRatio = Math.max(maxRatio, componentError(kvz, i, h, ovz[i], a.vz[i]));
+			}
+		}
+		return maxRatio;
+	}
+
+	/** Calculates the estimated local error in a single component of a particle's state relative to the tolerance.
+	 *  @param k Derivative of the component at each stage.
+	 *  @param i Index of the particle.
+	 *  @param h Size of the sub-step.
+	 *  @param start Value of the component at the start of the sub-step.
+	 *  @param end Value of the component at the end of the sub-step.
+	 *  @return Ratio of the estimated error to the tolerance, or infinity if the error cannot be calculated.
+	 */
+	private float componentError(float[][] k, int i, float h, float start, float end)
+	{
+		float err = 0;
+		for (int stage=0; stage<NUM_STAGES; stage++)
+		{
+			err += E[stage]*k[stage][i];
+		}
+		float ratio = Math.abs(h*err)/(tolerance*(1 + Math.max(Math.abs(start), Math.abs(end))));
+		return Float.isNaN(ratio) ? Float.POSITIVE_INFINITY : ratio;
+	}
+
+	/** Exchanges the derivatives stored for the two given stages.
+	 *  @param stage1 First stage to exchange.
+	 *  @param stage2 Second stage to exchange.
+	 */
+	private void swapStages(int stage1, int stage2)
+	{
+		swap(kx, stage1, stage2);
+		swap(ky, stage1, stage2);
+		swap(kz, stage1, stage2);
+		swap(kvx, stage1, stage2);
+		swap(kvy, stage1, stage2);
+		swap(kvz, stage1, stage2);
+	}
+
+	/** Exchanges two rows of the given array.
+	 *  @param k Array whose rows are to be exchanged.
+	 *  @param i First row to exchange.
+	 *  @param j Second row to exchange.
+	 */
+	private static void swap(float[][] k, int i, int j)
+	{
+		float[] temp = k[i];
+		k[i] = k[j];
+		k[j] = temp;
+	}
+
+	/** Resizes the scratch arrays used to hold the start of each sub-step and the intermediate stages.
+	 *  @param capacity Number of particles the scratch arrays should be able to hold.
+	 */
+	private void allocate(int capacity)
+	{
+		ox  = new float[capacity];
+		oy  = new float[capacity];
+		oz  = new float[capacity];
+		ovx = new float[capacity];
+		ovy = new float[capacity];
+		ovz = new float[capacity];
+		for (int stage=0; stage<NUM_STAGES; stage++)
+		{
+			kx[stage]  = new float[capacity];
+			ky[stage]  = new float[capacity];
+			kz[stage]  = new float[capacity];
+			kvx[stage] = new float[capacity];
+			kvy[stage] = new float[capacity];
+			kvz[stage] = new float[capacity];
+		}
+	}
+
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** Update that carries out one part of a sub-step on a range of particles.
+	 */
+	private class StageUpdate implements ArrayUpdate
+	{
+		static final int SAVE = 0;			// Record the state at the start of the sub-step.
+		static final int COMBINE = 1;		// Move particles to the state at which a stage is evaluated.
+		static final int DERIVE = 2;		// Record the velocities and accelerations of a stage.
+		static final int ACCEPT = 3;		// Age the particles after a successful sub-step.
+		static final int RESTORE = 4;		// Return particles to the start of a rejected sub-step.
+
+		int mode;							// Which part of the sub-step to carry out.
+		int stage;							// Stage being combined or derived.
+		ParticleArrays a;					// Arrays holding the state of the particles.
+		float h;							// Size of the sub-step.
+
+		/** Carries out the current part of the sub-step on the particles in the given range.
+		 *  @param start Index of the first particle to update.
+		 *  @param end Index one beyond the last particle to update.
+		 */
+		@SuppressWarnings("synthetic-access")
+		public void update(int start, int end)
+		{
+			switch (mode)
+			{
+				case SAVE:
+					for (int i=start; i<end; i++)
+					{
+						ox[i]  = a.x[i];
+						oy[i]  = a.y[i];
+						oz[i]  = a.z[i];
+						ovx[i] = a.vx[i];
+						ovy[i] = a.vy[i];
+						ovz[i] = a.vz[i];
+					}
+					break;
+
+				case COMBINE:
+					float[] weights = A[stage];
+					for (int i=start; i<end; i++)
+					{
+						if (a.free[i])
+						{
+							float dx = 0, dy = 0, dz = 0, dvx = 0, dvy = 0, dvz = 0;
+							for (int j=0; j<stage; j++)
+							{
+								float w = weights[j];
+								dx  += w*kx[j][i];
+								dy  += w*ky[j][i];
+								dz  += w*kz[j][i];
+								dvx += w*kvx[j][i];
+								dvy += w*kvy[j][i];
+								dvz += w*kvz[j][i];
+							}
+							a.x[i]  = ox[i]  + h*dx;
+							a.y[i]  = oy[i]  + h*dy;
+							a.z[i]  = oz[i]  + h*dz;
+							a.vx[i] = ovx[i] + h*dvx;
+							a.vy[i] = ovy[i] + h*dvy;
+							a.vz[i] = ovz[i] + h*dvz;
+						}
+					}
+					break;
+
+				case DERIVE:
+					for (int i=start; i<end; i++)
+					{
+						if (a.free[i])
+						{
+							float invMass = 1/a.mass[i];
+							kx[stage][i]  = a.vx[i];
+							ky[stage][i]  = a.vy[i];
+							kz[stage][i]  = a.vz[i];
+							kvx[stage][i] = a.fx[i]*invMass;
+							kvy[stage][i] = a.fy[i]*invMass;
+							kvz[stage][i] = a.fz[i]*invMass;
+						}
+						else
+						{
+							kx[stage][i]  = 0;
+							ky[stage][i]  = 0;
+							kz[stage][i]  = 0;
+							kvx[stage][i] = 0;
+							kvy[stage][i] = 0;
+							kvz[stage][i] = 0;
+						}
+					}
+					break;
+
+				case ACCEPT:
+					for (int i=start; i<end; i++)
+					{
+						if (a.free[i])
+						{
+							a.particles[i].age += h;
+						}
+					}
+					break;
+
+				default:
+					for (int i=start; i<end; i++)
+					{
+						a.x[i]  = ox[i];
+						a.y[i]  = oy[i];
+						a.z[i]  = oz[i];
+						a.vx[i] = ovx[i];
+						a.vy[i] = ovy[i];
+						a.vz[i] = ovz[i];
+					}
+			}
+		}
+	}
+}
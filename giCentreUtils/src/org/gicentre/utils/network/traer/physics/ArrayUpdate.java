@@ -0,0 +1,33 @@
+package org.gicentre.utils.network.traer.physics;
+
+// *****************************************************************************************
+/** Update applied to a range of particles held in primitive array storage. Updates must only
+ *  modify the particles within their range so that separate ranges can be updated at the
+ *  same time on different threads.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+interface ArrayUpdate
+{
+	/** Updates the particles with indices in the given range.
+	 *  @param start Index of the first particle to update.
+	 *  @param end Index one beyond the last particle to update.
+	 */
+	void update(int start, int end);
+}
@@ -67,6 +67,7 @@ public class Attraction extends TwoBodyForce
 			throw new IllegalArgumentException("Argument d is "+d+"; cannot specify a minimum distance <=0.");
 		}
 		distanceMin = d;
+		numChanges++;
 		return this;
 	}
 
@@ -77,6 +78,7 @@ public class Attraction extends TwoBodyForce
 	public final Attraction	setStrength(float k)
 	{ 
 		this.k = k; 
+		numChanges++;
 		return this; 
 	}
 	
@@ -98,4 +100,69 @@ public class Attraction extends TwoBodyForce
 		fromTheOtherEndtoOneEnd.length(-k*getOneEnd().mass()*getTheOtherEnd().mass()/fromTheOtherEndtoOneEnd.lengthSquared());
 		return equalAndOpposite(fromTheOtherEndtoOneEnd);
 	}
+
+	/** Applies this attraction to particles held in primitive array storage. The calculation is identical
+	 *  to that of {@link #forcePair()} but reads and writes the arrays directly without creating any
+	 *  intermediate vectors.
+	 *  @param a Array storage holding both end particles.
+	 *  @param fx Array into which the x component of the force on each particle is accumulated.
+	 *  @param fy Array into which the y component of the force on each particle is accumulated.
+	 *  @param fz Array into which the z component of the force on each particle is accumulated.
+	 *  @throws IllegalStateException if either end particle is not held in the array storage.
+	 */
+	final void applyArrays(ParticleArrays a, float[] fx, float[] fy, float[] fz) throws IllegalStateException
+	{
+		if (isOff())
+		{
+			return;
+		}
+		int i = a.indexOf(getOneEnd());
+		int j = a.indexOf(getTheOtherEnd());
+		if ((i < 0) || (j < 0))
+		{
+			throw new IllegalStateException("Attraction is attached to a particle that is not part of the particle system.");
+		}
+		boolean isFreeI = a.free[i];
+		boolean isFreeJ = a.free[j];
+		if (!isFreeI && !isFreeJ)
+		{
+			return;
+		}
+
+		float dx = a.x[i]-a.x[j];
+		float dy = a.y[i]-a.y[j];
+		float dz = a.z[i]-a.z[j];
+		float len = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+		if (len == 0)
+		{
+			return;
+		}
+		if (len < distanceMin)
+		{
+			// Limit the force between close particles by flooring their separation.
+			float scale = distanceMin/len;
+			dx *= scale;
+			dy *= scale;
+			dz *= scale;
+			len = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+		}
+
+		float scale = (-k*a.mass[i]*a.mass[j]/(dx*dx + dy*dy + dz*dz))/len;
+		dx *= scale;
+		dy *= scale;
+		dz *= scale;
+
+		if (isFreeI)
+		{
+			fx[i] += dx;
+			fy[i] += dy;
+			fz[i] += dz;
+		}
+		if (isFreeJ)
+		{
+			fx[j] -= dx;
+			fy[j] -= dy;
+			fz[j] -= dz;
+		}
+	}
 }
\ No newline at end of file
@@ -16,6 +16,10 @@ package org.gicentre.utils.network.traer.physics;
 public class BackwardEulerIntegrator extends Integrator
 {
 
+	// ------------------------------- Object variables --------------------------------
+
+	private StepUpdate update;		// Update applied to particles held in array storage.
+
 	// --------------------------------- Constructors ----------------------------------
 
 	/** Sets up the integrator.
@@ -23,7 +27,8 @@ public class BackwardEulerIntegrator extends Integrator
 	 */
 	public BackwardEulerIntegrator(ParticleSystem s) 
 	{
-		super(s); 
+		super(s);
+		update = new StepUpdate();
 	}
 
 	// ----------------------------------- Methods -------------------------------------
@@ -33,19 +38,65 @@ public class BackwardEulerIntegrator extends Integrator
 	 */
 	public BackwardEulerIntegrator step(float deltaT) 
 	{
+		ParticleArrays arrays = s.loadArrays();
+		
 		// Clear any residual forces, then apply all existing forces
 		s.clearForces();
 		s.applyForces();
 
+		if (arrays != null)
+		{
+			update.a = arrays;
+			update.deltaT = deltaT;
+			s.updateArrays(arrays.size, update);
+			s.storeArrays();
+			return this;
+		}
+		
 		for (Particle p : s.getParticles())
 		{
 			if (p.isFree()) 
 			{                 
 				// For all free particles:
-				p.velocity().add(p.getForce().multiplyBy(deltaT/p.mass()));      // Update velocity first
-				p.position().add(Vector3D.multiplyBy(p.velocity(),deltaT));   // Position based on new velocity
+				p.age += deltaT;
+				Vector3D v = p.velocity;
+				v.add(p.getForce().multiplyBy(deltaT/p.mass()));      					// Update velocity first
+				p.position.add(v.getX()*deltaT, v.getY()*deltaT, v.getZ()*deltaT);	// Position based on new velocity
 			}
 		}
 		return this;
 	}
-}
\ No newline at end of file
+
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** Update that advances a range of particles held in array storage by one time step.
+	 */
+	private static class StepUpdate implements ArrayUpdate
+	{
+		ParticleArrays a;		// Arrays holding the particles to update.
+		float deltaT;			// Time step over which to advance the particles.
+
+		/** Advances the free particles in the given range.
+		 *  @param start Index of the first particle to update.
+		 *  @param end Index one beyond the last particle to update.
+		 */
+		public void update(int start, int end)
+		{
+			ParticleArrays arrays = a;
+			for (int i=start; i<end; i++)
+			{
+				if (arrays.free[i])
+				{
+					arrays.particles[i].age += deltaT;
+					float dtm = deltaT/arrays.mass[i];
+					arrays.vx[i] += arrays.fx[i]*dtm;			// Update velocity first
+					arrays.vy[i] += arrays.fy[i]*dtm;
+					arrays.vz[i] += arrays.fz[i]*dtm;
+					arrays.x[i] += arrays.vx[i]*deltaT;			// Position based on new velocity
+					arrays.y[i] += arrays.vy[i]*deltaT;
+					arrays.z[i] += arrays.vz[i]*deltaT;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,552 @@
+package org.gicentre.utils.network.traer.physics;
+
+// *****************************************************************************************
+/** A {@link UniversalForce} that applies an inverse-square repulsion between every pair of
+ *  particles in a {@link ParticleSystem} without needing an explicit {@link Attraction} for
+ *  each pair. Rather than evaluating all <i>n</i>-squared pairs, the particles are placed in an
+ *  octree that is rebuilt each time the force is applied. Distant clusters of particles are
+ *  then treated as a single body located at their centre of mass (the Barnes-Hut approximation),
+ *  making the cost of applying the force proportional to <i>n</i> log <i>n</i>.
+ *  <br /><br />
+ *  The accuracy of the approximation is controlled by <i>theta</i>. A cluster is treated as a
+ *  single body when its width divided by its distance from the particle being considered is less
+ *  than theta. A theta of 0 gives the exact (but slow) all-pairs result; larger values are faster
+ *  but less accurate. Values between 0.5 and 1 are typical for force-directed layouts.
+ *  <br /><br />
+ *  To use, add the force to a particle system as a custom force:<br />
+ *  <code>physics.addCustomForce(new BarnesHutRepulsion(physics, 1000, 0.1f));</code>
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class BarnesHutRepulsion extends UniversalForce
+{
+	// --------------------------- Class and object variables -----------------------------
+
+								/** The default accuracy parameter used when none is specified. */
+	public static final float DEFAULT_THETA = 0.8f;
+
+	private static final int MAX_DEPTH = 24;	// Depth beyond which coincident particles share a leaf.
+	private static final int NONE = -1;			// Indicates an empty body or child reference.
+
+	private ParticleSystem s;		// The particle system whose particles repel each other.
+	private float k;				// Strength of repulsion; positive values push particles apart.
+	private float distanceMin;		// Minimum separation used when calculating the force.
+	private float theta;			// Accuracy of the Barnes-Hut approximation.
+
+	// Particle bodies copied into the tree each time it is built.
+	private int numBodies;
+	private Particle[] bodies;
+	private float[] bx,by,bz,bm;
+	private int[] nextBody;			// Chain of bodies sharing a leaf at maximum depth.
+
+	// Octree nodes stored in parallel arrays that are reused between builds.
+	private int numNodes;
+	private float[] cx,cy,cz,half;	// Centre and half width of each cubic cell.
+	private float[] mass;			// Total mass of bodies in each cell.
+	private float[] mx,my,mz;		// Mass-weighted position sums, then centre of mass of each cell.
+	private int[] firstBody;		// First body in a leaf, or NONE.
+	private int[] firstChild;		// Index of the first of eight contiguous children, or NONE for a leaf.
+
+	private float fx,fy,fz;			// Force accumulated on the particle currently being considered.
+
+	// ---------------------------------- Constructors ------------------------------------
+
+	/** Creates a repulsive force between all the particles of the given system using the default
+	 *  accuracy determined by {@link #DEFAULT_THETA}.
+	 *  @param s Particle system whose particles are to repel each other.
+	 *  @param k Strength of the repulsion. Positive values push particles apart, negative values attract.
+	 *  @param distanceMin Minimum distance between particles used when calculating the force. This
+	 *                     limits the size of the force between nearly coincident particles.
+	 *  @throws NullPointerException if the particle system is null.
+	 *  @throws IllegalArgumentException if distanceMin is <=0.
+	 */
+	public BarnesHutRepulsion(ParticleSystem s, float k, float distanceMin) throws NullPointerException, IllegalArgumentException
+	{
+		this(s,k,distanceMin,DEFAULT_THETA);
+	}
+
+	/** Creates a repulsive force between all the particles of the given system using the given accuracy.
+	 *  @param s Particle system whose particles are to repel each other.
+	 *  @param k Strength of the repulsion. Positive values push particles apart, negative values attract.
+	 *  @param distanceMin Minimum distance between particles used when calculating the force. This
+	 *                     limits the size of the force between nearly coincident particles.
+	 *  @param theta Accuracy of the approximation. 0 evaluates every pair exactly, larger values are faster
+	 *               but less accurate.
+	 *  @throws NullPointerException if the particle system is null.
+	 *  @throws IllegalArgumentException if distanceMin is <=0 or theta is negative.
+	 */
+	public BarnesHutRepulsion(ParticleSystem s, float k, float distanceMin, float theta) throws NullPointerException, IllegalArgumentException
+	{
+		super();
+		if (s == null)
+		{
+			throw new NullPointerException("Particle system is null in BarnesHutRepulsion constructor.");
+		}
+		this.s = s;
+		setStrength(k);
+		setMinimumDistance(distanceMin);
+		setTheta(theta);
+
+		bodies = new Particle[0];
+		bx = new float[0];
+		by = new float[0];
+		bz = new float[0];
+		bm = new float[0];
+		nextBody = new int[0];
+		allocateNodes(64);
+	}
+
+	// ------------------------------------ Methods ---------------------------------------
+
+	/** Sets the strength of the repulsion. Positive values push particles apart, negative values attract.
+	 *  @param k the strength of the repulsion.
+	 *  @return this force with its new strength.
+	 */
+	public final BarnesHutRepulsion setStrength(float k)
+	{
+		this.k = k;
+		return this;
+	}
+
+	/** Reports the strength of the repulsion.
+	 *  @return the strength of the repulsion; positive for repulsive forces, negative for attractive ones.
+	 */
+	public final float getStrength()
+	{
+		return k;
+	}
+
+	/** Sets the minimum separation distance used when calculating the force between particles.
+	 *  @param d the new minimum distance
+	 *  @return this force with the new minimum distance setting.
+	 *  @throws IllegalArgumentException if d<=0
+	 */
+	public final BarnesHutRepulsion setMinimumDistance(float d) throws IllegalArgumentException
+	{
+		if (d<=0)
+		{
+			throw new IllegalArgumentException("Argument d is "+d+"; cannot specify a minimum distance <=0.");
+		}
+		distanceMin = d;
+		return this;
+	}
+
+	/** Reports the minimum separation distance used when calculating the force between particles.
+	 *  @return the minimum separation distance.
+	 */
+	public final float getMinimumDistance()
+	{
+		return distanceMin;
+	}
+
+	/** Sets the accuracy of the Barnes-Hut approximation. A cluster of particles is treated as a single
+	 *  body when the ratio of its width to its distance is less than theta.
+	 *  @param theta Accuracy parameter. 0 evaluates every pair exactly, larger values are faster but less accurate.
+	 *  @return this force with its new accuracy setting.
+	 *  @throws IllegalArgumentException if theta is negative.
+	 */
+	public final BarnesHutRepulsion setTheta(float theta) throws IllegalArgumentException
+	{
+		if (theta < 0)
+		{
+			throw new IllegalArgumentException("Argument theta is "+theta+"; theta cannot be negative.");
+		}
+		this.theta = theta;
+		return this;
+	}
+
+	/** Reports the accuracy of the Barnes-Hut approximation.
+	 *  @return the accuracy parameter theta.
+	 */
+	public final float getTheta()
+	{
+		return theta;
+	}
+
+	/** Rebuilds the octree from the current particle positions and applies the repulsion to every free
+	 *  particle in the system. Unlike most universal forces, this can be called directly, so is the method
+	 *  used when the force is added as a custom force of a {@link ParticleSystem}.
+	 *  @return this force.
+	 */
+	@Override
+	public BarnesHutRepulsion apply()
+	{
+		if (isOff())
+		{
+			return this;
+		}
+
+		buildTree();
+		for (int i=0; i<numBodies; i++)
+		{
+			Particle p = bodies[i];
+			if (p.isFree())
+			{
+				addForceOn(p);
+			}
+		}
+		return this;
+	}
+
+	/** Applies the repulsion from all other particles to the given particle using the octree built by
+	 *  the most recent call to {@link #apply()}. If no tree has yet been built, one is built first.
+	 *  @param p the particle to apply the force to.
+	 *  @return the particle p, after the force is applied.
+	 *  @throws NullPointerException if <code>p == null</code>.
+	 */
+	@Override
+	public Particle apply(Particle p) throws NullPointerException
+	{
+		if (p == null)
+		{
+			throw new NullPointerException("Argument p is null in apply(p) call.");
+		}
+		if (isOn() && p.isFree())
+		{
+			if (numNodes == 0)
+			{
+				buildTree();
+			}
+			addForceOn(p);
+		}
+		return p;
+	}
+
+	// -------------------------------- Private methods -----------------------------------
+
+	/** Calculates the force on the given particle by traversing the octree and adds it to the particle.
+	 *  @param p Particle on which to add the force.
+	 */
+	private void addForceOn(Particle p)
+	{
+		fx = 0;
+		fy = 0;
+		fz = 0;
+		if (numBodies > 0)
+		{
+			Vector3D pos = p.position();
+			accumulate(0,p,pos.getX(),pos.getY(),pos.getZ(),p.mass(),theta*theta);
+		}
+		p.getForce().add(fx,fy,fz);
+	}
+
+	/** Accumulates the force on the given particle from the bodies in the given cell of the octree.
+	 *  @param node Index of the cell to consider.
+	 *  @param p Particle on which the force acts, so it can be excluded from the calculation.
+	 *  @param px x position of the particle.
+	 *  @param py y position of the particle.
+	 *  @param pz z position of the particle.
+	 *  @param pm Mass of the particle.
+	 *  @param theta2 Squared accuracy parameter.
+	 */
+	private void accumulate(int node, Particle p, float px, float py, float pz, float pm, float theta2)
+	{
+		if (mass[node] == 0)
+		{
+			return;
+		}
+
+		int child = firstChild[node];
+		if (child == NONE)
+		{
+			// Leaf cell, so consider each of its bodies individually.
+			for (int b=firstBody[node]; b!=NONE; b=nextBody[b])
+			{
+				if (bodies[b] != p)
+				{
+					addPairForce(px,py,pz,pm,bx[b],by[b],bz[b],bm[b]);
+				}
+			}
+			return;
+		}
+
+		// A distant cell that does not contain the particle can be treated as a single body.
+		float h = half[node];
+		boolean isInside = Math.abs(px-cx[node]) <= h && Math.abs(py-cy[node]) <= h && Math.abs(pz-cz[node]) <= h;
+		if (!isInside)
+		{
+			float dx = px-mx[node];
+			float dy = py-my[node];
+			float dz = pz-mz[node];
+			float width = 2*h;
+			if (width*width < theta2*(dx*dx + dy*dy + dz*dz))
+			{
+				addPairForce(px,py,pz,pm,mx[node],my[node],mz[node],mass[node]);
+				return;
+			}
+		}
+
+		for (int i=0; i<8; i++)
+		{
+			accumulate(child+i,p,px,py,pz,pm,theta2);
+		}
+	}
+
+	/** Adds the inverse-square force exerted by one body on another to the accumulated force. The
+	 *  calculation matches that of {@link Attraction} with a negated strength.
+	 *  @param px x position of the body on which the force acts.
+	 *  @param py y position of the body on which the force acts.
+	 *  @param pz z position of the body on which the force acts.
+	 *  @param pm Mass of the body on which the force acts.
+	 *  @param qx x position of the body exerting the force.
+	 *  @param qy y position of the body exerting the force.
+	 *  @param qz z position of the body exerting the force.
+	 *  @param qm Mass of the body exerting the force.
+	 */
+	private void addPairForce(float px, float py, float pz, float pm, float qx, float qy, float qz, float qm)
+	{
+		float dx = px-qx;
+		float dy = py-qy;
+		float dz = pz-qz;
+		float d = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+		if (d == 0)
+		{
+			return;
+		}
+		float r = Math.max(d, distanceMin);
+		float scale = k*pm*qm/(r*r*d);
+		fx += dx*scale;
+		fy += dy*scale;
+		fz += dz*scale;
+	}
+
+	/** Builds the octree from the current positions of all particles in the system.
+	 */
+	private void buildTree()
+	{
+		// Copy particle positions and masses into local arrays.
+		int n = s.getNumParticles();
+		if (bodies.length < n)
+		{
+			int capacity = Math.max(n, 2*bodies.length);
+			bodies = new Particle[capacity];
+			bx = new float[capacity];
+			by = new float[capacity];
+			bz = new float[capacity];
+			bm = new float[capacity];
+			nextBody = new int[capacity];
+		}
+
+		numBodies = 0;
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+
+		for (Particle p : s.getParticles())
+		{
+			Vector3D pos = p.position();
+			float x = pos.getX();
+			float y = pos.getY();
+			float z = pos.getZ();
+			bodies[numBodies] = p;
+			bx[numBodies] = x;
+			by[numBodies] = y;
+			bz[numBodies] = z;
+			bm[numBodies] = p.mass();
+			nextBody[numBodies] = NONE;
+			numBodies++;
+
+			minX = Math.min(minX,x);
+			minY = Math.min(minY,y);
+			minZ = Math.min(minZ,z);
+			maxX = Math.max(maxX,x);
+			maxY = Math.max(maxY,y);
+			maxZ = Math.max(maxZ,z);
+		}
+
+		// Clear references to particles from any earlier, larger system.
+		for (int i=numBodies; i<bodies.length && bodies[i] != null; i++)
+		{
+			bodies[i] = null;
+		}
+
+		numNodes = 0;
+		if (numBodies == 0)
+		{
+			return;
+		}
+
+		// Root cell is the smallest cube enclosing all bodies, slightly enlarged so no body sits on its boundary.
+		float h = 0.5f*Math.max(maxX-minX, Math.max(maxY-minY, maxZ-minZ));
+		h = (h > 0) ? h*1.001f : 1;
+		newNode(0.5f*(minX+maxX), 0.5f*(minY+maxY), 0.5f*(minZ+maxZ), h);
+
+		for (int b=0; b<numBodies; b++)
+		{
+			insert(0,b,0);
+		}
+
+		// Convert mass-weighted sums into centres of mass.
+		for (int node=0; node<numNodes; node++)
+		{
+			float m = mass[node];
+			if (m > 0)
+			{
+				mx[node] /= m;
+				my[node] /= m;
+				mz[node] /= m;
+			}
+		}
+	}
+
+	/** Inserts the given body into the octree below the given cell.
+	 *  @param node Index of the cell into which the body is placed.
+	 *  @param b Index of the body to insert.
+	 *  @param depth Depth of the cell in the tree.
+	 */
+	private void insert(int node, int b, int depth)
+	{
+		float m = bm[b];
+		mass[node] += m;
+		mx[node] += m*bx[b];
+		my[node] += m*by[b];
+		mz[node] += m*bz[b];
+
+		if (firstChild[node] == NONE)
+		{
+			if (firstBody[node] == NONE)
+			{
+				firstBody[node] = b;
+				return;
+			}
+
+			if (depth >= MAX_DEPTH)
+			{
+				// Coincident (or nearly so) bodies share the leaf.
+				nextBody[b] = firstBody[node];
+				firstBody[node] = b;
+				return;
+			}
+
+			// Split the leaf and move its existing body down a level.
+			int existing = firstBody[node];
+			firstBody[node] = NONE;
+			subdivide(node);
+			insert(childOf(node,existing),existing,depth+1);
+		}
+		insert(childOf(node,b),b,depth+1);
+	}
+
+	/** Creates the eight child cells of the given cell.
+	 *  @param node Index of the cell to subdivide.
+	 */
+	private void subdivide(int node)
+	{
+		if (numNodes+8 > mass.length)
+		{
+			allocateNodes(2*mass.length);
+		}
+
+		float h = 0.5f*half[node];
+		float x = cx[node];
+		float y = cy[node];
+		float z = cz[node];
+		firstChild[node] = numNodes;
+
+		for (int i=0; i<8; i++)
+		{
+			newNode(((i & 1) == 0) ? x-h : x+h,
+					((i & 2) == 0) ? y-h : y+h,
+					((i & 4) == 0) ? z-h : z+h, h);
+		}
+	}
+
+	/** Reports the index of the child of the given cell that contains the given body.
+	 *  @param node Index of the parent cell.
+	 *  @param b Index of the body to locate.
+	 *  @return Index of the child cell containing the body.
+	 */
+	private int childOf(int node, int b)
+	{
+		int octant = 0;
+		if (bx[b] >= cx[node])
+		{
+			octant |= 1;
+		}
+		if (by[b] >= cy[node])
+		{
+			octant |= 2;
+		}
+		if (bz[b] >= cz[node])
+		{
+			octant |= 4;
+		}
+		return firstChild[node] + octant;
+	}
+
+	/** Adds an empty cell to the octree.
+	 *  @param x x coordinate of the centre of the cell.
+	 *  @param y y coordinate of the centre of the cell.
+	 *  @param z z coordinate of the centre of the cell.
+	 *  @param h Half the width of the cell.
+	 */
+	private void newNode(float x, float y, float z, float h)
+	{
+		int node = numNodes++;
+		cx[node] = x;
+		cy[node] = y;
+		cz[node] = z;
+		half[node] = h;
+		mass[node] = 0;
+		mx[node] = 0;
+		my[node] = 0;
+		mz[node] = 0;
+		firstBody[node] = NONE;
+		firstChild[node] = NONE;
+	}
+
+	/** Resizes the octree node arrays, retaining any existing nodes.
+	 *  @param capacity New number of nodes that can be stored.
+	 */
+	private void allocateNodes(int capacity)
+	{
+		cx = resize(cx,capacity);
+		cy = resize(cy,capacity);
+		cz = resize(cz,capacity);
+		half = resize(half,capacity);
+		mass = resize(mass,capacity);
+		mx = resize(mx,capacity);
+		my = resize(my,capacity);
+		mz = resize(mz,capacity);
+
+		int[] newFirstBody = new int[capacity];
+		int[] newFirstChild = new int[capacity];
+		if (firstBody != null)
+		{
+			System.arraycopy(firstBody,0,newFirstBody,0,numNodes);
+			System.arraycopy(firstChild,0,newFirstChild,0,numNodes);
+		}
+		firstBody = newFirstBody;
+		firstChild = newFirstChild;
+	}
+
+	/** Creates a copy of the given array with a new capacity.
+	 *  @param array Array to copy, which may be null.
+	 *  @param capacity Length of the new array.
+	 *  @return New array containing the first numNodes values of the old one.
+	 */
+	private float[] resize(float[] array, int capacity)
+	{
+		float[] newArray = new float[capacity];
+		if (array != null)
+		{
+			System.arraycopy(array,0,newArray,0,numNodes);
+		}
+		return newArray;
+	}
+}
@@ -0,0 +1,459 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// *****************************************************************************************
+/** Ticks many independent particle systems to convergence on a pool of threads without any
+ *  need for a sketch or display. Each submitted system is ticked with its own time step until
+ *  both the mean kinetic energy of its free particles and the largest distance moved by any
+ *  particle in a single tick have stayed below their thresholds for a number of consecutive
+ *  ticks, or until its tick or time budget runs out. Results are returned as futures so that
+ *  layouts can be collected as they finish. The thresholds and budgets in force when a system 
+ *  is submitted apply to that system, so they can be changed between submissions.
+ *  <p>Each system is ticked by a single thread, so it should not be modified elsewhere until its 
+ *  layout has completed.</p>
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class BatchLayout
+{
+	// --------------------------- Class and object variables -----------------------------
+
+	/** Default mean kinetic energy per free particle below which a system may be converged. */
+	public static final float DEFAULT_ENERGY_THRESHOLD = 0.0001f;
+	/** Default distance moved by any particle in a tick below which a system may be converged. */
+	public static final float DEFAULT_DISPLACEMENT_THRESHOLD = 0.001f;
+	/** Default number of consecutive ticks for which both thresholds must be met. */
+	public static final int DEFAULT_SETTLE_TICKS = 5;
+	/** Default maximum number of ticks for each system. */
+	public static final int DEFAULT_MAX_TICKS = 10000;
+
+	private ExecutorService executor;
+	private boolean isOwnExecutor;		// Whether the executor was created by this runner and should be shut down by it.
+	private float energyThreshold;
+	private float displacementThreshold;
+	private int settleTicks;
+	private int maxTicks;
+	private long maxTime;				// Maximum time in milliseconds for each system, or 0 for no limit.
+
+	// ---------------------------------- Constructors ------------------------------------
+
+	/** Creates a batch layout runner with its own pool of one thread per available processor. The 
+	 *  pool should be released with {@link #shutdown()} once all layouts have been submitted.
+	 */
+	public BatchLayout()
+	{
+		this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+		{
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "BatchLayout worker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}));
+		isOwnExecutor = true;
+	}
+
+	/** Creates a batch layout runner that ticks particle systems using the given executor. The executor
+	 *  remains owned by the caller and is not shut down by this runner. If submitted systems evaluate 
+	 *  their own forces in parallel, they should do so on a different executor to avoid all of this 
+	 *  executor's threads waiting for tasks that cannot be run.
+	 *  @param executor Executor on which to tick particle systems.
+	 *  @throws NullPointerException if the executor is null.
+	 */
+	public BatchLayout(ExecutorService executor) throws NullPointerException
+	{
+		if (executor == null)
+		{
+			throw new NullPointerException("Executor for batch layout cannot be null.");
+		}
+		this.executor = executor;
+		energyThreshold = DEFAULT_ENERGY_THRESHOLD;
+		displacementThreshold = DEFAULT_DISPLACEMENT_THRESHOLD;
+		settleTicks = DEFAULT_SETTLE_TICKS;
+		maxTicks = DEFAULT_MAX_TICKS;
+		maxTime = 0;
+	}
+
+	// ------------------------------------ Methods ---------------------------------------
+
+	/** Submits the given particle system to be ticked until it converges or its budget runs out.
+	 *  @param s Particle system to lay out.
+	 *  @return Future that provides the result of the layout once it has completed.
+	 *  @throws NullPointerException if the particle system is null.
+	 */
+	public Future<Result> submit(ParticleSystem s) throws NullPointerException
+	{
+		if (s == null)
+		{
+			throw new NullPointerException("Cannot lay out a null particle system.");
+		}
+		return executor.submit(new LayoutJob(s, energyThreshold, displacementThreshold, settleTicks, maxTicks, maxTime));
+	}
+
+	/** Submits each of the given particle systems to be ticked until it converges or its budget runs out.
+	 *  @param systems Particle systems to lay out.
+	 *  @return Futures that provide the results of the layouts, in the same order as the systems.
+	 *  @throws NullPointerException if any of the particle systems is null.
+	 */
+	public List<Future<Result>> submitAll(Collection<ParticleSystem> systems) throws NullPointerException
+	{
+		List<Future<Result>> results = new ArrayList<Future<Result>>(systems.size());
+		for (ParticleSystem s : systems)
+		{
+			results.add(submit(s));
+		}
+		return results;
+	}
+
+	/** Stops this runner accepting any more layouts. Layouts already submitted will still be completed.
+	 *  Has no effect on executors supplied by the caller.
+	 */
+	public void shutdown()
+	{
+		if (isOwnExecutor)
+		{
+			executor.shutdown();
+		}
+	}
+
+	/** Sets the mean kinetic energy per free particle below which a system may be considered converged.
+	 *  @param energyThreshold Energy threshold; must not be negative.
+	 *  @return This runner with its new energy threshold.
+	 *  @throws IllegalArgumentException if the threshold is negative.
+	 */
+	public BatchLayout setEnergyThreshold(float energyThreshold) throws IllegalArgumentException
+	{
+		if (energyThreshold < 0)
+		{
+			throw new IllegalArgumentException("Energy threshold is "+energyThreshold+"; it cannot be negative.");
+		}
+		this.energyThreshold = energyThreshold;
+		return this;
+	}
+
+	/** Reports the mean kinetic energy per free particle below which a system may be considered converged.
+	 *  @return Energy threshold.
+	 */
+	public float getEnergyThreshold()
+	{
+		return energyThreshold;
+	}
+
+	/** Sets the distance moved by any particle in a single tick below which a system may be considered converged.
+	 *  @param displacementThreshold Displacement threshold; must not be negative.
+	 *  @return This runner with its new displacement threshold.
+	 *  @throws IllegalArgumentException if the threshold is negative.
+	 */
+	public BatchLayout setDisplacementThreshold(float displacementThreshold) throws IllegalArgumentException
+	{
+		if (displacementThreshold < 0)
+		{
+			throw new IllegalArgumentException("Displacement threshold is "+displacementThreshold+"; it cannot be negative.");
+		}
+		this.displacementThreshold = displacementThreshold;
+		return this;
+	}
+
+	/** Reports the distance moved by any particle in a single tick below which a system may be considered converged.
+	 *  @return Displacement threshold.
+	 */
+	public float getDisplacementThreshold()
+	{
+		return displacementThreshold;
+	}
+
+	/** Sets the number of consecutive ticks for which both the energy and displacement thresholds must be met
+	 *  before a system is considered converged.
+	 *  @param settleTicks Number of ticks; must be at least 1.
+	 *  @return This runner with its new settling period.
+	 *  @throws IllegalArgumentException if the number of ticks is less than 1.
+	 */
+	public BatchLayout setSettleTicks(int settleTicks) throws IllegalArgumentException
+	{
+		if (settleTicks < 1)
+		{
+			throw new IllegalArgumentException("Settle ticks is "+settleTicks+"; it must be at least 1.");
+		}
+		this.settleTicks = settleTicks;
+		return this;
+	}
+
+	/** Reports the number of consecutive ticks for which both thresholds must be met before a system is converged.
+	 *  @return Number of settling ticks.
+	 */
+	public int getSettleTicks()
+	{
+		return settleTicks;
+	}
+
+	/** Sets the maximum number of ticks made to each system before giving up on convergence.
+	 *  @param maxTicks Maximum number of ticks; must be at least 1.
+	 *  @return This runner with its new tick budget.
+	 *  @throws IllegalArgumentException if the number of ticks is less than 1.
+	 */
+	public BatchLayout setMaxTicks(int maxTicks) throws IllegalArgumentException
+	{
+		if (maxTicks < 1)
+		{
+			throw new IllegalArgumentException("Maximum ticks is "+maxTicks+"; it must be at least 1.");
+		}
+		this.maxTicks = maxTicks;
+		return this;
+	}
+
+	/** Reports the maximum number of ticks made to each system before giving up on convergence.
+	 *  @return Tick budget.
+	 */
+	public int getMaxTicks()
+	{
+		return maxTicks;
+	}
+
+	/** Sets the maximum time spent ticking each system before giving up on convergence. The time is measured
+	 *  from when the system starts to be ticked, not from when it was submitted.
+	 *  @param maxTime Maximum time in milliseconds, or 0 for no time limit.
+	 *  @return This runner with its new time budget.
+	 *  @throws IllegalArgumentException if the time is negative.
+	 */
+	public BatchLayout setMaxTime(long maxTime) throws IllegalArgumentException
+	{
+		if (maxTime < 0)
+		{
+			throw new IllegalArgumentException("Maximum time is "+maxTime+"; it cannot be negative.");
+		}
+		this.maxTime = maxTime;
+		return this;
+	}
+
+	/** Reports the maximum time spent ticking each system before giving up on convergence.
+	 *  @return Time budget in milliseconds, or 0 if there is no time limit.
+	 */
+	public long getMaxTime()
+	{
+		return maxTime;
+	}
+
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** The outcome of laying out a single particle system.
+	 */
+	public static class Result
+	{
+		private ParticleSystem s;
+		private boolean isConverged;
+		private int numTicks;
+		private long elapsedTime;			// Time spent ticking in nanoseconds.
+		private float kineticEnergy;		// Mean kinetic energy per free particle after the last tick.
+		private float maxDisplacement;		// Largest distance moved by a particle in the last tick.
+
+		/** Records the outcome of a layout.
+		 *  @param s Particle system that was laid out.
+		 *  @param isConverged Whether the system converged.
+		 *  @param numTicks Number of ticks made.
+		 *  @param elapsedTime Time spent ticking in nanoseconds.
+		 *  @param kineticEnergy Mean kinetic energy per free particle after the last tick.
+		 *  @param maxDisplacement Largest distance moved by a particle in the last tick.
+		 */
+		Result(ParticleSystem s, boolean isConverged, int numTicks, long elapsedTime, float kineticEnergy, float maxDisplacement)
+		{
+			this.s = s;
+			this.isConverged = isConverged;
+			this.numTicks = numTicks;
+			this.elapsedTime = elapsedTime;
+			this.kineticEnergy = kineticEnergy;
+			this.maxDisplacement = maxDisplacement;
+		}
+
+		/** Provides the particle system that was laid out.
+		 *  @return The particle system in its final state.
+		 */
+		public ParticleSystem getParticleSystem()
+		{
+			return s;
+		}
+
+		/** Reports whether the system converged before its tick or time budget ran out.
+		 *  @return True if the system converged.
+		 */
+		public boolean isConverged()
+		{
+			return isConverged;
+		}
+
+		/** Reports the number of ticks made to the system.
+		 *  @return Number of ticks.
+		 */
+		public int getNumTicks()
+		{
+			return numTicks;
+		}
+
+		/** Reports the time spent ticking the system.
+		 *  @return Elapsed time in milliseconds.
+		 */
+		public float getElapsedTime()
+		{
+			return elapsedTime/1e6f;
+		}
+
+		/** Reports the mean kinetic energy of the system's free particles after the last tick.
+		 *  @return Mean kinetic energy per free particle.
+		 */
+		public float getKineticEnergy()
+		{
+			return kineticEnergy;
+		}
+
+		/** Reports the largest distance moved by any particle in the last tick.
+		 *  @return Maximum displacement in the last tick.
+		 */
+		public float getMaxDisplacement()
+		{
+			return maxDisplacement;
+		}
+
+		/** Provides a textual summary of the layout.
+		 *  @return Text describing the result.
+		 */
+		@Override
+		public String toString()
+		{
+			return (isConverged ? "Converged" : "Not converged")+" after "+numTicks+" ticks in "+getElapsedTime()+
+			       "ms (kinetic energy "+kineticEnergy+", max displacement "+maxDisplacement+")";
+		}
+	}
+
+	/** Task that ticks a single particle system until it converges or its budget runs out.
+	 */
+	private static class LayoutJob implements Callable<Result>
+	{
+		private ParticleSystem s;
+		private float energyThreshold, displacementThreshold;
+		private int settleTicks, maxTicks;
+		private long maxTime;
+		private float[] px,py,pz;			// Positions of the particles before each tick.
+
+		/** Creates a job to lay out the given particle system.
+		 *  @param s Particle system to lay out.
+		 *  @param energyThreshold Mean kinetic energy per free particle below which the system may be converged.
+		 *  @param displacementThreshold Distance moved in a tick below which the system may be converged.
+		 *  @param settleTicks Number of consecutive ticks for which both thresholds must be met.
+		 *  @param maxTicks Maximum number of ticks.
+		 *  @param maxTime Maximum time in milliseconds, or 0 for no limit.
+		 */
+		LayoutJob(ParticleSystem s, float energyThreshold, float displacementThreshold, int settleTicks, int maxTicks, long maxTime)
+		{
+			this.s = s;
+			this.energyThreshold = energyThreshold;
+			this.displacementThreshold = displacementThreshold;
+			this.settleTicks = settleTicks;
+			this.maxTicks = maxTicks;
+			this.maxTime = maxTime;
+			px = new float[0];
+			py = new float[0];
+			pz = new float[0];
+		}
+
+		/** Ticks the particle system until it converges, its budget runs out or the job is cancelled.
+		 *  @return Result of the layout.
+		 */
+		public Result call()
+		{
+			long startTime = System.nanoTime();
+			long endTime = startTime + maxTime*1000000L;
+			float energy = 0, displacement = 0;
+			int numTicks = 0, numSettled = 0;
+
+			while ((numTicks < maxTicks) && (numSettled < settleTicks) && !Thread.currentThread().isInterrupted())
+			{
+				if ((maxTime > 0) && (System.nanoTime()-endTime >= 0))
+				{
+					break;
+				}
+
+				recordPositions();
+				s.tick();
+				numTicks++;
+
+				// Measure the movement and energy of the particles after the tick.
+				float maxDistSq = 0, totalEnergy = 0;
+				int i=0, numFree=0;
+				for (Particle p : s.getParticles())
+				{
+					Vector3D pos = p.position;
+					if (i < px.length)
+					{
+						float dx = pos.getX()-px[i], dy = pos.getY()-py[i], dz = pos.getZ()-pz[i];
+						maxDistSq = Math.max(maxDistSq, dx*dx + dy*dy + dz*dz);
+					}
+					if (p.isFree())
+					{
+						Vector3D v = p.velocity;
+						totalEnergy += 0.5f*p.mass()*(v.getX()*v.getX() + v.getY()*v.getY() + v.getZ()*v.getZ());
+						numFree++;
+					}
+					i++;
+				}
+				energy = (numFree == 0) ? 0 : totalEnergy/numFree;
+				displacement = (float)Math.sqrt(maxDistSq);
+
+				if ((energy <= energyThreshold) && (displacement <= displacementThreshold))
+				{
+					numSettled++;
+				}
+				else
+				{
+					numSettled = 0;
+				}
+			}
+			return new Result(s, numSettled >= settleTicks, numTicks, System.nanoTime()-startTime, energy, displacement);
+		}
+
+		/** Records the current positions of the particles so that their movement over a tick can be measured.
+		 */
+		private void recordPositions()
+		{
+			int n = s.getNumParticles();
+			if (px.length != n)
+			{
+				px = new float[n];
+				py = new float[n];
+				pz = new float[n];
+			}
+			int i=0;
+			for (Particle p : s.getParticles())
+			{
+				Vector3D pos = p.position;
+				px[i] = pos.getX();
+				py[i] = pos.getY();
+				pz[i] = pos.getZ();
+				i++;
+			}
+		}
+	}
+}
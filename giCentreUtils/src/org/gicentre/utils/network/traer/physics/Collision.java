@@ -0,0 +1,610 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// *****************************************************************************************
+/** A {@link UniversalForce} that treats the particles of a {@link ParticleSystem} as spheres
+ *  of a given radius and pushes apart any that overlap. Each overlapping pair is separated by
+ *  a force proportional to the depth of overlap along the line joining their centres, plus a
+ *  damping term that absorbs some of the speed at which they approach each other. Stiffer
+ *  collisions keep particles further apart but need smaller time steps to remain stable;
+ *  more damping makes collisions less bouncy.
+ *  <br /><br />
+ *  Overlapping pairs are found each time the force is applied by hashing particles into a 
+ *  uniform grid of cells as wide as the largest particle diameter. Only particles in the 
+ *  same or neighbouring cells are compared, so the cost grows with the number of particles 
+ *  and the number of contacts between them rather than with the square of the number of
+ *  particles. Particles are given a default radius which can be overridden for individual
+ *  particles with {@link #setRadius(Particle, float)}.
+ *  <br /><br />
+ *  To use, add the force to a particle system as a custom force:<br />
+ *  <code>physics.addCustomForce(new Collision(physics, 10, 50, 1));</code>
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class Collision extends UniversalForce
+{
+	// --------------------------- Class and object variables -----------------------------
+
+	private ParticleSystem s;		// The particle system whose particles collide.
+	private float radius;			// Radius of particles without their own radius.
+	private float stiffness;		// Force per unit depth of overlap.
+	private float damping;			// Force per unit of approach speed.
+	private Map<Particle,Float> radii;	// Radii of individual particles.
+	private boolean isRadiiChanged;
+
+	// Particles and their state copied each time the force is applied.
+	private int numMembers;
+	private Particle[] members;
+	private float[] x,y,z,vx,vy,vz;
+	private float[] r;				// Radius of each particle.
+	private float maxRadius;		// Largest radius of any particle.
+	private boolean[] free;
+	private float[] fx,fy,fz;		// Forces accumulated when applying to particle objects.
+
+	// Spatial hash rebuilt each time the force is applied.
+	private int[] cellX,cellY,cellZ;	// Grid cell containing each particle.
+	private int[] bucketStart;		// Position in the sorted list of the first particle in each bucket.
+	private int[] bucketEnd;		// Position in the sorted list beyond the last particle in each bucket.
+	private int[] sorted;			// Particle indices ordered by bucket.
+	private int[] visited;			// Buckets already searched for the current particle.
+	private int numContacts;
+
+	// ---------------------------------- Constructor -------------------------------------
+
+	/** Creates a collision force between all the particles of the given system.
+	 *  @param s Particle system whose particles are to collide.
+	 *  @param radius Radius of each particle unless set individually with {@link #setRadius(Particle, float)}.
+	 *  @param stiffness Force applied per unit depth of overlap between two particles.
+	 *  @param damping Force applied per unit of speed at which two overlapping particles approach each other.
+	 *  @throws NullPointerException if the particle system is null.
+	 *  @throws IllegalArgumentException if the radius or stiffness is <=0 or the damping is negative.
+	 */
+	public Collision(ParticleSystem s, float radius, float stiffness, float damping) throws NullPointerException, IllegalArgumentException
+	{
+		super();
+		if (s == null)
+		{
+			throw new NullPointerException("Particle system is null in Collision constructor.");
+		}
+		this.s = s;
+		radii = new WeakHashMap<Particle,Float>();
+		setRadius(radius);
+		setStiffness(stiffness);
+		setDamping(damping);
+
+		members = new Particle[0];
+		allocateParticles(16);
+		bucketStart = new int[32];
+		bucketEnd = new int[32];
+		visited = new int[27];
+	}
+
+	// ------------------------------------ Methods ---------------------------------------
+
+	/** Sets the radius of all particles that have not been given their own radius.
+	 *  @param radius the new default radius.
+	 *  @return this force with its new default radius.
+	 *  @throws IllegalArgumentException if the radius is <=0.
+	 */
+	public final Collision setRadius(float radius) throws IllegalArgumentException
+	{
+		if (radius<=0)
+		{
+			throw new IllegalArgumentException("Argument radius is "+radius+"; cannot specify a radius <=0.");
+		}
+		this.radius = radius;
+		isRadiiChanged = true;
+		return this;
+	}
+
+	/** Reports the radius of particles that have not been given their own radius.
+	 *  @return the default radius.
+	 */
+	public final float getRadius()
+	{
+		return radius;
+	}
+
+	/** Sets the radius of the given particle, overriding the default radius.
+	 *  @param p Particle whose radius is to be set.
+	 *  @param radius the new radius of the particle.
+	 *  @return this force with the new particle radius.
+	 *  @throws NullPointerException if the particle is null.
+	 *  @throws IllegalArgumentException if the radius is <=0.
+	 */
+	public final Collision setRadius(Particle p, float radius) throws NullPointerException, IllegalArgumentException
+	{
+		if (p == null)
+		{
+			throw new NullPointerException("Argument p is null in setRadius(p,radius) call.");
+		}
+		if (radius<=0)
+		{
+			throw new IllegalArgumentException("Argument radius is "+radius+"; cannot specify a radius <=0.");
+		}
+		radii.put(p, Float.valueOf(radius));
+		isRadiiChanged = true;
+		return this;
+	}
+
+	/** Reports the radius of the given particle.
+	 *  @param p Particle whose radius is to be reported.
+	 *  @return Radius of the particle, which will be the default radius if it has not been given its own.
+	 */
+	public final float getRadius(Particle p)
+	{
+		Float pRadius = radii.get(p);
+		return (pRadius == null) ? radius : pRadius.floatValue();
+	}
+
+	/** Sets the stiffness of collisions, which is the force applied per unit depth of overlap between two particles.
+	 *  @param stiffness the new stiffness.
+	 *  @return this force with its new stiffness.
+	 *  @throws IllegalArgumentException if the stiffness is <=0.
+	 */
+	public final Collision setStiffness(float stiffness) throws IllegalArgumentException
+	{
+		if (stiffness<=0)
+		{
+			throw new IllegalArgumentException("Argument stiffness is "+stiffness+"; cannot specify a stiffness <=0.");
+		}
+		this.stiffness = stiffness;
+		return this;
+	}
+
+	/** Reports the stiffness of collisions.
+	 *  @return the force applied per unit depth of overlap.
+	 */
+	public final float getStiffness()
+	{
+		return stiffness;
+	}
+
+	/** Sets the damping of collisions, which is the force applied per unit of speed at which two overlapping 
+	 *  particles approach each other.
+	 *  @param damping the new damping. Must not be negative but can be 0 for perfectly elastic collisions.
+	 *  @return this force with its new damping.
+	 *  @throws IllegalArgumentException if the damping is negative.
+	 */
+	public final Collision setDamping(float damping) throws IllegalArgumentException
+	{
+		if (damping<0)
+		{
+			throw new IllegalArgumentException("Argument damping is "+damping+"; cannot specify a negative damping.");
+		}
+		this.damping = damping;
+		return this;
+	}
+
+	/** Reports the damping of collisions.
+	 *  @return the force applied per unit of approach speed.
+	 */
+	public final float getDamping()
+	{
+		return damping;
+	}
+
+	/** Reports the number of overlapping pairs of particles found the last time the force was applied.
+	 *  @return Number of contacts between particles.
+	 */
+	public final int getNumContacts()
+	{
+		return numContacts;
+	}
+
+	/** Separates every pair of overlapping particles in the system. Unlike most universal forces, this can 
+	 *  be called directly, so is the method used when the force is added as a custom force of a {@link ParticleSystem}.
+	 *  @return this force.
+	 */
+	@Override
+	public Collision apply()
+	{
+		if (isOff())
+		{
+			return this;
+		}
+
+		gather(s.getParticles());
+		Arrays.fill(fx, 0, numMembers, 0);
+		Arrays.fill(fy, 0, numMembers, 0);
+		Arrays.fill(fz, 0, numMembers, 0);
+		evaluate(x, y, z, vx, vy, vz, free, fx, fy, fz);
+		for (int i=0; i<numMembers; i++)
+		{
+			if (free[i])
+			{
+				members[i].getForce().add(fx[i], fy[i], fz[i]);
+			}
+		}
+		return this;
+	}
+
+	/** Separates the given particle from any particles it overlaps. This finds all contacts in the system, 
+	 *  so is considerably slower than applying the force to all particles with {@link #apply()}.
+	 *  @param p the particle to apply the force to.
+	 *  @return the particle p, after the force is applied.
+	 *  @throws NullPointerException if <code>p == null</code>.
+	 */
+	@Override
+	public Particle apply(Particle p) throws NullPointerException
+	{
+		if (p == null)
+		{
+			throw new NullPointerException("Argument p is null in apply(p) call.");
+		}
+		if (isOn() && p.isFree())
+		{
+			gather(s.getParticles());
+			Arrays.fill(fx, 0, numMembers, 0);
+			Arrays.fill(fy, 0, numMembers, 0);
+			Arrays.fill(fz, 0, numMembers, 0);
+			evaluate(x, y, z, vx, vy, vz, free, fx, fy, fz);
+			for (int i=0; i<numMembers; i++)
+			{
+				if (members[i] == p)
+				{
+					p.getForce().add(fx[i], fy[i], fz[i]);
+				}
+			}
+		}
+		return p;
+	}
+
+	// -------------------------------- Package methods ---------------------------------
+
+	/** Reports that this force can be applied directly to particles held in array storage.
+	 *  @return True.
+	 */
+	@Override
+	boolean isArrayForce()
+	{
+		return true;
+	}
+
+	/** Separates every pair of overlapping particles held in array storage.
+	 *  @param a Array storage of the particles.
+	 */
+	@Override
+	void applyToArrays(ParticleArrays a)
+	{
+		if (isOff())
+		{
+			return;
+		}
+		int n = a.size;
+		if (members.length < n)
+		{
+			allocateParticles(Math.max(n, 2*members.length));
+		}
+		if (n != numMembers)
+		{
+			isRadiiChanged = true;
+		}
+		for (int i=0; i<n; i++)
+		{
+			if (members[i] != a.particles[i])
+			{
+				members[i] = a.particles[i];
+				isRadiiChanged = true;
+			}
+		}
+		if (n < numMembers)
+		{
+			Arrays.fill(members, n, numMembers, null);
+		}
+		numMembers = n;
+
+		// Accumulate separately before adding to the particle forces so that results match those of apply().
+		Arrays.fill(fx, 0, n, 0);
+		Arrays.fill(fy, 0, n, 0);
+		Arrays.fill(fz, 0, n, 0);
+		evaluate(a.x, a.y, a.z, a.vx, a.vy, a.vz, a.free, fx, fy, fz);
+		for (int i=0; i<n; i++)
+		{
+			if (a.free[i])
+			{
+				a.fx[i] += fx[i];
+				a.fy[i] += fy[i];
+				a.fz[i] += fz[i];
+			}
+		}
+	}
+
+	// -------------------------------- Private methods -----------------------------------
+
+	/** Copies the state of the given particles into this force's arrays, noting whether the particles have changed
+	 *  since their radii were last looked up.
+	 *  @param particles Particles to copy.
+	 */
+	private void gather(Collection<Particle> particles)
+	{
+		int n = particles.size();
+		if (members.length < n)
+		{
+			allocateParticles(Math.max(n, 2*members.length));
+		}
+		if (n != numMembers)
+		{
+			isRadiiChanged = true;
+		}
+		int i = 0;
+		for (Particle p : particles)
+		{
+			if (members[i] != p)
+			{
+				members[i] = p;
+				isRadiiChanged = true;
+			}
+			Vector3D pos = p.position();
+			Vector3D vel = p.velocity();
+			x[i] = pos.getX();
+			y[i] = pos.getY();
+			z[i] = pos.getZ();
+			vx[i] = vel.getX();
+			vy[i] = vel.getY();
+			vz[i] = vel.getZ();
+			free[i] = p.isFree();
+			i++;
+		}
+		if (n < numMembers)
+		{
+			Arrays.fill(members, n, numMembers, null);
+		}
+		numMembers = n;
+	}
+
+	/** Looks up the radius of each particle and finds the largest of them.
+	 */
+	private void updateRadii()
+	{
+		maxRadius = 0;
+		for (int i=0; i<numMembers; i++)
+		{
+			r[i] = getRadius(members[i]);
+			maxRadius = Math.max(maxRadius, r[i]);
+		}
+		isRadiiChanged = false;
+	}
+
+	/** Finds every overlapping pair of particles and applies the separating force between them.
+	 *  @param px x coordinates of the particles.
+	 *  @param py y coordinates of the particles.
+	 *  @param pz z coordinates of the particles.
+	 *  @param pvx x components of the particles' velocities.
+	 *  @param pvy y components of the particles' velocities.
+	 *  @param pvz z components of the particles' velocities.
+	 *  @param isFree Whether each particle is free.
+	 *  @param forceX Array to which the x component of the force on each particle is added.
+	 *  @param forceY Array to which the y component of the force on each particle is added.
+	 *  @param forceZ Array to which the z component of the force on each particle is added.
+	 */
+	private void evaluate(float[] px, float[] py, float[] pz, float[] pvx, float[] pvy, float[] pvz,
+			              boolean[] isFree, float[] forceX, float[] forceY, float[] forceZ)
+	{
+		if (isRadiiChanged)
+		{
+			updateRadii();
+		}
+		numContacts = 0;
+		int n = numMembers;
+		if (n < 2)
+		{
+			return;
+		}
+		int mask = buildHash(px, py, pz);
+
+		for (int i=0; i<n; i++)
+		{
+			int numVisited = 0;
+			for (int ox=-1; ox<=1; ox++)
+			{
+				for (int oy=-1; oy<=1; oy++)
+				{
+					for (int oz=-1; oz<=1; oz++)
+					{
+						int bucket = cellHash(cellX[i]+ox, cellY[i]+oy, cellZ[i]+oz) & mask;
+
+						// Distinct cells can share a bucket, so only search each bucket once.
+						boolean isVisited = false;
+						for (int v=0; v<numVisited; v++)
+						{
+							if (visited[v] == bucket)
+							{
+								isVisited = true;
+								break;
+							}
+						}
+						if (isVisited)
+						{
+							continue;
+						}
+						visited[numVisited++] = bucket;
+
+						for (int k=bucketStart[bucket]; k<bucketEnd[bucket]; k++)
+						{
+							int j = sorted[k];
+							if ((j > i) && (isFree[i] || isFree[j]))
+							{
+								separate(i, j, px, py, pz, pvx, pvy, pvz, isFree, forceX, forceY, forceZ);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/** Applies the separating force between the given pair of particles if they overlap.
+	 *  @param i Index of the first particle.
+	 *  @param j Index of the second particle.
+	 *  @param px x coordinates of the particles.
+	 *  @param py y coordinates of the particles.
+	 *  @param pz z coordinates of the particles.
+	 *  @param pvx x components of the particles' velocities.
+	 *  @param pvy y components of the particles' velocities.
+	 *  @param pvz z components of the particles' velocities.
+	 *  @param isFree Whether each particle is free.
+	 *  @param forceX Array to which the x component of the force on each particle is added.
+	 *  @param forceY Array to which the y component of the force on each particle is added.
+	 *  @param forceZ Array to which the z component of the force on each particle is added.
+	 */
+	private void separate(int i, int j, float[] px, float[] py, float[] pz, float[] pvx, float[] pvy, float[] pvz,
+			              boolean[] isFree, float[] forceX, float[] forceY, float[] forceZ)
+	{
+		float dx = px[i]-px[j];
+		float dy = py[i]-py[j];
+		float dz = pz[i]-pz[j];
+		float rSum = r[i]+r[j];
+		float len2 = dx*dx + dy*dy + dz*dz;
+		if (len2 >= rSum*rSum)
+		{
+			return;
+		}
+		numContacts++;
+
+		// Unit normal pointing from j to i. Coincident particles are separated along the x axis.
+		float len = (float)Math.sqrt(len2);
+		float nx = 1, ny = 0, nz = 0;
+		if (len > 0)
+		{
+			nx = dx/len;
+			ny = dy/len;
+			nz = dz/len;
+		}
+
+		// Penalty for the depth of overlap less damping of the speed of approach along the normal.
+		float approach = (pvx[i]-pvx[j])*nx + (pvy[i]-pvy[j])*ny + (pvz[i]-pvz[j])*nz;
+		float magnitude = stiffness*(rSum-len) - damping*approach;
+		if (magnitude <= 0)
+		{
+			// Particles separating quickly enough are not pulled back together.
+			return;
+		}
+		float sx = nx*magnitude;
+		float sy = ny*magnitude;
+		float sz = nz*magnitude;
+
+		if (isFree[i])
+		{
+			forceX[i] += sx;
+			forceY[i] += sy;
+			forceZ[i] += sz;
+		}
+		if (isFree[j])
+		{
+			forceX[j] -= sx;
+			forceY[j] -= sy;
+			forceZ[j] -= sz;
+		}
+	}
+
+	/** Places the particles into the buckets of a spatial hash of grid cells as wide as the largest particle 
+	 *  diameter. Particles are counted into their buckets and then ordered by bucket so that the hash can be
+	 *  built in time proportional to the number of particles.
+	 *  @param px x coordinates of the particles.
+	 *  @param py y coordinates of the particles.
+	 *  @param pz z coordinates of the particles.
+	 *  @return Mask that converts a cell hash into a bucket index.
+	 */
+	private int buildHash(float[] px, float[] py, float[] pz)
+	{
+		int n = numMembers;
+		int numBuckets = Integer.highestOneBit(Math.max(16, 2*n-1)) << 1;
+		if (bucketStart.length < numBuckets)
+		{
+			bucketStart = new int[numBuckets];
+			bucketEnd = new int[numBuckets];
+		}
+		int mask = numBuckets-1;
+		Arrays.fill(bucketEnd, 0, numBuckets, 0);
+
+		float cellSize = 2*maxRadius;
+		for (int i=0; i<n; i++)
+		{
+			cellX[i] = cell(px[i], cellSize);
+			cellY[i] = cell(py[i], cellSize);
+			cellZ[i] = cell(pz[i], cellSize);
+			bucketEnd[cellHash(cellX[i], cellY[i], cellZ[i]) & mask]++;
+		}
+
+		// Convert counts into start positions, then fill each bucket advancing its end position.
+		int start = 0;
+		for (int b=0; b<numBuckets; b++)
+		{
+			int count = bucketEnd[b];
+			bucketStart[b] = start;
+			bucketEnd[b] = start;
+			start += count;
+		}
+		for (int i=0; i<n; i++)
+		{
+			sorted[bucketEnd[cellHash(cellX[i], cellY[i], cellZ[i]) & mask]++] = i;
+		}
+		return mask;
+	}
+
+	/** Finds the grid cell containing the given coordinate.
+	 *  @param coord Coordinate to locate.
+	 *  @param cellSize Width of each cell.
+	 *  @return Cell index along the coordinate's axis.
+	 */
+	private static int cell(float coord, float cellSize)
+	{
+		return (int)Math.floor(coord/cellSize);
+	}
+
+	/** Calculates a hash of the given cell.
+	 *  @param cx Cell index along the x axis.
+	 *  @param cy Cell index along the y axis.
+	 *  @param cz Cell index along the z axis.
+	 *  @return Hash of the cell.
+	 */
+	private static int cellHash(int cx, int cy, int cz)
+	{
+		return (cx*73856093) ^ (cy*19349663) ^ (cz*83492791);
+	}
+
+	/** Resizes the arrays holding particle state, retaining the particles already stored.
+	 *  @param capacity Number of particles the arrays should be able to hold.
+	 */
+	private void allocateParticles(int capacity)
+	{
+		members = Arrays.copyOf(members, capacity);
+		x = new float[capacity];
+		y = new float[capacity];
+		z = new float[capacity];
+		vx = new float[capacity];
+		vy = new float[capacity];
+		vz = new float[capacity];
+		r = new float[capacity];
+		free = new boolean[capacity];
+		fx = new float[capacity];
+		fy = new float[capacity];
+		fz = new float[capacity];
+		cellX = new int[capacity];
+		cellY = new int[capacity];
+		cellZ = new int[capacity];
+		sorted = new int[capacity];
+		isRadiiChanged = true;
+	}
+}
@@ -0,0 +1,633 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+// *****************************************************************************************
+/** A {@link UniversalForce} that applies an inverse-square attraction or repulsion between
+ *  every pair of particles in a {@link ParticleSystem} that are closer than a cutoff radius.
+ *  Within the cutoff, the force is identical to that of an {@link Attraction} with the same
+ *  strength and minimum distance; beyond it, no force is applied. This makes it suitable for
+ *  short-range forces such as local repulsion that would otherwise need an attraction to be
+ *  created for every pair of particles.
+ *  <br /><br />
+ *  Candidate pairs are found by placing particles in a uniform grid of cells the size of the 
+ *  cutoff radius plus a 'skin' distance, and only comparing particles in neighbouring cells. 
+ *  The resulting list of neighbouring pairs is reused until some particle has moved more than 
+ *  half the skin distance, so the grid only needs to be rebuilt occasionally. A larger skin
+ *  means fewer rebuilds but more pairs to evaluate each time the force is applied.
+ *  <br /><br />
+ *  To use, add the force to a particle system as a custom force:<br />
+ *  <code>physics.addCustomForce(new CutoffAttraction(physics, -100, 1, 50));</code>
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class CutoffAttraction extends UniversalForce
+{
+	// --------------------------- Class and object variables -----------------------------
+
+								/** The default skin distance as a proportion of the cutoff radius. */
+	public static final float DEFAULT_SKIN_FRACTION = 0.25f;
+
+	private ParticleSystem s;		// The particle system whose particles attract each other.
+	private float k;				// Strength of attraction; positive values attract, negative repel.
+	private float distanceMin;		// Minimum separation used when calculating the force.
+	private float cutoff;			// Separation beyond which no force is applied.
+	private float skin;				// Extra distance within which pairs are kept in the neighbour list.
+
+	// Particles and their state copied each time the force is applied.
+	private int numMembers;
+	private Particle[] members;
+	private float[] x,y,z,m;
+	private boolean[] free;
+	private float[] fx,fy,fz;		// Forces accumulated when applying to particle objects.
+	private float[] refX,refY,refZ;	// Positions when the neighbour list was built.
+
+	// Neighbour list of pairs of particles within the cutoff plus skin distance.
+	private int numPairs;
+	private int[] pairI,pairJ;
+	private long[] cellKeys;		// Cell hash and particle index, sorted by cell.
+	private int[] visited;			// Hashes of cells already searched for the current particle.
+	private boolean isRebuildNeeded;
+	private int numBuilds;
+
+	// ---------------------------------- Constructors ------------------------------------
+
+	/** Creates a short-range force between all the particles of the given system using the default skin
+	 *  distance determined by {@link #DEFAULT_SKIN_FRACTION}.
+	 *  @param s Particle system whose particles are to attract or repel each other.
+	 *  @param k Strength of the force. Positive values attract, negative values repel.
+	 *  @param distanceMin Minimum distance between particles used when calculating the force. This
+	 *                     limits the size of the force between nearly coincident particles.
+	 *  @param cutoff Separation beyond which no force is applied between particles.
+	 *  @throws NullPointerException if the particle system is null.
+	 *  @throws IllegalArgumentException if distanceMin or the cutoff is <=0.
+	 */
+	public CutoffAttraction(ParticleSystem s, float k, float distanceMin, float cutoff) throws NullPointerException, IllegalArgumentException
+	{
+		this(s, k, distanceMin, cutoff, cutoff*DEFAULT_SKIN_FRACTION);
+	}
+
+	/** Creates a short-range force between all the particles of the given system.
+	 *  @param s Particle system whose particles are to attract or repel each other.
+	 *  @param k Strength of the force. Positive values attract, negative values repel.
+	 *  @param distanceMin Minimum distance between particles used when calculating the force. This
+	 *                     limits the size of the force between nearly coincident particles.
+	 *  @param cutoff Separation beyond which no force is applied between particles.
+	 *  @param skin Extra distance beyond the cutoff within which pairs of particles are tracked.
+	 *  @throws NullPointerException if the particle system is null.
+	 *  @throws IllegalArgumentException if distanceMin or the cutoff is <=0 or the skin is negative.
+	 */
+	public CutoffAttraction(ParticleSystem s, float k, float distanceMin, float cutoff, float skin) throws NullPointerException, IllegalArgumentException
+	{
+		super();
+		if (s == null)
+		{
+			throw new NullPointerException("Particle system is null in CutoffAttraction constructor.");
+		}
+		this.s = s;
+		setStrength(k);
+		setMinimumDistance(distanceMin);
+		setCutoff(cutoff);
+		setSkin(skin);
+
+		members = new Particle[0];
+		allocateParticles(16);
+		pairI = new int[64];
+		pairJ = new int[64];
+		visited = new int[27];
+	}
+
+	// ------------------------------------ Methods ---------------------------------------
+
+	/** Sets the strength of the force. Positive values attract, negative values repel.
+	 *  @param k the strength of the force.
+	 *  @return this force with its new strength.
+	 */
+	public final CutoffAttraction setStrength(float k)
+	{
+		this.k = k;
+		return this;
+	}
+
+	/** Reports the strength of the force.
+	 *  @return the strength of the force; positive for attractive forces, negative for repulsive ones.
+	 */
+	public final float getStrength()
+	{
+		return k;
+	}
+
+	/** Sets the minimum separation distance used when calculating the force between particles.
+	 *  @param d the new minimum distance
+	 *  @return this force with the new minimum distance setting.
+	 *  @throws IllegalArgumentException if d<=0
+	 */
+	public final CutoffAttraction setMinimumDistance(float d) throws IllegalArgumentException
+	{
+		if (d<=0)
+		{
+			throw new IllegalArgumentException("Argument d is "+d+"; cannot specify a minimum distance <=0.");
+		}
+		distanceMin = d;
+		return this;
+	}
+
+	/** Reports the minimum separation distance used when calculating the force between particles.
+	 *  @return the minimum separation distance.
+	 */
+	public final float getMinimumDistance()
+	{
+		return distanceMin;
+	}
+
+	/** Sets the separation beyond which no force is applied between particles.
+	 *  @param cutoff the new cutoff radius.
+	 *  @return this force with its new cutoff radius.
+	 *  @throws IllegalArgumentException if the cutoff is <=0.
+	 */
+	public final CutoffAttraction setCutoff(float cutoff) throws IllegalArgumentException
+	{
+		if (cutoff<=0)
+		{
+			throw new IllegalArgumentException("Argument cutoff is "+cutoff+"; cannot specify a cutoff radius <=0.");
+		}
+		this.cutoff = cutoff;
+		isRebuildNeeded = true;
+		return this;
+	}
+
+	/** Reports the separation beyond which no force is applied between particles.
+	 *  @return the cutoff radius.
+	 */
+	public final float getCutoff()
+	{
+		return cutoff;
+	}
+
+	/** Sets the extra distance beyond the cutoff within which pairs of particles are kept in the neighbour 
+	 *  list. The list is rebuilt whenever a particle moves more than half this distance.
+	 *  @param skin the new skin distance.
+	 *  @return this force with its new skin distance.
+	 *  @throws IllegalArgumentException if the skin is negative.
+	 */
+	public final CutoffAttraction setSkin(float skin) throws IllegalArgumentException
+	{
+		if (skin<0)
+		{
+			throw new IllegalArgumentException("Argument skin is "+skin+"; cannot specify a negative skin distance.");
+		}
+		this.skin = skin;
+		isRebuildNeeded = true;
+		return this;
+	}
+
+	/** Reports the extra distance beyond the cutoff within which pairs of particles are kept in the neighbour list.
+	 *  @return the skin distance.
+	 */
+	public final float getSkin()
+	{
+		return skin;
+	}
+
+	/** Reports the number of pairs of particles in the current neighbour list. These are the pairs that 
+	 *  are evaluated each time the force is applied.
+	 *  @return Number of neighbouring pairs.
+	 */
+	public final int getNumPairs()
+	{
+		return numPairs;
+	}
+
+	/** Reports the number of times the neighbour list has been built since this force was created.
+	 *  @return Number of neighbour list builds.
+	 */
+	public final int getNumBuilds()
+	{
+		return numBuilds;
+	}
+
+	/** Applies the force between every pair of neighbouring particles in the system. Unlike most universal 
+	 *  forces, this can be called directly, so is the method used when the force is added as a custom force
+	 *  of a {@link ParticleSystem}.
+	 *  @return this force.
+	 */
+	@Override
+	public CutoffAttraction apply()
+	{
+		if (isOff())
+		{
+			return this;
+		}
+
+		gather(s.getParticles());
+		Arrays.fill(fx, 0, numMembers, 0);
+		Arrays.fill(fy, 0, numMembers, 0);
+		Arrays.fill(fz, 0, numMembers, 0);
+		evaluate(x, y, z, m, free, fx, fy, fz);
+		for (int i=0; i<numMembers; i++)
+		{
+			if (free[i])
+			{
+				members[i].getForce().add(fx[i], fy[i], fz[i]);
+			}
+		}
+		return this;
+	}
+
+	/** Applies the force from all neighbouring particles to the given particle. This updates the neighbour 
+	 *  list if necessary, so is considerably slower than applying the force to all particles with {@link #apply()}.
+	 *  @param p the particle to apply the force to.
+	 *  @return the particle p, after the force is applied.
+	 *  @throws NullPointerException if <code>p == null</code>.
+	 */
+	@Override
+	public Particle apply(Particle p) throws NullPointerException
+	{
+		if (p == null)
+		{
+			throw new NullPointerException("Argument p is null in apply(p) call.");
+		}
+		if (isOn() && p.isFree())
+		{
+			gather(s.getParticles());
+			Arrays.fill(fx, 0, numMembers, 0);
+			Arrays.fill(fy, 0, numMembers, 0);
+			Arrays.fill(fz, 0, numMembers, 0);
+			evaluate(x, y, z, m, free, fx, fy, fz);
+			for (int i=0; i<numMembers; i++)
+			{
+				if (members[i] == p)
+				{
+					p.getForce().add(fx[i], fy[i], fz[i]);
+				}
+			}
+		}
+		return p;
+	}
+
+	// -------------------------------- Package methods ---------------------------------
+
+	/** Reports that this force can be applied directly to particles held in array storage.
+	 *  @return True.
+	 */
+	@Override
+	boolean isArrayForce()
+	{
+		return true;
+	}
+
+	/** Applies the force between every pair of neighbouring particles held in array storage.
+	 *  @param a Array storage of the particles.
+	 */
+	@Override
+	void applyToArrays(ParticleArrays a)
+	{
+		if (isOff())
+		{
+			return;
+		}
+		int n = a.size;
+		if (members.length < n)
+		{
+			allocateParticles(Math.max(n, 2*members.length));
+		}
+		if (n != numMembers)
+		{
+			isRebuildNeeded = true;
+		}
+		for (int i=0; i<n; i++)
+		{
+			if (members[i] != a.particles[i])
+			{
+				members[i] = a.particles[i];
+				isRebuildNeeded = true;
+			}
+		}
+		if (n < numMembers)
+		{
+			Arrays.fill(members, n, numMembers, null);
+		}
+		numMembers = n;
+
+		// Accumulate separately before adding to the particle forces so that results match those of apply().
+		Arrays.fill(fx, 0, n, 0);
+		Arrays.fill(fy, 0, n, 0);
+		Arrays.fill(fz, 0, n, 0);
+		evaluate(a.x, a.y, a.z, a.mass, a.free, fx, fy, fz);
+		for (int i=0; i<n; i++)
+		{
+			if (a.free[i])
+			{
+				a.fx[i] += fx[i];
+				a.fy[i] += fy[i];
+				a.fz[i] += fz[i];
+			}
+		}
+	}
+
+	// -------------------------------- Private methods -----------------------------------
+
+	/** Copies the state of the given particles into this force's arrays, noting whether the particles have changed
+	 *  since the neighbour list was built.
+	 *  @param particles Particles to copy.
+	 */
+	private void gather(Collection<Particle> particles)
+	{
+		int n = particles.size();
+		if (members.length < n)
+		{
+			allocateParticles(Math.max(n, 2*members.length));
+		}
+		if (n != numMembers)
+		{
+			isRebuildNeeded = true;
+		}
+		int i = 0;
+		for (Particle p : particles)
+		{
+			if (members[i] != p)
+			{
+				members[i] = p;
+				isRebuildNeeded = true;
+			}
+			Vector3D pos = p.position();
+			x[i] = pos.getX();
+			y[i] = pos.getY();
+			z[i] = pos.getZ();
+			m[i] = p.mass();
+			free[i] = p.isFree();
+			i++;
+		}
+		if (n < numMembers)
+		{
+			Arrays.fill(members, n, numMembers, null);
+		}
+		numMembers = n;
+	}
+
+	/** Applies the force between each pair in the neighbour list that is within the cutoff radius, first 
+	 *  rebuilding the list if particles have changed or moved too far since it was built.
+	 *  @param px x coordinates of the particles.
+	 *  @param py y coordinates of the particles.
+	 *  @param pz z coordinates of the particles.
+	 *  @param pm Masses of the particles.
+	 *  @param isFree Whether each particle is free.
+	 *  @param forceX Array to which the x component of the force on each particle is added.
+	 *  @param forceY Array to which the y component of the force on each particle is added.
+	 *  @param forceZ Array to which the z component of the force on each particle is added.
+	 */
+	private void evaluate(float[] px, float[] py, float[] pz, float[] pm, boolean[] isFree, float[] forceX, float[] forceY, float[] forceZ)
+	{
+		if (isRebuildNeeded || hasMovedTooFar(px, py, pz))
+		{
+			buildNeighbours(px, py, pz);
+		}
+
+		float cutoff2 = cutoff*cutoff;
+		for (int pair=0; pair<numPairs; pair++)
+		{
+			int i = pairI[pair];
+			int j = pairJ[pair];
+			boolean isFreeI = isFree[i];
+			boolean isFreeJ = isFree[j];
+			if (!isFreeI && !isFreeJ)
+			{
+				continue;
+			}
+
+			float dx = px[i]-px[j];
+			float dy = py[i]-py[j];
+			float dz = pz[i]-pz[j];
+			float len2 = dx*dx + dy*dy + dz*dz;
+			if ((len2 > cutoff2) || (len2 == 0))
+			{
+				continue;
+			}
+			float len = (float)Math.sqrt(len2);
+			if (len < distanceMin)
+			{
+				// Limit the force between close particles by flooring their separation.
+				float scale = distanceMin/len;
+				dx *= scale;
+				dy *= scale;
+				dz *= scale;
+				len = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+			}
+
+			float scale = (-k*pm[i]*pm[j]/(dx*dx + dy*dy + dz*dz))/len;
+			dx *= scale;
+			dy *= scale;
+			dz *= scale;
+
+			if (isFreeI)
+			{
+				forceX[i] += dx;
+				forceY[i] += dy;
+				forceZ[i] += dz;
+			}
+			if (isFreeJ)
+			{
+				forceX[j] -= dx;
+				forceY[j] -= dy;
+				forceZ[j] -= dz;
+			}
+		}
+	}
+
+	/** Reports whether any particle has moved more than half the skin distance since the neighbour list was built.
+	 *  @param px x coordinates of the particles.
+	 *  @param py y coordinates of the particles.
+	 *  @param pz z coordinates of the particles.
+	 *  @return True if the neighbour list needs to be rebuilt.
+	 */
+	private boolean hasMovedTooFar(float[] px, float[] py, float[] pz)
+	{
+		float limit2 = 0.25f*skin*skin;
+		for (int i=0; i<numMembers; i++)
+		{
+			float dx = px[i]-refX[i];
+			float dy = py[i]-refY[i];
+			float dz = pz[i]-refZ[i];
+			if (!(dx*dx + dy*dy + dz*dz <= limit2))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Builds the list of pairs of particles within the cutoff plus skin distance of each other. Particles are
+	 *  sorted by the cell of a uniform grid they occupy, so that only particles in neighbouring cells need be
+	 *  compared.
+	 *  @param px x coordinates of the particles.
+	 *  @param py y coordinates of the particles.
+	 *  @param pz z coordinates of the particles.
+	 */
+	private void buildNeighbours(float[] px, float[] py, float[] pz)
+	{
+		int n = numMembers;
+		float cellSize = cutoff+skin;
+		float range2 = cellSize*cellSize;
+		for (int i=0; i<n; i++)
+		{
+			refX[i] = px[i];
+			refY[i] = py[i];
+			refZ[i] = pz[i];
+			int hash = cellHash(cell(px[i],cellSize), cell(py[i],cellSize), cell(pz[i],cellSize));
+			cellKeys[i] = ((long)hash << 32) | i;
+		}
+		Arrays.sort(cellKeys, 0, n);
+
+		numPairs = 0;
+		for (int i=0; i<n; i++)
+		{
+			int cx = cell(px[i],cellSize);
+			int cy = cell(py[i],cellSize);
+			int cz = cell(pz[i],cellSize);
+			int numVisited = 0;
+			for (int ox=-1; ox<=1; ox++)
+			{
+				for (int oy=-1; oy<=1; oy++)
+				{
+					for (int oz=-1; oz<=1; oz++)
+					{
+						int hash = cellHash(cx+ox, cy+oy, cz+oz);
+
+						// Distinct cells can share a hash, so only search each hash once.
+						boolean isVisited = false;
+						for (int v=0; v<numVisited; v++)
+						{
+							if (visited[v] == hash)
+							{
+								isVisited = true;
+								break;
+							}
+						}
+						if (isVisited)
+						{
+							continue;
+						}
+						visited[numVisited++] = hash;
+
+						for (int c=firstKey(hash, n); (c<n) && ((int)(cellKeys[c] >>> 32) == hash); c++)
+						{
+							int j = (int)cellKeys[c];
+							if (j > i)
+							{
+								float dx = px[i]-px[j];
+								float dy = py[i]-py[j];
+								float dz = pz[i]-pz[j];
+								if (dx*dx + dy*dy + dz*dz <= range2)
+								{
+									addPair(i, j);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		isRebuildNeeded = false;
+		numBuilds++;
+	}
+
+	/** Finds the position of the first sorted cell key with the given hash.
+	 *  @param hash Hash of the cell to find.
+	 *  @param n Number of keys.
+	 *  @return Position of the first key with the hash, or of the next larger key if there is none.
+	 */
+	private int firstKey(int hash, int n)
+	{
+		long target = (long)hash << 32;
+		int low = 0;
+		int high = n;
+		while (low < high)
+		{
+			int mid = (low+high) >>> 1;
+			if (cellKeys[mid] < target)
+			{
+				low = mid+1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/** Adds the given pair of particles to the neighbour list, enlarging it if necessary.
+	 *  @param i Index of the first particle.
+	 *  @param j Index of the second particle.
+	 */
+	private void addPair(int i, int j)
+	{
+		if (numPairs == pairI.length)
+		{
+			pairI = Arrays.copyOf(pairI, 2*numPairs);
+			pairJ = Arrays.copyOf(pairJ, 2*numPairs);
+		}
+		pairI[numPairs] = i;
+		pairJ[numPairs] = j;
+		numPairs++;
+	}
+
+	/** Finds the grid cell containing the given coordinate.
+	 *  @param coord Coordinate to locate.
+	 *  @param cellSize Width of each cell.
+	 *  @return Cell index along the coordinate's axis.
+	 */
+	private static int cell(float coord, float cellSize)
+	{
+		return (int)Math.floor(coord/cellSize);
+	}
+
+	/** Calculates a non-negative hash of the given cell.
+	 *  @param cx Cell index along the x axis.
+	 *  @param cy Cell index along the y axis.
+	 *  @param cz Cell index along the z axis.
+	 *  @return Hash of the cell.
+	 */
+	private static int cellHash(int cx, int cy, int cz)
+	{
+		return ((cx*73856093) ^ (cy*19349663) ^ (cz*83492791)) & 0x7fffffff;
+	}
+
+	/** Resizes the arrays holding particle state, retaining the particles already stored.
+	 *  @param capacity Number of particles the arrays should be able to hold.
+	 */
+	private void allocateParticles(int capacity)
+	{
+		members = Arrays.copyOf(members, capacity);
+		x = new float[capacity];
+		y = new float[capacity];
+		z = new float[capacity];
+		m = new float[capacity];
+		free = new boolean[capacity];
+		fx = new float[capacity];
+		fy = new float[capacity];
+		fz = new float[capacity];
+		refX = new float[capacity];
+		refY = new float[capacity];
+		refZ = new float[capacity];
+		cellKeys = new long[capacity];
+		isRebuildNeeded = true;
+	}
+}
@@ -14,6 +14,10 @@ package org.gicentre.utils.network.traer.physics;
  */
 public class ForwardEulerIntegrator extends Integrator
 {
+	// ------------------------------- Object variables --------------------------------
+
+	private StepUpdate update;		// Update applied to particles held in array storage.
+
 	// --------------------------------- Constructors ----------------------------------
 
 	/** Sets up the integrator.
@@ -21,7 +25,8 @@ public class ForwardEulerIntegrator extends Integrator
 	 */
 	public ForwardEulerIntegrator(ParticleSystem s) 
 	{
-		super(s); 
+		super(s);
+		update = new StepUpdate();
 	}
 
 	// ----------------------------------- Methods -------------------------------------
@@ -31,20 +36,65 @@ public class ForwardEulerIntegrator extends Integrator
 	 */
 	public ForwardEulerIntegrator step(float deltaT) 
 	{
+		ParticleArrays arrays = s.loadArrays();
+		
 		// Clear any residual forces, then apply all existing forces
 		s.clearForces();
 		s.applyForces();
 
+		if (arrays != null)
+		{
+			update.a = arrays;
+			update.deltaT = deltaT;
+			s.updateArrays(arrays.size, update);
+			s.storeArrays();
+			return this;
+		}
+		
 		for (Particle p : s.getParticles())
 		{
 			if (p.isFree()) 
 			{                                                   
+				p.age += deltaT;
 				// For all free particles...
-				p.position().add(Vector3D.multiplyBy(p.velocity(),deltaT));   // update position
-				p.velocity().add(p.getForce().multiplyBy(deltaT/p.mass()));     // update velocity
+				Vector3D v = p.velocity;
+				p.position.add(v.getX()*deltaT, v.getY()*deltaT, v.getZ()*deltaT);	// update position
+				v.add(p.getForce().multiplyBy(deltaT/p.mass()));     				// update velocity
 			}
 		}
 		return this;
 	}
-}
 
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** Update that advances a range of particles held in array storage by one time step.
+	 */
+	private static class StepUpdate implements ArrayUpdate
+	{
+		ParticleArrays a;		// Arrays holding the particles to update.
+		float deltaT;			// Time step over which to advance the particles.
+
+		/** Advances the free particles in the given range.
+		 *  @param start Index of the first particle to update.
+		 *  @param end Index one beyond the last particle to update.
+		 */
+		public void update(int start, int end)
+		{
+			ParticleArrays arrays = a;
+			for (int i=start; i<end; i++)
+			{
+				if (arrays.free[i])
+				{
+					arrays.particles[i].age += deltaT;
+					float dtm = deltaT/arrays.mass[i];
+					arrays.x[i] += arrays.vx[i]*deltaT;			// update position
+					arrays.y[i] += arrays.vy[i]*deltaT;
+					arrays.z[i] += arrays.vz[i]*deltaT;
+					arrays.vx[i] += arrays.fx[i]*dtm;			// update velocity
+					arrays.vy[i] += arrays.fy[i]*dtm;
+					arrays.vz[i] += arrays.fz[i]*dtm;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,480 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+// *****************************************************************************************
+/** Class capable of performing implicit (backward) Euler integration of spring networks. 
+ *  Unlike the {@link BackwardEulerIntegrator}, which only updates velocities before positions,
+ *  this integrator finds the change in velocity that balances the spring forces at the 
+ *  <i>end</i> of each step. It does this by linearising the springs about the current state
+ *  and solving the resulting sparse linear system with a preconditioned conjugate gradient 
+ *  method. Each step is more expensive than an explicit one, but very stiff networks remain
+ *  stable with time steps large enough to settle in a handful of steps rather than thousands.
+ *  The method is strongly damped, so it is best suited to finding equilibrium layouts rather
+ *  than animating oscillating systems.
+ *  <br /><br />
+ *  Springs and the drag of the particle system are treated implicitly; all other forces, 
+ *  including gravity, attractions and custom forces, are evaluated once at the start of the step. Compressed springs contribute
+ *  only along their length so that the linear system remains positive definite. The matrix 
+ *  is never assembled: each spring stores the few coefficients needed to multiply by its
+ *  contribution, and all working arrays are reused between steps, so once they have grown
+ *  to the size of the system, a step creates no new objects.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class ImplicitEulerIntegrator extends Integrator
+{
+	// ------------------------------- Object variables --------------------------------
+
+								/** Default maximum number of conjugate gradient iterations in each step. */
+	public static final int DEFAULT_MAX_ITERATIONS = 100;
+								/** Default residual, relative to the initial residual, at which the solution is accepted. */
+	public static final float DEFAULT_TOLERANCE = 0.0001f;
+
+	private int maxIterations;			// Maximum number of conjugate gradient iterations in each step.
+	private float tolerance;			// Relative residual at which the solution is accepted.
+	private int numIterations;			// Iterations taken by the most recent solution.
+
+	// Vectors of three components per particle, interleaved by particle.
+	private float[] dv;					// Change in velocity being solved for.
+	private float[] r;					// Residual.
+	private float[] z;					// Preconditioned residual.
+	private float[] p;					// Search direction.
+	private float[] q;					// Product of the system matrix and the search direction.
+	private float[] diag;				// Diagonal of the system matrix used as a preconditioner.
+	private float dragStep;				// Drag of the particle system scaled by the time step.
+
+	// Linearised springs built at the start of each step.
+	private int numSprings;
+	private Spring[] springArray;
+	private int[] endI,endJ;			// Indices of the particles at each end of each spring.
+	private float[] nx,ny,nz;			// Unit direction of each spring.
+	private float[] cPerp;				// Coefficient of each spring's contribution in all directions.
+	private float[] cAlong;				// Additional coefficient of each spring's contribution along its length.
+
+	// --------------------------------- Constructors ----------------------------------
+
+	/** Sets up the integrator to be used by the given particle system with the default solver settings.
+	 *  @param s Particle system upon which to perform the integration.
+	 */
+	public ImplicitEulerIntegrator(ParticleSystem s)
+	{
+		this(s, DEFAULT_MAX_ITERATIONS, DEFAULT_TOLERANCE);
+	}
+
+	/** Sets up the integrator to be used by the given particle system.
+	 *  @param s Particle system upon which to perform the integration.
+	 *  @param maxIterations Maximum number of conjugate gradient iterations in each step.
+	 *  @param tolerance Residual, relative to the initial residual, at which the solution is accepted.
+	 *  @throws IllegalArgumentException if the maximum number of iterations is less than 1 or the tolerance is not positive.
+	 */
+	public ImplicitEulerIntegrator(ParticleSystem s, int maxIterations, float tolerance) throws IllegalArgumentException
+	{
+		super(s);
+		setMaxIterations(maxIterations);
+		setTolerance(tolerance);
+		springArray = new Spring[0];
+		allocateParticles(16);
+		allocateSprings(16);
+	}
+
+	// ----------------------------------- Methods -------------------------------------
+
+	/** Advances the particles' positions and velocities over the given time step.
+	 *  @param deltaT Time step over which to update the particles.
+	 *  @return The integrator that updates the system.
+	 *  @throws IllegalStateException if a spring is attached to a particle not in the particle system.
+	 */
+	public ImplicitEulerIntegrator step(float deltaT) throws IllegalStateException
+	{
+		ParticleArrays a = loadArrays();
+
+		int n = a.size;
+		if (diag.length < 3*n)
+		{
+			allocateParticles(Math.max(n, 2*diag.length/3));
+		}
+
+		applyForces(a);
+		buildSystem(a, deltaT);
+		solve(a);
+
+		for (int i=0; i<n; i++)
+		{
+			if (a.free[i])
+			{
+				a.particles[i].age += deltaT;
+				a.vx[i] += dv[3*i];
+				a.vy[i] += dv[3*i+1];
+				a.vz[i] += dv[3*i+2];
+				a.x[i]  += a.vx[i]*deltaT;
+				a.y[i]  += a.vy[i]*deltaT;
+				a.z[i]  += a.vz[i]*deltaT;
+			}
+		}
+
+		// Release references to springs so that removed ones can be garbage collected.
+		Arrays.fill(springArray, 0, numSprings, null);
+
+		storeArrays(a);
+		return this;
+	}
+
+	/** Sets the maximum number of conjugate gradient iterations made in each step. 
+	 *  @param maxIterations Maximum number of iterations.
+	 *  @return This integrator with its new maximum number of iterations.
+	 *  @throws IllegalArgumentException if the maximum number of iterations is less than 1.
+	 */
+	public ImplicitEulerIntegrator setMaxIterations(int maxIterations) throws IllegalArgumentException
+	{
+		if (maxIterations < 1)
+		{
+			throw new IllegalArgumentException("Argument maxIterations is "+maxIterations+"; must make at least one iteration per step.");
+		}
+		this.maxIterations = maxIterations;
+		return this;
+	}
+
+	/** Reports the maximum number of conjugate gradient iterations made in each step. 
+	 *  @return Maximum number of iterations.
+	 */
+	public int getMaxIterations()
+	{
+		return maxIterations;
+	}
+
+	/** Sets the residual, relative to the initial residual, at which the solution of each step is accepted.
+	 *  Smaller values give more accurate solutions but need more iterations.
+	 *  @param tolerance New relative tolerance.
+	 *  @return This integrator with its new tolerance.
+	 *  @throws IllegalArgumentException if the tolerance is not positive.
+	 */
+	public ImplicitEulerIntegrator setTolerance(float tolerance) throws IllegalArgumentException
+	{
+		if (tolerance <= 0)
+		{
+			throw new IllegalArgumentException("Argument tolerance is "+tolerance+"; tolerance must be positive.");
+		}
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/** Reports the residual, relative to the initial residual, at which the solution of each step is accepted.
+	 *  @return Relative tolerance.
+	 */
+	public float getTolerance()
+	{
+		return tolerance;
+	}
+
+	/** Reports the number of conjugate gradient iterations taken by the most recent step.
+	 *  @return Number of iterations.
+	 */
+	public int getNumIterations()
+	{
+		return numIterations;
+	}
+
+	// ------------------------------ Package methods ---------------------------------
+
+	/** Reports the number of bytes needed to save the maximum number of iterations and the tolerance.
+	 *  @param a Arrays holding the particles of the system being saved.
+	 *  @return Number of bytes written by {@link #writeState(ByteBuffer, ParticleArrays)}.
+	 */
+	@Override
+	int getStateSize(ParticleArrays a)
+	{
+		return 8;
+	}
+
+	/** Writes the maximum number of iterations and the tolerance so that a restored system solves each 
+	 *  step to the same accuracy as the original.
+	 *  @param out Buffer into which the state is written.
+	 *  @param a Arrays holding the particles of the system being saved.
+	 */
+	@Override
+	void writeState(ByteBuffer out, ParticleArrays a)
+	{
+		out.putInt(maxIterations).putFloat(tolerance);
+	}
+
+	/** Reads the maximum number of iterations and tolerance previously written by 
+	 *  {@link #writeState(ByteBuffer, ParticleArrays)}.
+	 *  @param in Buffer from which the state is read.
+	 *  @param a Arrays holding the particles of the restored system.
+	 */
+	@Override
+	void readState(ByteBuffer in, ParticleArrays a)
+	{
+		setMaxIterations(in.getInt());
+		setTolerance(in.getFloat());
+	}
+
+	// ------------------------------- Private methods ---------------------------------
+
+	/** Linearises each spring about the current state and builds the right hand side and diagonal of the
+	 *  linear system <code>(M - dt df/dv - dt<sup>2</sup> df/dx) dv = dt (f + dt df/dx v)</code>, where the 
+	 *  derivatives are those of the springs and drag.
+	 *  @param a Arrays holding the state of the particles, with the forces at the start of the step.
+	 *  @param deltaT Time step over which the particles are being advanced.
+	 *  @throws IllegalStateException if a spring is attached to a particle not held in the arrays.
+	 */
+	private void buildSystem(ParticleArrays a, float deltaT) throws IllegalStateException
+	{
+		int n = a.size;
+		dragStep = deltaT*s.getDrag();
+		for (int i=0; i<n; i++)
+		{
+			float m = a.free[i] ? a.mass[i]+dragStep : 1;
+			diag[3*i] = m;
+			diag[3*i+1] = m;
+			diag[3*i+2] = m;
+			r[3*i]   = a.free[i] ? a.fx[i]*deltaT : 0;
+			r[3*i+1] = a.free[i] ? a.fy[i]*deltaT : 0;
+			r[3*i+2] = a.free[i] ? a.fz[i]*deltaT : 0;
+		}
+
+		Collection<Spring> springs = s.getActiveSprings();
+		springArray = springs.toArray(springArray);
+		int numActive = springs.size();
+		if (endI.length < numActive)
+		{
+			allocateSprings(Math.max(numActive, 2*endI.length));
+		}
+
+		float dt2 = deltaT*deltaT;
+		numSprings = 0;
+		for (int k=0; k<numActive; k++)
+		{
+			Spring spring = springArray[k];
+			if (spring.isOff())
+			{
+				continue;
+			}
+			int i = a.indexOf(spring.getOneEnd());
+			int j = a.indexOf(spring.getTheOtherEnd());
+			if ((i < 0) || (j < 0))
+			{
+				throw new IllegalStateException("Spring is attached to a particle that is not part of the particle system.");
+			}
+			if (!a.free[i] && !a.free[j])
+			{
+				continue;
+			}
+			float dx = a.x[i]-a.x[j];
+			float dy = a.y[i]-a.y[j];
+			float dz = a.z[i]-a.z[j];
+			float len = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+			if (len == 0)
+			{
+				// No direction in which to linearise, so leave the spring explicit for this step.
+				continue;
+			}
+
+			// Stiffness across the spring is dropped when compressed so the system stays positive definite.
+			float ks = spring.strength();
+			float perp = ks*Math.max(0, 1-spring.restLength()/len);
+			springArray[numSprings] = spring;
+			endI[numSprings] = i;
+			endJ[numSprings] = j;
+			nx[numSprings] = dx/len;
+			ny[numSprings] = dy/len;
+			nz[numSprings] = dz/len;
+			cPerp[numSprings] = dt2*perp;
+			cAlong[numSprings] = dt2*(ks-perp) + deltaT*spring.damping();
+
+			// Add the change in force over the step due to the current velocities, -dt^2 K (vi-vj).
+			float ux = a.vx[i]-a.vx[j];
+			float uy = a.vy[i]-a.vy[j];
+			float uz = a.vz[i]-a.vz[j];
+			float along = dt2*(ks-perp)*(ux*nx[numSprings] + uy*ny[numSprings] + uz*nz[numSprings]);
+			float wx = dt2*perp*ux + along*nx[numSprings];
+			float wy = dt2*perp*uy + along*ny[numSprings];
+			float wz = dt2*perp*uz + along*nz[numSprings];
+			addPair(r, i, j, -wx, -wy, -wz, a.free);
+
+			float hxx = cPerp[numSprings] + cAlong[numSprings]*nx[numSprings]*nx[numSprings];
+			float hyy = cPerp[numSprings] + cAlong[numSprings]*ny[numSprings]*ny[numSprings];
+			float hzz = cPerp[numSprings] + cAlong[numSprings]*nz[numSprings]*nz[numSprings];
+			diag[3*i]   += hxx;
+			diag[3*i+1] += hyy;
+			diag[3*i+2] += hzz;
+			diag[3*j]   += hxx;
+			diag[3*j+1] += hyy;
+			diag[3*j+2] += hzz;
+			numSprings++;
+		}
+		Arrays.fill(springArray, numSprings, numActive, null);
+	}
+
+	/** Solves the linear system for the change in velocity of each particle using the conjugate gradient 
+	 *  method with a diagonal preconditioner. The residual already holds the right hand side. Fixed particles
+	 *  are excluded by keeping their components of the residual and search direction at zero.
+	 *  @param a Arrays holding the state of the particles.
+	 */
+	private void solve(ParticleArrays a)
+	{
+		int len = 3*a.size;
+		Arrays.fill(dv, 0, len, 0);
+		double rz = 0;
+		double bb = 0;
+		for (int k=0; k<len; k++)
+		{
+			z[k] = r[k]/diag[k];
+			p[k] = z[k];
+			rz += r[k]*z[k];
+			bb += r[k]*r[k];
+		}
+		double limit = tolerance*tolerance*bb;
+
+		numIterations = 0;
+		while ((numIterations < maxIterations) && (bb > limit) && (rz > 0))
+		{
+			multiply(a, p, q);
+			double pq = 0;
+			for (int k=0; k<len; k++)
+			{
+				pq += p[k]*q[k];
+			}
+			if (pq <= 0)
+			{
+				break;
+			}
+			float alpha = (float)(rz/pq);
+			bb = 0;
+			for (int k=0; k<len; k++)
+			{
+				dv[k] += alpha*p[k];
+				r[k]  -= alpha*q[k];
+				bb += r[k]*r[k];
+			}
+			numIterations++;
+			if (bb <= limit)
+			{
+				break;
+			}
+
+			double rzNew = 0;
+			for (int k=0; k<len; k++)
+			{
+				z[k] = r[k]/diag[k];
+				rzNew += r[k]*z[k];
+			}
+			float beta = (float)(rzNew/rz);
+			rz = rzNew;
+			for (int k=0; k<len; k++)
+			{
+				p[k] = z[k] + beta*p[k];
+			}
+		}
+	}
+
+	/** Multiplies the given vector by the system matrix <code>M - dt df/dv - dt<sup>2</sup> df/dx</code>,
+	 *  where the forces are those of the springs and drag.
+	 *  @param a Arrays holding the state of the particles.
+	 *  @param in Vector to multiply, with three components per particle.
+	 *  @param out Vector in which to place the product. Components of fixed particles are set to zero.
+	 */
+	private void multiply(ParticleArrays a, float[] in, float[] out)
+	{
+		int n = a.size;
+		for (int i=0; i<n; i++)
+		{
+			float m = a.mass[i]+dragStep;
+			out[3*i]   = m*in[3*i];
+			out[3*i+1] = m*in[3*i+1];
+			out[3*i+2] = m*in[3*i+2];
+		}
+		for (int c=0; c<numSprings; c++)
+		{
+			int i = endI[c];
+			int j = endJ[c];
+			float ux = in[3*i]  -in[3*j];
+			float uy = in[3*i+1]-in[3*j+1];
+			float uz = in[3*i+2]-in[3*j+2];
+			float along = cAlong[c]*(ux*nx[c] + uy*ny[c] + uz*nz[c]);
+			float perp = cPerp[c];
+			addPair(out, i, j, perp*ux + along*nx[c], perp*uy + along*ny[c], perp*uz + along*nz[c], a.free);
+		}
+		for (int i=0; i<n; i++)
+		{
+			if (!a.free[i])
+			{
+				out[3*i] = 0;
+				out[3*i+1] = 0;
+				out[3*i+2] = 0;
+			}
+		}
+	}
+
+	/** Adds the given vector to the components of one particle of an interleaved vector and subtracts it
+	 *  from those of another, ignoring fixed particles.
+	 *  @param v Interleaved vector to update.
+	 *  @param i Index of the particle to which the vector is added.
+	 *  @param j Index of the particle from which the vector is subtracted.
+	 *  @param wx x component of the vector.
+	 *  @param wy y component of the vector.
+	 *  @param wz z component of the vector.
+	 *  @param isFree Whether each particle is free.
+	 */
+	private static void addPair(float[] v, int i, int j, float wx, float wy, float wz, boolean[] isFree)
+	{
+		if (isFree[i])
+		{
+			v[3*i]   += wx;
+			v[3*i+1] += wy;
+			v[3*i+2] += wz;
+		}
+		if (isFree[j])
+		{
+			v[3*j]   -= wx;
+			v[3*j+1] -= wy;
+			v[3*j+2] -= wz;
+		}
+	}
+
+	/** Resizes the vectors used by the solver.
+	 *  @param capacity Number of particles the vectors should be able to hold.
+	 */
+	private void allocateParticles(int capacity)
+	{
+		dv = new float[3*capacity];
+		r = new float[3*capacity];
+		z = new float[3*capacity];
+		p = new float[3*capacity];
+		q = new float[3*capacity];
+		diag = new float[3*capacity];
+	}
+
+	/** Resizes the arrays used to hold linearised springs.
+	 *  @param capacity Number of springs the arrays should be able to hold.
+	 */
+	private void allocateSprings(int capacity)
+	{
+		endI = new int[capacity];
+		endJ = new int[capacity];
+		nx = new float[capacity];
+		ny = new float[capacity];
+		nz = new float[capacity];
+		cPerp = new float[capacity];
+		cAlong = new float[capacity];
+	}
+}
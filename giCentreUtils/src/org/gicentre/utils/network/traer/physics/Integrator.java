@@ -1,5 +1,7 @@
 package org.gicentre.utils.network.traer.physics;
 
+import java.nio.ByteBuffer;
+
 //*****************************************************************************************
 /** Abstract integrator that defines a number of preset integrator factories.
  *  @author Carl Pearson with minor modifications by Jo Wood.
@@ -17,6 +19,7 @@ public abstract class Integrator
 	// --------------------------------- Object variables ----------------------------------
 	
 	protected ParticleSystem s;
+	private ParticleArrays localArrays;		// Particle state used when the system does not provide array storage.
 	
 	/** Lists the different integration methods that can be produced by the integrator factory.
 	 */
@@ -55,6 +58,42 @@ public abstract class Integrator
 			{ 
 				return new SettlingRungeKuttaIntegrator(physics); 
 			}
+		},
+		
+		ADAPTIVE 
+		{
+			@Override 
+			public Integrator factory(ParticleSystem physics) 
+			{ 
+				return new AdaptiveRungeKuttaIntegrator(physics); 
+			}
+		},
+		
+		VERLET 
+		{
+			@Override 
+			public Integrator factory(ParticleSystem physics) 
+			{ 
+				return new VerletIntegrator(physics); 
+			}
+		},
+		
+		POSITIONBASED 
+		{
+			@Override 
+			public Integrator factory(ParticleSystem physics) 
+			{ 
+				return new PositionBasedIntegrator(physics); 
+			}
+		},
+		
+		IMPLICIT 
+		{
+			@Override 
+			public Integrator factory(ParticleSystem physics) 
+			{ 
+				return new ImplicitEulerIntegrator(physics); 
+			}
 		}; 
 	
 		public abstract Integrator factory(ParticleSystem physics);
@@ -75,4 +114,123 @@ public abstract class Integrator
 	 *  @return The Integrator after stepping forward by the given time step.
 	 */
 	public abstract Integrator step(float t);
+	
+	// -------------------------------- Protected methods ----------------------------------
+	
+	/** Provides arrays holding the current state of the particles to be stepped. If the particle system 
+	 *  uses array storage, its own arrays are loaded and returned. Otherwise the particle objects remain 
+	 *  authoritative, so their state is copied into arrays local to this integrator for the step.
+	 *  @return Arrays holding the state of the particles, which should be passed to 
+	 *          {@link #storeArrays(ParticleArrays)} at the end of the step.
+	 */
+	protected final ParticleArrays loadArrays()
+	{
+		ParticleArrays a = s.loadArrays();
+		if (a != null)
+		{
+			return a;
+		}
+		if (localArrays == null)
+		{
+			localArrays = new ParticleArrays();
+		}
+		localArrays.load(s.getParticles());
+		return localArrays;
+	}
+	
+	/** Applies the forces of the particle system and adds the results to the forces held in the given arrays.
+	 *  If the arrays are local to this integrator, the particle objects are first updated with the current
+	 *  positions and velocities so that forces acting on them see the correct state.
+	 *  @param a Arrays provided by {@link #loadArrays()}.
+	 */
+	protected final void applyForces(ParticleArrays a)
+	{
+		if (a != localArrays)
+		{
+			s.applyForces();
+			return;
+		}
+		prepareParticles(a);
+		s.applyForces();
+		a.addParticleForces();
+	}
+	
+	/** Applies all forces of the particle system except its springs and adds the results to the forces held
+	 *  in the given arrays. Used by integrators that treat springs as constraints rather than forces.
+	 *  @param a Arrays provided by {@link #loadArrays()}.
+	 */
+	protected final void applyForcesExceptSprings(ParticleArrays a)
+	{
+		if (a != localArrays)
+		{
+			s.applyForcesExceptSprings();
+			return;
+		}
+		prepareParticles(a);
+		s.applyForcesExceptSprings();
+		a.addParticleForces();
+	}
+	
+	/** Copies the positions, velocities and forces held in the given arrays back into the particle objects.
+	 *  Should be called once at the end of each step.
+	 *  @param a Arrays provided by {@link #loadArrays()}.
+	 */
+	protected final void storeArrays(ParticleArrays a)
+	{
+		if (a != localArrays)
+		{
+			s.storeArrays();
+		}
+		else
+		{
+			a.store();
+		}
+	}
+	
+	// --------------------------------- Package methods -----------------------------------
+	
+	/** Reports the number of bytes needed to save any state this integrator carries between steps. By 
+	 *  default integrators carry no state, so this is 0.
+	 *  @param a Arrays holding the particles of the system being saved, in system order.
+	 *  @return Number of bytes written by {@link #writeState(ByteBuffer, ParticleArrays)}.
+	 */
+	int getStateSize(ParticleArrays a)
+	{
+		return 0;
+	}
+	
+	/** Writes any state this integrator carries between steps so that a restored system continues exactly
+	 *  as the original would have done. By default nothing is written.
+	 *  @param out Buffer into which the state is written.
+	 *  @param a Arrays holding the particles of the system being saved, in system order.
+	 */
+	void writeState(ByteBuffer out, ParticleArrays a)
+	{
+		// No state to save by default.
+	}
+	
+	/** Reads state previously written by {@link #writeState(ByteBuffer, ParticleArrays)}. By default 
+	 *  nothing is read.
+	 *  @param in Buffer from which the state is read.
+	 *  @param a Arrays holding the particles of the restored system, in system order.
+	 */
+	void readState(ByteBuffer in, ParticleArrays a)
+	{
+		// No state to restore by default.
+	}
+	
+	// --------------------------------- Private methods -----------------------------------
+	
+	/** Updates the particle objects with the positions and velocities held in the given local arrays and 
+	 *  clears their forces, ready for the forces of the particle system to be applied to them.
+	 *  @param a Arrays local to this integrator.
+	 */
+	private static void prepareParticles(ParticleArrays a)
+	{
+		a.storeState();
+		for (int i=0; i<a.size; i++)
+		{
+			a.particles[i].clearForce();
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,611 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// *****************************************************************************************
+/** Divides the particles of a particle system into islands, each of which is a group of
+ *  particles connected by springs or attractions, and puts islands to sleep once they have
+ *  settled. An island falls asleep when the mean kinetic energy of its free particles has
+ *  stayed below a threshold for a given number of steps. While asleep, its particles are
+ *  treated as fixed and its springs and attractions are not evaluated. A sleeping island
+ *  wakes when any of its particles is moved, given a velocity or has its fixed state changed
+ *  between steps, when a spring or attraction attached to it is added or removed, or when the
+ *  custom forces acting on its particles change from those acting when it fell asleep.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+final class Islands
+{
+	// --------------------------- Class and object variables -----------------------------
+
+	private float energyThreshold;			// Mean kinetic energy below which an island is considered quiet.
+	private int sleepDelay;					// Number of quiet steps after which an island falls asleep.
+
+	private Map<Particle,Island> islandOf;	// Island containing each particle.
+	private List<Island> islands;
+	private boolean isRebuildNeeded;		// Whether the islands need to be recalculated before the next step.
+	private boolean isActiveChanged;		// Whether the active springs and attractions need to be recalculated.
+	private boolean isAnyAsleep;			// Whether at least one island is asleep.
+	private int numParticles, numSprings, numAttractions;	// Sizes of the system when the islands were found.
+	private List<Spring> activeSprings;		// Springs attached to awake islands.
+	private List<Attraction> activeAttractions;
+	private List<Particle> sleepers;		// Free particles treated as fixed during the current step.
+
+	// ---------------------------------- Constructor -------------------------------------
+
+	/** Creates an empty set of islands that will be found before the next step.
+	 *  @param energyThreshold Mean kinetic energy per free particle below which an island is quiet.
+	 *  @param sleepDelay Number of consecutive quiet steps after which an island falls asleep.
+	 */
+	Islands(float energyThreshold, int sleepDelay)
+	{
+		this.energyThreshold = energyThreshold;
+		this.sleepDelay = sleepDelay;
+		islandOf = new HashMap<Particle,Island>();
+		islands = new ArrayList<Island>();
+		activeSprings = new ArrayList<Spring>();
+		activeAttractions = new ArrayList<Attraction>();
+		sleepers = new ArrayList<Particle>();
+		isRebuildNeeded = true;
+	}
+
+	// ------------------------------------ Methods ---------------------------------------
+
+	/** Indicates that particles, springs or attractions have been added or removed, so the islands need 
+	 *  to be found again before the next step.
+	 */
+	void invalidate()
+	{
+		isRebuildNeeded = true;
+	}
+
+	/** Wakes the island containing the given particle if it is asleep.
+	 *  @param p Particle whose island is to be woken.
+	 */
+	void wake(Particle p)
+	{
+		Island island = islandOf.get(p);
+		if (island != null)
+		{
+			wake(island);
+		}
+	}
+
+	/** Reports whether the given particle belongs to a sleeping island.
+	 *  @param p Particle to query.
+	 *  @return True if the particle is asleep.
+	 */
+	boolean isAsleep(Particle p)
+	{
+		Island island = islandOf.get(p);
+		return (island != null) && island.isAsleep;
+	}
+
+	/** Reports the number of particles that belong to sleeping islands.
+	 *  @return Number of sleeping particles.
+	 */
+	int getNumSleeping()
+	{
+		int numSleeping = 0;
+		for (Island island : islands)
+		{
+			if (island.isAsleep)
+			{
+				numSleeping += island.members.length;
+			}
+		}
+		return numSleeping;
+	}
+
+	/** Wakes every sleeping island. This is used when a change, such as to gravity, affects all particles.
+	 */
+	void wakeAll()
+	{
+		for (Island island : islands)
+		{
+			wake(island);
+		}
+	}
+
+	/** Prepares the given particle system contents for a step. Any sleeping island that has been disturbed
+	 *  since the last step is woken, the islands are found again if the system has changed, and the free 
+	 *  particles of islands that remain asleep are treated as fixed until {@link #afterStep()} is called.
+	 *  Custom forces cannot be evaluated on particles treated as fixed, so if any island is asleep they are
+	 *  evaluated once here, before the step, to find any island whose particles they now push differently.
+	 *  @param particles Particles in the system.
+	 *  @param springs Springs in the system.
+	 *  @param attractions Attractions in the system.
+	 *  @param customForces Custom forces in the system.
+	 *  @param t Time step about to be taken.
+	 */
+	void beforeStep(Collection<Particle> particles, Collection<Spring> springs, Collection<Attraction> attractions, 
+	                Collection<AbstractForce> customForces, float t)
+	{
+		for (Island island : islands)
+		{
+			if (island.isAsleep && island.isDisturbed())
+			{
+				wake(island);
+			}
+		}
+
+		if (isRebuildNeeded || (particles.size() != numParticles) || (springs.size() != numSprings) || (attractions.size() != numAttractions))
+		{
+			build(particles, springs, attractions);
+		}
+
+		if (!customForces.isEmpty() && isAnyIslandAsleep())
+		{
+			checkCustomForces(particles, customForces, t);
+		}
+
+		if (isActiveChanged)
+		{
+			findActiveForces(springs, attractions);
+		}
+
+		for (Island island : islands)
+		{
+			if (island.isAsleep)
+			{
+				for (Particle p : island.members)
+				{
+					if (!p.isFixed)
+					{
+						// Set the field directly since making the particle fixed would clear its velocity.
+						p.isFixed = true;
+						sleepers.add(p);
+					}
+				}
+			}
+		}
+	}
+
+	/** Restores the particles treated as fixed during the step and puts to sleep any island that has 
+	 *  been quiet for long enough.
+	 */
+	void afterStep()
+	{
+		for (Particle p : sleepers)
+		{
+			p.isFixed = false;
+		}
+		sleepers.clear();
+
+		for (Island island : islands)
+		{
+			if (!island.isAsleep)
+			{
+				if (island.meanKineticEnergy() < energyThreshold)
+				{
+					island.quietSteps++;
+					if (island.quietSteps >= sleepDelay)
+					{
+						island.sleep();
+						isAnyAsleep = true;
+						isActiveChanged = true;
+					}
+				}
+				else
+				{
+					island.quietSteps = 0;
+				}
+			}
+		}
+	}
+
+	/** Provides the springs that should be evaluated in the current step. 
+	 *  @param springs All springs in the system.
+	 *  @return Springs attached to awake islands, in the same order as the given collection.
+	 */
+	Collection<Spring> getActiveSprings(Collection<Spring> springs)
+	{
+		return isAnyAsleep ? activeSprings : springs;
+	}
+
+	/** Provides the attractions that should be evaluated in the current step. 
+	 *  @param attractions All attractions in the system.
+	 *  @return Attractions attached to awake islands, in the same order as the given collection.
+	 */
+	Collection<Attraction> getActiveAttractions(Collection<Attraction> attractions)
+	{
+		return isAnyAsleep ? activeAttractions : attractions;
+	}
+
+	// -------------------------------- Private methods -----------------------------------
+
+	/** Reports whether any island is currently asleep.
+	 *  @return True if at least one island is asleep.
+	 */
+	private boolean isAnyIslandAsleep()
+	{
+		for (Island island : islands)
+		{
+			if (island.isAsleep)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Evaluates the custom forces on all particles and wakes any sleeping island whose particles are pushed
+	 *  differently than when it fell asleep. A change is significant if, acting alone for the coming step,
+	 *  it would give a particle more kinetic energy than the threshold below which islands fall asleep. 
+	 *  The forces on the particles are cleared afterwards.
+	 *  @param particles Particles in the system.
+	 *  @param customForces Custom forces in the system.
+	 *  @param t Time step about to be taken.
+	 */
+	private void checkCustomForces(Collection<Particle> particles, Collection<AbstractForce> customForces, float t)
+	{
+		for (Particle p : particles)
+		{
+			p.clearForce();
+		}
+		for (AbstractForce f : customForces)
+		{
+			f.apply();
+		}
+
+		for (Island island : islands)
+		{
+			if (island.isAsleep)
+			{
+				if (island.fx == null)
+				{
+					// Island has just fallen asleep, so record the forces that kept it in balance.
+					island.recordForces();
+				}
+				else if (island.isForceChanged(t, energyThreshold))
+				{
+					wake(island);
+				}
+			}
+		}
+
+		for (Particle p : particles)
+		{
+			p.clearForce();
+		}
+	}
+
+	/** Wakes the given island.
+	 *  @param island Island to wake.
+	 */
+	private void wake(Island island)
+	{
+		island.quietSteps = 0;
+		if (island.isAsleep)
+		{
+			island.isAsleep = false;
+			isActiveChanged = true;
+		}
+	}
+
+	/** Finds the groups of particles connected by springs and attractions. A new island remains asleep only
+	 *  if all of its particles belonged to sleeping islands.
+	 *  @param particles Particles in the system.
+	 *  @param springs Springs in the system.
+	 *  @param attractions Attractions in the system.
+	 */
+	private void build(Collection<Particle> particles, Collection<Spring> springs, Collection<Attraction> attractions)
+	{
+		int n = particles.size();
+		Particle[] members = particles.toArray(new Particle[n]);
+		Map<Particle,Integer> indexOf = new HashMap<Particle,Integer>(2*n);
+		int[] parent = new int[n];
+		for (int i=0; i<n; i++)
+		{
+			indexOf.put(members[i], Integer.valueOf(i));
+			parent[i] = i;
+		}
+		for (Spring spring : springs)
+		{
+			union(parent, indexOf.get(spring.getOneEnd()), indexOf.get(spring.getTheOtherEnd()));
+		}
+		for (Attraction attraction : attractions)
+		{
+			union(parent, indexOf.get(attraction.getOneEnd()), indexOf.get(attraction.getTheOtherEnd()));
+		}
+
+		// Count the members of each island so that they can be stored in arrays.
+		int[] islandIndex = new int[n];
+		int[] size = new int[n];
+		int numIslands = 0;
+		for (int i=0; i<n; i++)
+		{
+			int root = find(parent, i);
+			if (root == i)
+			{
+				islandIndex[i] = numIslands++;
+			}
+		}
+		for (int i=0; i<n; i++)
+		{
+			size[islandIndex[find(parent, i)]]++;
+		}
+
+		List<Island> newIslands = new ArrayList<Island>(numIslands);
+		boolean[] isAllAsleep = new boolean[numIslands];
+		for (int j=0; j<numIslands; j++)
+		{
+			newIslands.add(new Island(size[j]));
+			isAllAsleep[j] = true;
+		}
+		int[] count = new int[numIslands];
+		for (int i=0; i<n; i++)
+		{
+			int j = islandIndex[find(parent, i)];
+			newIslands.get(j).members[count[j]++] = members[i];
+			Island oldIsland = islandOf.get(members[i]);
+			if ((oldIsland == null) || !oldIsland.isAsleep)
+			{
+				isAllAsleep[j] = false;
+			}
+		}
+
+		islandOf.clear();
+		isAnyAsleep = false;
+		for (int j=0; j<numIslands; j++)
+		{
+			Island island = newIslands.get(j);
+			for (Particle p : island.members)
+			{
+				islandOf.put(p, island);
+			}
+			if (isAllAsleep[j])
+			{
+				island.sleep();
+				isAnyAsleep = true;
+			}
+		}
+
+		islands = newIslands;
+		numParticles = n;
+		numSprings = springs.size();
+		numAttractions = attractions.size();
+		isRebuildNeeded = false;
+		isActiveChanged = true;
+	}
+
+	/** Finds the springs and attractions attached to awake islands.
+	 *  @param springs All springs in the system.
+	 *  @param attractions All attractions in the system.
+	 */
+	private void findActiveForces(Collection<Spring> springs, Collection<Attraction> attractions)
+	{
+		isAnyAsleep = false;
+		for (Island island : islands)
+		{
+			isAnyAsleep |= island.isAsleep;
+		}
+
+		activeSprings.clear();
+		activeAttractions.clear();
+		if (isAnyAsleep)
+		{
+			for (Spring spring : springs)
+			{
+				if (isActive(spring))
+				{
+					activeSprings.add(spring);
+				}
+			}
+			for (Attraction attraction : attractions)
+			{
+				if (isActive(attraction))
+				{
+					activeAttractions.add(attraction);
+				}
+			}
+		}
+		isActiveChanged = false;
+	}
+
+	/** Reports whether the given force is attached to an awake island or to particles outside the system.
+	 *  @param force Force to test.
+	 *  @return True if the force should be evaluated.
+	 */
+	private boolean isActive(TwoBodyForce force)
+	{
+		Island island = islandOf.get(force.getOneEnd());
+		if (island == null)
+		{
+			island = islandOf.get(force.getTheOtherEnd());
+		}
+		return (island == null) || !island.isAsleep;
+	}
+
+	/** Merges the sets containing the two given elements. Either element may be null if it is not part
+	 *  of the system, in which case nothing is merged.
+	 *  @param parent Parent of each element in the disjoint set forest.
+	 *  @param i First element.
+	 *  @param j Second element.
+	 */
+	private static void union(int[] parent, Integer i, Integer j)
+	{
+		if ((i != null) && (j != null))
+		{
+			int rootI = find(parent, i.intValue());
+			int rootJ = find(parent, j.intValue());
+			if (rootI != rootJ)
+			{
+				parent[Math.max(rootI, rootJ)] = Math.min(rootI, rootJ);
+			}
+		}
+	}
+
+	/** Finds the root of the set containing the given element, compressing the path to it.
+	 *  @param parent Parent of each element in the disjoint set forest.
+	 *  @param i Element to find.
+	 *  @return Root element of the set.
+	 */
+	private static int find(int[] parent, int i)
+	{
+		int root = i;
+		while (parent[root] != root)
+		{
+			root = parent[root];
+		}
+		while (parent[i] != root)
+		{
+			int next = parent[i];
+			parent[i] = root;
+			i = next;
+		}
+		return root;
+	}
+
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** A group of particles connected by springs or attractions.
+	 */
+	private static class Island
+	{
+		Particle[] members;
+		int quietSteps;				// Number of consecutive steps with low kinetic energy.
+		boolean isAsleep;
+		float[] px,py,pz;			// Positions of members when the island fell asleep.
+		boolean[] isFixed;			// Fixed state of members when the island fell asleep.
+		float[] fx,fy,fz;			// Custom forces on members when the island fell asleep, or null if not yet known.
+
+		/** Creates an awake island with the given number of members.
+		 *  @param size Number of particles in the island.
+		 */
+		Island(int size)
+		{
+			members = new Particle[size];
+		}
+
+		/** Puts this island to sleep, stopping its particles and recording their state so that any later 
+		 *  disturbance can be detected.
+		 */
+		void sleep()
+		{
+			int n = members.length;
+			if ((px == null) || (px.length != n))
+			{
+				px = new float[n];
+				py = new float[n];
+				pz = new float[n];
+				isFixed = new boolean[n];
+			}
+			for (int i=0; i<n; i++)
+			{
+				Particle p = members[i];
+				p.velocity().clear();
+				px[i] = p.position().getX();
+				py[i] = p.position().getY();
+				pz[i] = p.position().getZ();
+				isFixed[i] = p.isFixed;
+			}
+			fx = null;
+			isAsleep = true;
+		}
+
+		/** Records the forces currently acting on the members of this island.
+		 */
+		void recordForces()
+		{
+			int n = members.length;
+			fx = new float[n];
+			fy = new float[n];
+			fz = new float[n];
+			for (int i=0; i<n; i++)
+			{
+				Vector3D f = members[i].getForce();
+				fx[i] = f.getX();
+				fy[i] = f.getY();
+				fz[i] = f.getZ();
+			}
+		}
+
+		/** Reports whether the forces currently acting on any free member of this island differ from those 
+		 *  recorded by enough to give it more than the given kinetic energy over the given time step.
+		 *  @param t Time step over which the difference would act.
+		 *  @param energyThreshold Kinetic energy above which a difference is significant.
+		 *  @return True if the forces have changed significantly.
+		 */
+		boolean isForceChanged(float t, float energyThreshold)
+		{
+			for (int i=0; i<members.length; i++)
+			{
+				Particle p = members[i];
+				if (!isFixed[i])
+				{
+					Vector3D f = p.getForce();
+					float dfx = f.getX()-fx[i];
+					float dfy = f.getY()-fy[i];
+					float dfz = f.getZ()-fz[i];
+
+					// Kinetic energy 0.5mv^2 of a particle given velocity v = df*t/m.
+					float energy = 0.5f*(dfx*dfx + dfy*dfy + dfz*dfz)*t*t/p.mass();
+					if (energy > energyThreshold)
+					{
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		/** Reports whether any member of this sleeping island has been moved, given a velocity or had its fixed 
+		 *  state changed since it fell asleep.
+		 *  @return True if the island has been disturbed.
+		 */
+		boolean isDisturbed()
+		{
+			for (int i=0; i<members.length; i++)
+			{
+				Particle p = members[i];
+				Vector3D position = p.position();
+				if ((p.isFixed != isFixed[i]) || !p.velocity().isZero() || 
+					(position.getX() != px[i]) || (position.getY() != py[i]) || (position.getZ() != pz[i]))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/** Calculates the mean kinetic energy of the free particles in this island.
+		 *  @return Mean kinetic energy, or 0 if there are no free particles.
+		 */
+		float meanKineticEnergy()
+		{
+			float energy = 0;
+			int numFree = 0;
+			for (Particle p : members)
+			{
+				if (!p.isFixed)
+				{
+					Vector3D v = p.velocity();
+					energy += 0.5f*p.mass()*(v.getX()*v.getX() + v.getY()*v.getY() + v.getZ()*v.getZ());
+					numFree++;
+				}
+			}
+			return (numFree == 0) ? 0 : energy/numFree;
+		}
+	}
+}
@@ -14,6 +14,10 @@ package org.gicentre.utils.network.traer.physics;
  */
 public class ModifiedEulerIntegrator extends Integrator 
 {
+	// ------------------------------- Object variables --------------------------------
+
+	private StepUpdate update;		// Update applied to particles held in array storage.
+
 	// --------------------------------- Constructors ----------------------------------
 
 	/** Sets up the integrator.
@@ -22,6 +26,7 @@ public class ModifiedEulerIntegrator extends Integrator
 	public ModifiedEulerIntegrator(ParticleSystem s)
 	{ 
 		super(s);
+		update = new StepUpdate();
 	}
 
 	// ----------------------------------- Methods -------------------------------------
@@ -31,21 +36,72 @@ public class ModifiedEulerIntegrator extends Integrator
 	 */
 	public ModifiedEulerIntegrator step(float deltaT)
 	{
+		ParticleArrays arrays = s.loadArrays();
+		
 		s.clearForces();
 		s.applyForces();
 
 		float halftt = 0.5f*deltaT*deltaT;
 
-		Vector3D a;
+		if (arrays != null)
+		{
+			update.a = arrays;
+			update.deltaT = deltaT;
+			update.halftt = halftt;
+			s.updateArrays(arrays.size, update);
+			s.storeArrays();
+			return this;
+		}
+
 		for (Particle p : s.getParticles())
 		{
 			if (p.isFree()) 
 			{
-				a = p.getForce().multiplyBy(1/p.mass());           
-				p.position().add( p.velocity().copy().multiplyBy(deltaT)).add( a.copy().multiplyBy(halftt));
-				p.velocity().add( a.multiplyBy(deltaT));
+				p.age += deltaT;
+				// Acceleration is calculated in place in the force vector to avoid creating new vectors.
+				Vector3D a = p.getForce().multiplyBy(1/p.mass());
+				Vector3D v = p.velocity;
+				p.position.add(v.getX()*deltaT, v.getY()*deltaT, v.getZ()*deltaT).add(a.getX()*halftt, a.getY()*halftt, a.getZ()*halftt);
+				v.add(a.multiplyBy(deltaT));
 			}
 		}
 		return this;
 	}
+
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** Update that advances a range of particles held in array storage by one time step.
+	 */
+	private static class StepUpdate implements ArrayUpdate
+	{
+		ParticleArrays a;		// Arrays holding the particles to update.
+		float deltaT;			// Time step over which to advance the particles.
+		float halftt;			// Half the square of the time step.
+
+		/** Advances the free particles in the given range.
+		 *  @param start Index of the first particle to update.
+		 *  @param end Index one beyond the last particle to update.
+		 */
+		public void update(int start, int end)
+		{
+			ParticleArrays arrays = a;
+			for (int i=start; i<end; i++)
+			{
+				if (arrays.free[i])
+				{
+					arrays.particles[i].age += deltaT;
+					float invMass = 1/arrays.mass[i];
+					float ax = arrays.fx[i]*invMass;
+					float ay = arrays.fy[i]*invMass;
+					float az = arrays.fz[i]*invMass;
+					arrays.x[i] = (arrays.x[i] + arrays.vx[i]*deltaT) + ax*halftt;
+					arrays.y[i] = (arrays.y[i] + arrays.vy[i]*deltaT) + ay*halftt;
+					arrays.z[i] = (arrays.z[i] + arrays.vz[i]*deltaT) + az*halftt;
+					arrays.vx[i] += ax*deltaT;
+					arrays.vy[i] += ay*deltaT;
+					arrays.vz[i] += az*deltaT;
+				}
+			}
+		}
+	}
 }
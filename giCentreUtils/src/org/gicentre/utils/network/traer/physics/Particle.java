@@ -36,6 +36,7 @@ public class Particle implements Locatable
 	protected boolean isDead;
 	private float mass;						// The Particle mass.
 	private Vector3D force; 				// The force associated with this particle. It is automatically allocated to 0,0,0 on creation.
+	int index;								// Position of this particle in its system's primitive array storage.
 	
 	// ---------------------------------- Constructor -------------------------------------
 	
@@ -58,6 +59,7 @@ public class Particle implements Locatable
 		age = 0;
 		isFixed = false;
 		isDead  = false;
+		index   = -1;
 		setMass(m);
 	}
 
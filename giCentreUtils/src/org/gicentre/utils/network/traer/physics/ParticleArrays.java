@@ -0,0 +1,186 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+// *****************************************************************************************
+/** Structure-of-arrays storage of the state of the particles in a {@link ParticleSystem}.
+ *  Positions, velocities, forces and masses are held in contiguous primitive columns indexed
+ *  by particle, so that integrators and built-in forces can update large systems without
+ *  chasing references between separate {@link Vector3D} objects or allocating new ones.
+ *  <br /><br />
+ *  The arrays are loaded from the particles at the start of an integration step and stored
+ *  back at its end, so between steps the {@link Particle} objects remain the authoritative
+ *  view of the system. The arrays are reused between steps and only grow when the number of
+ *  particles increases.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+final class ParticleArrays
+{
+	// ------------------------------- Object variables --------------------------------
+
+	int size;						// Number of particles currently loaded.
+	Particle[] particles;			// The particle stored at each index.
+	float[] x,y,z;					// Particle positions.
+	float[] vx,vy,vz;				// Particle velocities.
+	float[] fx,fy,fz;				// Forces accumulated on each particle.
+	float[] mass;					// Particle masses.
+	boolean[] free;					// Whether or not each particle is free to move.
+
+	// --------------------------------- Constructor -----------------------------------
+
+	/** Creates an empty set of particle arrays.
+	 */
+	ParticleArrays()
+	{
+		allocate(16);
+	}
+
+	// ----------------------------------- Methods -------------------------------------
+
+	/** Copies the state of the given particles into the arrays, setting each particle's index to its
+	 *  position in the arrays and clearing all forces.
+	 *  @param source Particles to load.
+	 */
+	void load(Collection<Particle> source)
+	{
+		int n = source.size();
+		if (x.length < n)
+		{
+			allocate(Math.max(n, 2*x.length));
+		}
+
+		int i=0;
+		for (Particle p : source)
+		{
+			p.index = i;
+			particles[i] = p;
+			Vector3D pos = p.position;
+			x[i] = pos.getX();
+			y[i] = pos.getY();
+			z[i] = pos.getZ();
+			Vector3D vel = p.velocity;
+			vx[i] = vel.getX();
+			vy[i] = vel.getY();
+			vz[i] = vel.getZ();
+			mass[i] = p.mass();
+			free[i] = p.isFree();
+			i++;
+		}
+
+		// Release references to any particles loaded previously but no longer in the system.
+		for (int j=i; j<size; j++)
+		{
+			particles[j] = null;
+		}
+		size = i;
+		clearForces();
+	}
+
+	/** Copies the positions, velocities and forces held in the arrays back into their particles.
+	 */
+	void store()
+	{
+		for (int i=0; i<size; i++)
+		{
+			Particle p = particles[i];
+			p.position.set(x[i], y[i], z[i]);
+			p.velocity.set(vx[i], vy[i], vz[i]);
+			p.getForce().set(fx[i], fy[i], fz[i]);
+		}
+	}
+
+	/** Copies the positions and velocities held in the arrays back into their particles, leaving
+	 *  the particles' own forces untouched. Used when forces that only operate on particle objects
+	 *  need to see the current state part way through a step.
+	 */
+	void storeState()
+	{
+		for (int i=0; i<size; i++)
+		{
+			Particle p = particles[i];
+			p.position.set(x[i], y[i], z[i]);
+			p.velocity.set(vx[i], vy[i], vz[i]);
+		}
+	}
+
+	/** Adds the force currently stored in each particle object to the force held in the arrays.
+	 */
+	void addParticleForces()
+	{
+		for (int i=0; i<size; i++)
+		{
+			Vector3D f = particles[i].getForce();
+			fx[i] += f.getX();
+			fy[i] += f.getY();
+			fz[i] += f.getZ();
+		}
+	}
+
+	/** Sets all forces held in the arrays to zero.
+	 */
+	void clearForces()
+	{
+		Arrays.fill(fx, 0, size, 0);
+		Arrays.fill(fy, 0, size, 0);
+		Arrays.fill(fz, 0, size, 0);
+	}
+
+	/** Reports the array index of the given particle.
+	 *  @param p Particle to find.
+	 *  @return Index of the particle in the arrays or -1 if it has not been loaded.
+	 */
+	int indexOf(Particle p)
+	{
+		int i = p.index;
+		return ((i >= 0) && (i < size) && (particles[i] == p)) ? i : -1;
+	}
+
+	// ------------------------------- Private methods ---------------------------------
+
+	/** Resizes the arrays to hold the given number of particles, retaining any values already stored.
+	 *  @param capacity Number of particles the arrays should be able to hold.
+	 */
+	private void allocate(int capacity)
+	{
+		particles = (particles == null) ? new Particle[capacity] : Arrays.copyOf(particles, capacity);
+		x = resize(x, capacity);
+		y = resize(y, capacity);
+		z = resize(z, capacity);
+		vx = resize(vx, capacity);
+		vy = resize(vy, capacity);
+		vz = resize(vz, capacity);
+		fx = resize(fx, capacity);
+		fy = resize(fy, capacity);
+		fz = resize(fz, capacity);
+		mass = resize(mass, capacity);
+		free = (free == null) ? new boolean[capacity] : Arrays.copyOf(free, capacity);
+	}
+
+	/** Creates a copy of the given array with a new capacity.
+	 *  @param array Array to copy, which may be null.
+	 *  @param capacity Length of the new array.
+	 *  @return New array containing the values of the old one.
+	 */
+	private static float[] resize(float[] array, int capacity)
+	{
+		return (array == null) ? new float[capacity] : Arrays.copyOf(array, capacity);
+	}
+}
@@ -1,9 +1,15 @@
 package org.gicentre.utils.network.traer.physics;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 // *****************************************************************************************
 /** Represents an entire particle system containing particles and forces between them.
@@ -37,17 +43,35 @@ public class ParticleSystem
 	protected static final float DEFAULT_DRAG = 0.001f;  
 				/** The default magnitude for the y-component of gravity. */
 	protected static final float DEFAULT_GRAVITY = 0;
+				/** Default mean kinetic energy per particle below which an island of particles is quiet. */
+	public static final float DEFAULT_SLEEP_ENERGY = 0.0001f;
+				/** Default number of quiet ticks after which an island of particles falls asleep. */
+	public static final int DEFAULT_SLEEP_DELAY = 30;
+				/** Default number of recent ticks kept when profiling. */
+	public static final int DEFAULT_PROFILE_WINDOW = 120;
 
 	private Set<Particle> particles = new LinkedHashSet<Particle>();
 	private Set<Spring> springs = new LinkedHashSet<Spring>();
 	private Set<Attraction> attractions = new LinkedHashSet<Attraction>();
 	private Set<AbstractForce> customForces = new LinkedHashSet<AbstractForce>();
+	private List<ParticleEmitter> emitters = new ArrayList<ParticleEmitter>();
+	private Map<Particle,List<TwoBodyForce>> connections = new HashMap<Particle,List<TwoBodyForce>>();	// Springs and attractions attached to each particle.
 	//private Map<String,UniversalForce> uForces = new HashMap<String,UniversalForce>();
 	
 	private float deltaT = 1f; 			// The time step to use with {@link #tick()}; set to 1 by default.
 	private Integrator integrator;		// The integrator that modifies particles on each time step.
 	private Vector3D gravity;			// The gravity vector for this ParticleSystem.
 	private float drag;					// The drag magnitude for this ParticleSystem.
+	private boolean isArrayStorage;		// Whether particle state is held in primitive arrays while stepping.
+	private ParticleArrays arrays;		// Primitive array storage of particle state, created on demand.
+	private boolean isArraysLoaded;		// Whether the arrays currently hold the authoritative particle state.
+	private ParallelForces parallelForces;	// Parallel evaluator of springs and attractions, or null if sequential.
+	private ParallelUpdates parallelUpdates;// Parallel updater of particle state, or null if sequential.
+	private Islands islands;			// Groups of connected particles that can sleep, or null if sleeping is disabled.
+	private TickProfiler profiler;		// Records timings of each tick, or null if profiling is disabled.
+	private GravityDragUpdate gravityDragUpdate;	// Applies gravity and drag to particles in array storage.
+	private boolean isSpringsSkipped;	// Whether springs are left out when applying forces.
+	private int numModifications;		// Number of changes to the system that may alter the forces on particles.
 	
 	// ---------------------------------- Constructors ------------------------------------
 	
@@ -131,7 +155,44 @@ public class ParticleSystem
 		{
 			throw new IllegalArgumentException("Argument t is "+t+"; t must be >=0.");
 		}
-		integrator.step(t);
+		TickProfiler tickProfiler = profiler;
+		if (tickProfiler != null)
+		{
+			tickProfiler.startTick();
+		}
+		long time = startPhase();
+		if (islands != null)
+		{
+			islands.beforeStep(particles, springs, attractions, customForces, t);
+			time = endPhase(TickProfiler.PHASE.SLEEPING, time);
+		}
+		
+		// Forces are evaluated within the integrator's step, so their phases are excluded from its time.
+		time = (tickProfiler == null) ? 0 : tickProfiler.startOuterPhase();
+		try
+		{
+			integrator.step(t);
+		}
+		finally
+		{
+			isArraysLoaded = false;
+			time = (tickProfiler == null) ? 0 : tickProfiler.endOuterPhase(TickProfiler.PHASE.INTEGRATION, time);
+			if (islands != null)
+			{
+				islands.afterStep();
+				time = endPhase(TickProfiler.PHASE.SLEEPING, time);
+			}
+		}
+		
+		for (int i=0; i<emitters.size(); i++)
+		{
+			emitters.get(i).update(t);
+		}
+		endPhase(TickProfiler.PHASE.EMITTERS, time);
+		if (tickProfiler != null)
+		{
+			tickProfiler.endTick(particles);
+		}
 		return this;
 	}
 	
@@ -173,6 +234,240 @@ public class ParticleSystem
 		this.integrator = integrator;
 		return this;
 	}
+	
+	/** Reports the integrator currently used to advance this particle system.
+	 *  @return The integrator used by this particle system.
+	 */
+	public final Integrator getIntegrator()
+	{
+		return integrator;
+	}
+
+	/** Sets whether or not the state of particles is copied into contiguous primitive arrays while
+	 *  the system is advanced. When enabled, the built-in integrators, springs, attractions, gravity 
+	 *  and drag operate directly on the arrays, which avoids creating temporary vectors and is 
+	 *  considerably faster for large systems. Particle objects are updated at the end of each time 
+	 *  step, so can be used as normal between calls to {@link #tick()}. All particles attached to 
+	 *  springs and attractions must have been added to this system when array storage is used.
+	 *  Custom integrators that are not array-aware are unaffected by this setting. Parallel evaluation
+	 *  of forces and parallel integration both operate on array storage, so disabling array storage
+	 *  also disables them.
+	 *  @param isArrayStorage Array storage is used if true, particle objects are updated directly if false.
+	 *  @return this ParticleSystem with its new storage setting.
+	 */
+	public final ParticleSystem setArrayStorage(boolean isArrayStorage)
+	{
+		this.isArrayStorage = isArrayStorage;
+		if (!isArrayStorage)
+		{
+			arrays = null;
+			parallelForces = null;
+			parallelUpdates = null;
+		}
+		return this;
+	}
+	
+	/** Reports whether or not the state of particles is copied into primitive arrays while the system
+	 *  is advanced.
+	 *  @return True if array storage is used.
+	 */
+	public final boolean isArrayStorage()
+	{
+		return isArrayStorage;
+	}
+
+	/** Sets whether or not springs and attractions are evaluated in parallel using a shared pool with 
+	 *  one thread per available processor. Parallel evaluation operates on primitive array storage, 
+	 *  so enabling it also enables array storage (see {@link #setArrayStorage(boolean)}). Each thread 
+	 *  accumulates forces into its own buffers, which are combined in a fixed order, so results are 
+	 *  reproducible and match sequential evaluation to within floating point rounding. Systems with 
+	 *  only a few springs and attractions are still evaluated sequentially, as are custom forces.
+	 *  @param isParallel Forces are evaluated in parallel if true, sequentially if false.
+	 *  @return this ParticleSystem with its new parallel evaluation setting.
+	 */
+	public final ParticleSystem setParallelForces(boolean isParallel)
+	{
+		return setParallelForces(isParallel ? ParallelForces.getDefaultExecutor() : null);
+	}
+	
+	/** Sets springs and attractions to be evaluated in parallel using the given executor, such as a 
+	 *  <code>ForkJoinPool</code>. Parallel evaluation operates on primitive array storage, so enabling it 
+	 *  also enables array storage (see {@link #setArrayStorage(boolean)}). The executor remains owned by 
+	 *  the caller and is not shut down by this particle system.
+	 *  @param executor Executor on which to evaluate forces, or null to evaluate them sequentially.
+	 *  @return this ParticleSystem with its new parallel evaluation setting.
+	 */
+	public final ParticleSystem setParallelForces(ExecutorService executor)
+	{
+		if (executor == null)
+		{
+			parallelForces = null;
+		}
+		else
+		{
+			parallelForces = new ParallelForces(executor, Runtime.getRuntime().availableProcessors());
+			setArrayStorage(true);
+		}
+		return this;
+	}
+	
+	/** Reports whether or not springs and attractions are evaluated in parallel.
+	 *  @return True if forces are evaluated in parallel.
+	 */
+	public final boolean isParallelForces()
+	{
+		return parallelForces != null;
+	}
+
+	/** Sets whether or not the built-in integrators update particle positions and velocities in parallel
+	 *  using a shared pool with one thread per available processor. Parallel integration operates on 
+	 *  primitive array storage, so enabling it also enables array storage (see {@link #setArrayStorage(boolean)}).
+	 *  Each particle is updated independently, so results are identical to sequential integration. Systems 
+	 *  with fewer than several thousand particles are still updated sequentially.
+	 *  @param isParallel Particles are updated in parallel if true, sequentially if false.
+	 *  @return this ParticleSystem with its new parallel integration setting.
+	 */
+	public final ParticleSystem setParallelIntegration(boolean isParallel)
+	{
+		return setParallelIntegration(isParallel ? ParallelForces.getDefaultExecutor() : null);
+	}
+	
+	/** Sets the built-in integrators to update particle positions and velocities in parallel using the 
+	 *  given executor. Parallel integration operates on primitive array storage, so enabling it also enables 
+	 *  array storage (see {@link #setArrayStorage(boolean)}). The executor remains owned by the caller and
+	 *  is not shut down by this particle system.
+	 *  @param executor Executor on which to update particles, or null to update them sequentially.
+	 *  @return this ParticleSystem with its new parallel integration setting.
+	 */
+	public final ParticleSystem setParallelIntegration(ExecutorService executor)
+	{
+		if (executor == null)
+		{
+			parallelUpdates = null;
+		}
+		else
+		{
+			parallelUpdates = new ParallelUpdates(executor, Runtime.getRuntime().availableProcessors());
+			setArrayStorage(true);
+		}
+		return this;
+	}
+	
+	/** Reports whether or not the built-in integrators update particles in parallel.
+	 *  @return True if particles are updated in parallel.
+	 */
+	public final boolean isParallelIntegration()
+	{
+		return parallelUpdates != null;
+	}
+
+	/** Sets whether or not groups of connected particles are put to sleep once they have settled, using
+	 *  the default energy threshold and delay. See {@link #setSleeping(float, int)} for details.
+	 *  @param isSleeping Settled islands of particles are put to sleep if true, always updated if false.
+	 *  @return this ParticleSystem with its new sleep setting.
+	 */
+	public final ParticleSystem setSleeping(boolean isSleeping)
+	{
+		return isSleeping ? setSleeping(DEFAULT_SLEEP_ENERGY, DEFAULT_SLEEP_DELAY) : setSleeping(0, 0);
+	}
+	
+	/** Sets groups of connected particles to be put to sleep once they have settled. Particles connected 
+	 *  directly or indirectly by springs or attractions form an island, which falls asleep when the mean 
+	 *  kinetic energy of its free particles has remained below the given threshold for the given number 
+	 *  of ticks. The particles of a sleeping island are stopped and its springs and attractions are not 
+	 *  evaluated until it is woken. A sleeping island wakes automatically when any of its particles is 
+	 *  moved, given a velocity, fixed or freed, when a spring or attraction attached to it is added 
+	 *  or removed through this particle system, when the custom forces on its particles change from 
+	 *  those acting when it fell asleep, or when gravity or drag is changed. While any island sleeps, 
+	 *  custom forces are evaluated once more each tick to detect such changes. Changes to the properties 
+	 *  of existing springs and attractions do not wake an island, so use {@link #wake(Particle)} if these
+	 *  should disturb a settled system.
+	 *  @param energyThreshold Mean kinetic energy per free particle below which an island is considered 
+	 *                         to be settled, or 0 to disable sleeping.
+	 *  @param sleepDelay Number of consecutive settled ticks after which an island falls asleep.
+	 *  @return this ParticleSystem with its new sleep setting.
+	 */
+	public final ParticleSystem setSleeping(float energyThreshold, int sleepDelay)
+	{
+		islands = (energyThreshold > 0) ? new Islands(energyThreshold, sleepDelay) : null;
+		return this;
+	}
+	
+	/** Reports whether or not settled groups of particles are put to sleep.
+	 *  @return True if sleeping is enabled.
+	 */
+	public final boolean isSleeping()
+	{
+		return islands != null;
+	}
+	
+	/** Reports whether or not the given particle belongs to a sleeping island of particles.
+	 *  @param p Particle to query.
+	 *  @return True if the particle is asleep, false if it is awake or sleeping is disabled.
+	 */
+	public final boolean isAsleep(Particle p)
+	{
+		return (islands != null) && islands.isAsleep(p);
+	}
+	
+	/** Wakes the island of connected particles containing the given particle, so that it is updated on
+	 *  the next tick. Has no effect if the particle is already awake or sleeping is disabled.
+	 *  @param p Particle whose island should be woken.
+	 *  @return this ParticleSystem.
+	 */
+	public final ParticleSystem wake(Particle p)
+	{
+		if (islands != null)
+		{
+			islands.wake(p);
+		}
+		return this;
+	}
+	
+	/** Reports the number of particles that currently belong to sleeping islands.
+	 *  @return Number of sleeping particles, or 0 if sleeping is disabled.
+	 */
+	public final int getNumSleepingParticles()
+	{
+		return (islands == null) ? 0 : islands.getNumSleeping();
+	}
+
+	/** Sets whether or not the time spent in each phase of every tick is recorded, together with the kinetic
+	 *  energy, maximum speed and number of free and fixed particles after each tick. The most recent 
+	 *  {@link #DEFAULT_PROFILE_WINDOW} ticks are kept. See {@link #setProfiling(int)} for details.
+	 *  @param isProfiling Ticks are profiled if true, not profiled if false.
+	 *  @return this ParticleSystem with its new profiling setting.
+	 */
+	public final ParticleSystem setProfiling(boolean isProfiling)
+	{
+		return setProfiling(isProfiling ? DEFAULT_PROFILE_WINDOW : 0);
+	}
+	
+	/** Sets the time spent in each phase of every tick to be recorded, together with the kinetic energy, 
+	 *  maximum speed and number of free and fixed particles after each tick. Profiles of the given number of
+	 *  recent ticks are kept by the profiler provided by {@link #getProfiler()}, which can also inform
+	 *  listeners as each tick completes. Enabling profiling replaces any existing profiler and its listeners.
+	 *  @param windowSize Number of recent ticks to keep, or 0 to disable profiling.
+	 *  @return this ParticleSystem with its new profiling setting.
+	 *  @throws IllegalArgumentException if the window size is negative.
+	 */
+	public final ParticleSystem setProfiling(int windowSize) throws IllegalArgumentException
+	{
+		if (windowSize < 0)
+		{
+			throw new IllegalArgumentException("Profile window size is "+windowSize+"; it cannot be negative.");
+		}
+		profiler = (windowSize == 0) ? null : new TickProfiler(windowSize);
+		return this;
+	}
+	
+	/** Provides the profiler that records the timings of each tick of this particle system.
+	 *  @return The profiler, or null if profiling is disabled.
+	 */
+	public final TickProfiler getProfiler()
+	{
+		return profiler;
+	}
 
 	/** Sets the x, y, z components of the gravity vector.
 	 * @param x the x component of the gravity vector.
@@ -183,6 +478,11 @@ public class ParticleSystem
 	public final ParticleSystem	setGravity(float x, float y, float z)
 	{ 
 		gravity.set( x, y, z );
+		numModifications++;
+		if (islands != null)
+		{
+			islands.wakeAll();
+		}
 		return this;
 	}
 	
@@ -194,6 +494,14 @@ public class ParticleSystem
 	{
 		return setGravity(0, g, 0);
 	}
+	
+	/** Reports the gravity vector that acts on all particles in this system.
+	 *  @return A copy of the gravity vector.
+	 */
+	public final Vector3D getGravity()
+	{
+		return new Vector3D(gravity);
+	}
 
 	/** Sets the drag component that affects the particles in this system.
 	 *  @param d the drag factor. A positive value corresponds to physical drag.
@@ -202,8 +510,21 @@ public class ParticleSystem
 	public final ParticleSystem setDrag(float d) 
 	{ 
 		drag = d; 
+		numModifications++;
+		if (islands != null)
+		{
+			islands.wakeAll();
+		}
 		return this;
 	}
+	
+	/** Reports the drag component that affects the particles in this system.
+	 *  @return The drag factor.
+	 */
+	public final float getDrag()
+	{
+		return drag;
+	}
 
 	/** Creates a particle in the ParticleSystem, and returns that Particle
 	 * @param mass the new Particle mass
@@ -217,6 +538,7 @@ public class ParticleSystem
 		Particle p = new Particle(mass);
 		p.position().set(x, y, z);
 		particles.add(p);
+		connectionsChanged(null, null);
 		return p;
 	}
 
@@ -227,6 +549,7 @@ public class ParticleSystem
 	{ 
 		Particle p = new Particle();
 		particles.add(p);
+		connectionsChanged(null, null);
 		return p;
 	}
 
@@ -239,6 +562,7 @@ public class ParticleSystem
 	{
 		nullThrower(p, "Argument p is null in makeParticle(p) call.");
 		particles.add(p);
+		connectionsChanged(null, null);
 		return p;
 	}
 
@@ -263,6 +587,8 @@ public class ParticleSystem
 		}
 		Spring s = new Spring(a, b, strength, damping, restLength);
 		springs.add(s);
+		connect(s);
+		connectionsChanged(a, b);
 		return s;
 	}
 	
@@ -284,9 +610,48 @@ public class ParticleSystem
 		}
 		Attraction m = new Attraction(a, b, strength, minDistance);
 		attractions.add(m);
+		connect(m);
+		connectionsChanged(a, b);
 		return m;
 	}
 	
+	/** Creates an emitter that adds particles to this system at the given rate and removes them once the given
+	 *  lifetime has passed since their emission. Expired particles are reused for later emissions. The emitter is updated at the end of each 
+	 *  tick and initially emits particles at the origin; see {@link ParticleEmitter} for setting its spawn region
+	 *  and initial velocity.
+	 *  @param rate Number of particles emitted per unit of time.
+	 *  @param lifetime Time after emission at which particles are removed.
+	 *  @return The new emitter.
+	 *  @throws IllegalArgumentException if the rate is negative or the lifetime is not positive.
+	 */
+	public final ParticleEmitter makeEmitter(float rate, float lifetime) throws IllegalArgumentException
+	{
+		ParticleEmitter emitter = new ParticleEmitter(this, rate, lifetime);
+		emitters.add(emitter);
+		return emitter;
+	}
+	
+	/** Provides the emitters that add particles to this particle system.
+	 *  @return Read-only list of emitters.
+	 */
+	public final List<ParticleEmitter> getEmitters()
+	{
+		return Collections.unmodifiableList(emitters);
+	}
+	
+	/** Removes the given emitter from this particle system along with all the particles it has emitted.
+	 *  @param emitter The emitter to remove.
+	 *  @return The particle system updated with the removed emitter.
+	 */
+	public final ParticleSystem removeEmitter(ParticleEmitter emitter)
+	{
+		if (emitters.remove(emitter))
+		{
+			emitter.clear();
+		}
+		return this;
+	}
+	
 	/** Reports a collection of the springs currently defined as part of this particle system. While the current implementation
 	 *  will return the collection in insert-order, there is no guarantee that future versions will maintain a fixed order in the 
 	 *  returned collection.
@@ -363,6 +728,8 @@ public class ParticleSystem
 			if (counter == i)
 			{
 				it.remove();
+				disconnect(spring);
+				connectionsChanged(spring.getOneEnd(), spring.getTheOtherEnd());
 				return spring;
 			}
 			counter++;
@@ -376,7 +743,11 @@ public class ParticleSystem
 	 */
 	public final ParticleSystem removeSpring(Spring spring)
 	{
-		springs.remove(spring);
+		if (springs.remove(spring))
+		{
+			disconnect(spring);
+			connectionsChanged(spring.getOneEnd(), spring.getTheOtherEnd());
+		}
 		return this; 
 	}
 	
@@ -456,6 +827,8 @@ public class ParticleSystem
 			if (counter == i)
 			{
 				it.remove();
+				disconnect(attraction);
+				connectionsChanged(attraction.getOneEnd(), attraction.getTheOtherEnd());
 				return attraction;
 			}
 			counter++;
@@ -469,7 +842,11 @@ public class ParticleSystem
 	 */
 	public final ParticleSystem removeAttraction(Attraction attraction)
 	{ 
-		attractions.remove(attraction);
+		if (attractions.remove(attraction))
+		{
+			disconnect(attraction);
+			connectionsChanged(attraction.getOneEnd(), attraction.getTheOtherEnd());
+		}
 		return this;
 	}
 	
@@ -503,6 +880,7 @@ public class ParticleSystem
 		if (customForce != null)
 		{
 			customForces.add(customForce);
+			numModifications++;
 		}
 		return this;
 			
@@ -563,6 +941,7 @@ public class ParticleSystem
 			if (counter == i)
 			{
 				it.remove();
+				numModifications++;
 				return force;
 			}
 			counter++;
@@ -576,7 +955,10 @@ public class ParticleSystem
 	 */
 	public final ParticleSystem removeCustomForce(AbstractForce customForce)
 	{ 
-		customForces.remove(customForce);
+		if (customForces.remove(customForce))
+		{
+			numModifications++;
+		}
 		return this; 
 	}
 	
@@ -636,60 +1018,107 @@ public class ParticleSystem
 		return p;
 	}
 		
-	/** Removes the given particle from the collection of particles stored in this particle system if it exists.
+	/** Removes the given particle from the collection of particles stored in this particle system if it exists,
+	 *  along with any springs and attractions attached to it. The time taken depends only on the number of 
+	 *  springs and attractions attached to the particle, not on the size of the system. Custom forces that act 
+	 *  on the particle are not removed.
 	 *  @param p The particle to remove.
 	 *  @return The particle system updated with the removed particle.
 	 */
 	public final ParticleSystem removeParticle(Particle p)
 	{ 
-		particles.remove(p);
+		if (particles.remove(p))
+		{
+			List<TwoBodyForce> forces = connections.remove(p);
+			if (forces != null)
+			{
+				for (TwoBodyForce force : forces)
+				{
+					if ((force instanceof Spring) ? springs.remove(force) : attractions.remove(force))
+					{
+						Particle other = (force.getOneEnd() == p) ? force.getTheOtherEnd() : force.getOneEnd();
+						removeConnection(other, force);
+						connectionsChanged(other, null);
+					}
+				}
+			}
+			connectionsChanged(p, null);
+		}
 		return this; 
 	}
+	
+	/** Provides the springs and attractions created by this particle system that are attached to the given particle.
+	 *  The time taken depends only on the number of springs and attractions attached to the particle. Springs and 
+	 *  attractions added or removed directly through the collections provided by {@link #getSprings()} and 
+	 *  {@link #getAttractions()} are not reported correctly.
+	 *  @param p Particle to query.
+	 *  @return Read-only list of springs and attractions attached to the particle, in no particular order.
+	 */
+	public final List<TwoBodyForce> getConnections(Particle p)
+	{
+		List<TwoBodyForce> forces = connections.get(p);
+		if (forces == null)
+		{
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(forces);
+	}
 
-	/** Clears the particle system of all particles, springs, attractions and custom forces.
+	/** Clears the particle system of all particles, springs, attractions, custom forces and emitters.
 	 */
 	public final void clear() 
 	{
+		emitters.clear();
 		particles.clear();
 		springs.clear();
 		attractions.clear();
 		customForces.clear();
+		connections.clear();
+		connectionsChanged(null, null);
 	}
 
 	/** Applies the forces contained in this particle system to those particles subject to them.
 	 */
 	protected final void applyForces()
 	{
-		if (!gravity.isZero())
+		if (isArraysLoaded)
 		{
-			for (final Particle p : getParticles())
-			{
-				p.addForce(gravity).addForce(Vector3D.multiplyBy(p.velocity(), -drag));
-			}
-		} 
-		else 
+			applyArrayForces();
+			return;
+		}
+		
+		long time = startPhase();
+		float gx = gravity.getX(), gy = gravity.getY(), gz = gravity.getZ();
+		float negDrag = -drag;
+		for (final Particle p : getParticles())
 		{
-			for (final Particle p : getParticles()) 
-			{
-				p.addForce(Vector3D.multiplyBy(p.velocity(), -drag));
-			}
+			// Updated in place rather than with new vectors so that no objects are created for each particle.
+			Vector3D f = p.getForce();
+			Vector3D v = p.velocity;
+			f.set((f.getX()+gx) + v.getX()*negDrag, (f.getY()+gy) + v.getY()*negDrag, (f.getZ()+gz) + v.getZ()*negDrag);
 		}
+		time = endPhase(TickProfiler.PHASE.GRAVITY_DRAG, time);
 				
-		for (final Spring f : getSprings())
+		if (!isSpringsSkipped)
 		{
-			f.apply();
+			for (final Spring f : activeSprings())
+			{
+				f.apply();
+			}
 		}
+		time = endPhase(TickProfiler.PHASE.SPRINGS, time);
 		
-		for (final Attraction f : getAttractions())
+		for (final Attraction f : activeAttractions())
 		{
 			f.apply();
 		}
+		time = endPhase(TickProfiler.PHASE.ATTRACTIONS, time);
 		
 		for (final AbstractForce f : getCustomForces()) 
 		{
 			f.apply();
 		}
-	
+		endPhase(TickProfiler.PHASE.CUSTOM_FORCES, time);
 	}
 
 	/** Removes all forces from this particle system. Unlike <code>clearAllForces()</code>, this
@@ -698,10 +1127,19 @@ public class ParticleSystem
 	 */
 	protected final void clearForces() 
 	{ 
-		for (Particle p : particles)
+		long time = startPhase();
+		if (isArraysLoaded)
 		{
-			p.clearForce(); 
+			arrays.clearForces();
+		}
+		else
+		{
+			for (Particle p : particles)
+			{
+				p.clearForce(); 
+			}
 		}
+		endPhase(TickProfiler.PHASE.CLEAR_FORCES, time);
 	}
 	
 	/** Removes all forces, springs and attractions from the particle system.
@@ -712,10 +1150,305 @@ public class ParticleSystem
 		springs.clear();
 		attractions.clear();
 		customForces.clear();
+		connections.clear();
+		connectionsChanged(null, null);
+	}
+	
+	/** Copies the current state of all particles into primitive array storage if it has been enabled 
+	 *  with {@link #setArrayStorage(boolean)}. Until {@link #storeArrays()} is called, forces applied 
+	 *  by this system operate on the arrays rather than the particle objects. This is intended to be 
+	 *  called by array-aware integrators at the start of each step.
+	 *  @return Arrays holding the state of the particles, or null if array storage is not enabled.
+	 */
+	final ParticleArrays loadArrays()
+	{
+		if (!isArrayStorage)
+		{
+			return null;
+		}
+		if (arrays == null)
+		{
+			arrays = new ParticleArrays();
+		}
+		arrays.load(particles);
+		isArraysLoaded = true;
+		return arrays;
+	}
+	
+	/** Copies the state held in primitive array storage back into the particle objects. This is intended 
+	 *  to be called by array-aware integrators at the end of each step.
+	 */
+	final void storeArrays()
+	{
+		if (isArraysLoaded)
+		{
+			arrays.store();
+			isArraysLoaded = false;
+		}
+	}
+	
+	/** Applies all the forces of this particle system except those of its springs. This is intended to be 
+	 *  called by integrators that treat springs as constraints on the positions of particles rather than as forces.
+	 */
+	final void applyForcesExceptSprings()
+	{
+		isSpringsSkipped = true;
+		try
+		{
+			applyForces();
+		}
+		finally
+		{
+			isSpringsSkipped = false;
+		}
+	}
+	
+	/** Provides the springs that would be evaluated when applying forces, which excludes those attached to 
+	 *  sleeping particles. This is intended for integrators that treat springs as constraints.
+	 *  @return Springs to evaluate.
+	 */
+	final Collection<Spring> getActiveSprings()
+	{
+		return activeSprings();
+	}
+	
+	/** Reports a count that changes whenever the forces on particles may have changed for reasons other than 
+	 *  the movement of the particles themselves. This includes changes to gravity or drag, the addition or 
+	 *  removal of particles and forces, and changes made to individual springs, attractions and custom forces
+	 *  through their own methods. This is intended for integrators that reuse forces calculated in a previous 
+	 *  step. Takes time proportional to the number of forces in the system.
+	 *  @return Modification count.
+	 */
+	final int getModificationCount()
+	{
+		int count = numModifications;
+		for (Spring spring : springs)
+		{
+			count += spring.numChanges;
+		}
+		for (Attraction attraction : attractions)
+		{
+			count += attraction.numChanges;
+		}
+		for (AbstractForce force : customForces)
+		{
+			count += force.numChanges;
+		}
+		return count;
+	}
+	
+	/** Applies the given update to the first n particles held in array storage. The particles are divided
+	 *  into chunks that are updated in parallel if parallel integration has been enabled.
+	 *  @param n Number of particles to update.
+	 *  @param update Update to apply to each range of particles.
+	 */
+	final void updateArrays(int n, ArrayUpdate update)
+	{
+		if (parallelUpdates == null)
+		{
+			update.update(0, n);
+		}
+		else
+		{
+			parallelUpdates.apply(n, update);
+		}
 	}
 	
 	// -------------------------------- Private methods -----------------------------------
 	
+	/** Applies the forces contained in this particle system to the particles held in primitive array storage.
+	 */
+	private void applyArrayForces()
+	{
+		ParticleArrays a = arrays;
+		float[] fx = a.fx, fy = a.fy, fz = a.fz;
+		
+		long time = startPhase();
+		if (gravityDragUpdate == null)
+		{
+			gravityDragUpdate = new GravityDragUpdate();
+		}
+		gravityDragUpdate.a = a;
+		gravityDragUpdate.gx = gravity.getX();
+		gravityDragUpdate.gy = gravity.getY();
+		gravityDragUpdate.gz = gravity.getZ();
+		gravityDragUpdate.negDrag = -drag;
+		updateArrays(a.size, gravityDragUpdate);
+		gravityDragUpdate.a = null;
+		time = endPhase(TickProfiler.PHASE.GRAVITY_DRAG, time);
+		
+		Collection<Spring> activeSprings = isSpringsSkipped ? Collections.<Spring>emptyList() : activeSprings();
+		Collection<Attraction> activeAttractions = activeAttractions();
+		if ((parallelForces != null) && parallelForces.apply(a, activeSprings, activeAttractions))
+		{
+			time = endPhase(TickProfiler.PHASE.SPRINGS, time);
+		}
+		else
+		{
+			for (final Spring f : activeSprings)
+			{
+				f.applyArrays(a, fx, fy, fz);
+			}
+			time = endPhase(TickProfiler.PHASE.SPRINGS, time);
+			
+			for (final Attraction f : activeAttractions)
+			{
+				f.applyArrays(a, fx, fy, fz);
+			}
+			time = endPhase(TickProfiler.PHASE.ATTRACTIONS, time);
+		}
+		
+		boolean isObjectForces = false;
+		for (final AbstractForce f : customForces)
+		{
+			if (f.isArrayForce())
+			{
+				f.applyToArrays(a);
+			}
+			else
+			{
+				isObjectForces = true;
+			}
+		}
+		
+		if (isObjectForces)
+		{
+			// Other custom forces only know about particle objects, so bring them up to date first.
+			a.storeState();
+			for (final Particle p : particles)
+			{
+				p.clearForce();
+			}
+			for (final AbstractForce f : customForces) 
+			{
+				if (!f.isArrayForce())
+				{
+					f.apply();
+				}
+			}
+			a.addParticleForces();
+		}
+		endPhase(TickProfiler.PHASE.CUSTOM_FORCES, time);
+	}
+	
+	
+	/** Provides the springs to be evaluated when applying forces, which excludes those attached to sleeping particles.
+	 *  @return Springs to evaluate.
+	 */
+	private Collection<Spring> activeSprings()
+	{
+		return (islands == null) ? springs : islands.getActiveSprings(springs);
+	}
+	
+	/** Provides the attractions to be evaluated when applying forces, which excludes those attached to sleeping particles.
+	 *  @return Attractions to evaluate.
+	 */
+	private Collection<Attraction> activeAttractions()
+	{
+		return (islands == null) ? attractions : islands.getActiveAttractions(attractions);
+	}
+	
+	/** Adds the given spring or attraction to the connections of the particles at each of its ends.
+	 *  @param force Spring or attraction that has been added.
+	 */
+	private void connect(TwoBodyForce force)
+	{
+		addConnection(force.getOneEnd(), force);
+		addConnection(force.getTheOtherEnd(), force);
+	}
+	
+	/** Removes the given spring or attraction from the connections of the particles at each of its ends.
+	 *  @param force Spring or attraction that has been removed.
+	 */
+	private void disconnect(TwoBodyForce force)
+	{
+		removeConnection(force.getOneEnd(), force);
+		removeConnection(force.getTheOtherEnd(), force);
+	}
+	
+	/** Records that the given spring or attraction is attached to the given particle.
+	 *  @param p Particle to which the force is attached.
+	 *  @param force Spring or attraction attached to the particle.
+	 */
+	private void addConnection(Particle p, TwoBodyForce force)
+	{
+		List<TwoBodyForce> forces = connections.get(p);
+		if (forces == null)
+		{
+			forces = new ArrayList<TwoBodyForce>(4);
+			connections.put(p, forces);
+		}
+		forces.add(force);
+	}
+	
+	/** Removes the given spring or attraction from the connections of the given particle. The last connection 
+	 *  is moved into the place of the removed one, so removal does not shift the rest of the list.
+	 *  @param p Particle to which the force was attached.
+	 *  @param force Spring or attraction to remove.
+	 */
+	private void removeConnection(Particle p, TwoBodyForce force)
+	{
+		List<TwoBodyForce> forces = connections.get(p);
+		if (forces == null)
+		{
+			return;
+		}
+		int last = forces.size()-1;
+		for (int i=last; i>=0; i--)
+		{
+			if (forces.get(i) == force)
+			{
+				forces.set(i, forces.get(last));
+				forces.remove(last);
+				break;
+			}
+		}
+		if (forces.isEmpty())
+		{
+			connections.remove(p);
+		}
+	}
+	
+	/** Provides the start time of a profiled phase of a tick.
+	 *  @return Current time in nanoseconds, or 0 if profiling is disabled.
+	 */
+	private long startPhase()
+	{
+		return (profiler == null) ? 0 : System.nanoTime();
+	}
+	
+	/** Records the time spent in a phase of a tick if profiling is enabled.
+	 *  @param phase Phase that has just completed.
+	 *  @param start Start time of the phase provided by {@link #startPhase()} or a previous call to this method.
+	 *  @return Start time of the next phase.
+	 */
+	private long endPhase(TickProfiler.PHASE phase, long start)
+	{
+		return (profiler == null) ? 0 : profiler.endPhase(phase, start);
+	}
+	
+	/** Records that particles, springs or attractions have been added or removed so that any islands of 
+	 *  connected particles are found again before the next tick, waking those affected.
+	 *  @param a Particle whose connections have changed, or null if not applicable.
+	 *  @param b Other particle whose connections have changed, or null if not applicable.
+	 */
+	private void connectionsChanged(Particle a, Particle b)
+	{
+		numModifications++;
+		if (islands != null)
+		{
+			if (a != null)
+			{
+				islands.wake(a);
+			}
+			if (b != null)
+			{
+				islands.wake(b);
+			}
+			islands.invalidate();
+		}
+	}
+	
 	/** Convenience method for throwing NullPointerExceptions.
 	 * @param o the object to test for null
 	 * @param message the message to use, if o is null
@@ -738,6 +1471,47 @@ public class ParticleSystem
 	{ 
 		throw new IllegalArgumentException(message); 
 	}
+	
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** Update that adds gravity and drag to the forces on a range of particles held in array storage. Each
+	 *  component is updated in its own loop over contiguous arrays with no branches, which the JIT compiler
+	 *  can turn into vector instructions. Adding zero gravity leaves the forces unchanged, so the same 
+	 *  loops serve systems with and without gravity.
+	 */
+	private static class GravityDragUpdate implements ArrayUpdate
+	{
+		ParticleArrays a;			// Arrays holding the particles to update.
+		float gx,gy,gz;				// Components of gravity.
+		float negDrag;				// Negated drag coefficient.
+
+		/** Adds gravity and drag to the forces on the particles in the given range.
+		 *  @param start Index of the first particle to update.
+		 *  @param end Index one beyond the last particle to update.
+		 */
+		public void update(int start, int end)
+		{
+			addGravityDrag(a.fx, a.vx, gx, negDrag, start, end);
+			addGravityDrag(a.fy, a.vy, gy, negDrag, start, end);
+			addGravityDrag(a.fz, a.vz, gz, negDrag, start, end);
+		}
+
+		/** Adds one component of gravity and drag to the forces in the given range.
+		 *  @param f Force component to update.
+		 *  @param v Velocity component from which drag is calculated.
+		 *  @param g Gravity component.
+		 *  @param negDrag Negated drag coefficient.
+		 *  @param start Index of the first particle to update.
+		 *  @param end Index one beyond the last particle to update.
+		 */
+		private static void addGravityDrag(float[] f, float[] v, float g, float negDrag, int start, int end)
+		{
+			for (int i=start; i<end; i++)
+			{
+				f[i] = (f[i]+g) + v[i]*negDrag;
+			}
+		}
+	}
 
 
 }
\ No newline at end of file
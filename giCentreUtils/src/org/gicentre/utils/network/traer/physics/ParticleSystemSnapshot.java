@@ -0,0 +1,530 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+
+// *****************************************************************************************
+/** Saves and restores the state of a particle system in a compact binary format. A snapshot
+ *  holds the gravity, drag, time step and integrator of the system, the position, velocity,
+ *  force, mass, age and fixed state of every particle, and all springs and attractions. 
+ *  Any state carried between steps by the built-in integrators is also saved, so a restored
+ *  system continues to tick exactly as the original would have done. Values are stored in
+ *  columns rather than particle by particle, so large snapshots are transferred in bulk 
+ *  through a memory-mapped file channel.
+ *  <p>Custom forces, particle subclasses and settings such as sleeping, array storage and 
+ *  parallel evaluation are not saved. Particles are restored as plain {@link Particle}s and
+ *  custom integrators are replaced by the default Runge Kutta integrator.</p>
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class ParticleSystemSnapshot
+{
+	// ----------------------------- Class variables ------------------------------
+
+	private static final int MAGIC = 0x47435053;		// Identifies a particle system snapshot ('GCPS').
+	private static final int VERSION = 1;				// Version of the snapshot format.
+	private static final int MAP_THRESHOLD = 1<<20;		// Snapshots of at least this many bytes are memory-mapped.
+	private static final byte FIXED = 1;				// Particle flag indicating a fixed particle.
+	private static final byte DEAD = 2;					// Particle flag indicating a dead particle.
+
+	private static final int HEADER_BYTES = 32;			// Magic number, version, gravity, drag, time step and integrator.
+	private static final int COUNT_BYTES = 4;			// Number of items in each section, or size of the integrator state.
+	private static final int PARTICLE_BYTES = 45;		// Position, velocity, force, mass, age and flags of a particle.
+	private static final int SPRING_BYTES = 21;			// End indices, strength, damping, rest length and state of a spring.
+	private static final int ATTRACTION_BYTES = 17;		// End indices, strength, minimum distance and state of an attraction.
+
+	// ------------------------------- Constructor --------------------------------
+
+	/** Prevents a snapshot from being instantiated; use the static methods instead.
+	 */
+	private ParticleSystemSnapshot()
+	{
+		// Not to be instantiated.
+	}
+
+	// --------------------------------- Methods ----------------------------------
+
+	/** Saves the state of the given particle system to the file with the given name, replacing any 
+	 *  existing file. This should not be called while the system is being ticked.
+	 *  @param s Particle system to save.
+	 *  @param fileName Name of file in which to save the snapshot.
+	 *  @return True if the snapshot was saved successfully.
+	 */
+	public static boolean save(ParticleSystem s, String fileName)
+	{
+		ParticleArrays a = new ParticleArrays();
+		a.load(s.getParticles());
+		a.addParticleForces();
+		int n = a.size;
+
+		Integrator integrator = s.getIntegrator();
+		int method = methodOf(integrator);
+		int stateSize = (method < 0) ? 0 : integrator.getStateSize(a);
+		long size = HEADER_BYTES + COUNT_BYTES + (long)PARTICLE_BYTES*n 
+		          + COUNT_BYTES + (long)SPRING_BYTES*s.getNumSprings()
+		          + COUNT_BYTES + (long)ATTRACTION_BYTES*s.getNumAttractions()
+		          + COUNT_BYTES + stateSize;
+		if (size > Integer.MAX_VALUE)
+		{
+			System.err.println("Particle system is too large to save as a single snapshot.");
+			return false;
+		}
+
+		RandomAccessFile file = null;
+		try
+		{
+			file = new RandomAccessFile(fileName, "rw");
+			file.setLength(size);
+			FileChannel channel = file.getChannel();
+			ByteBuffer out;
+			if (size >= MAP_THRESHOLD)
+			{
+				out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+			else
+			{
+				out = ByteBuffer.allocate((int)size);
+			}
+
+			// Header and system settings.
+			Vector3D gravity = s.getGravity();
+			out.putInt(MAGIC).putInt(VERSION);
+			out.putFloat(gravity.getX()).putFloat(gravity.getY()).putFloat(gravity.getZ());
+			out.putFloat(s.getDrag()).putFloat(s.getDeltaT()).putInt(method);
+
+			// Particles.
+			out.putInt(n);
+			float[] age = new float[n];
+			byte[] flags = new byte[n];
+			for (int i=0; i<n; i++)
+			{
+				Particle p = a.particles[i];
+				age[i] = p.age;
+				flags[i] = (byte)((p.isFixed ? FIXED : 0) | (p.isDead ? DEAD : 0));
+			}
+			putFloats(out, a.x, n);
+			putFloats(out, a.y, n);
+			putFloats(out, a.z, n);
+			putFloats(out, a.vx, n);
+			putFloats(out, a.vy, n);
+			putFloats(out, a.vz, n);
+			putFloats(out, a.fx, n);
+			putFloats(out, a.fy, n);
+			putFloats(out, a.fz, n);
+			putFloats(out, a.mass, n);
+			putFloats(out, age, n);
+			out.put(flags, 0, n);
+
+			// Springs.
+			Collection<Spring> springs = s.getSprings();
+			int numSprings = springs.size();
+			int[] ends1 = new int[numSprings], ends2 = new int[numSprings];
+			float[] ks = new float[numSprings], d = new float[numSprings], l = new float[numSprings];
+			byte[] on = new byte[numSprings];
+			int k=0;
+			for (Spring spring : springs)
+			{
+				ends1[k] = endIndex(a, spring.getOneEnd());
+				ends2[k] = endIndex(a, spring.getTheOtherEnd());
+				ks[k] = spring.strength();
+				d[k] = spring.damping();
+				l[k] = spring.restLength();
+				on[k] = (byte)(spring.isOn() ? 1 : 0);
+				k++;
+			}
+			out.putInt(numSprings);
+			putInts(out, ends1, numSprings);
+			putInts(out, ends2, numSprings);
+			putFloats(out, ks, numSprings);
+			putFloats(out, d, numSprings);
+			putFloats(out, l, numSprings);
+			out.put(on, 0, numSprings);
+
+			// Attractions.
+			Collection<Attraction> attractions = s.getAttractions();
+			int numAttractions = attractions.size();
+			ends1 = new int[numAttractions];
+			ends2 = new int[numAttractions];
+			float[] strength = new float[numAttractions], minDist = new float[numAttractions];
+			on = new byte[numAttractions];
+			k=0;
+			for (Attraction attraction : attractions)
+			{
+				ends1[k] = endIndex(a, attraction.getOneEnd());
+				ends2[k] = endIndex(a, attraction.getTheOtherEnd());
+				strength[k] = attraction.getStrength();
+				minDist[k] = attraction.getMinimumDistance();
+				on[k] = (byte)(attraction.isOn() ? 1 : 0);
+				k++;
+			}
+			out.putInt(numAttractions);
+			putInts(out, ends1, numAttractions);
+			putInts(out, ends2, numAttractions);
+			putFloats(out, strength, numAttractions);
+			putFloats(out, minDist, numAttractions);
+			out.put(on, 0, numAttractions);
+
+			// State carried between steps by the integrator.
+			out.putInt(stateSize);
+			if (stateSize > 0)
+			{
+				integrator.writeState(out, a);
+			}
+
+			if (out instanceof MappedByteBuffer)
+			{
+				((MappedByteBuffer)out).force();
+			}
+			else
+			{
+				out.flip();
+				while (out.hasRemaining())
+				{
+					channel.write(out);
+				}
+			}
+		}
+		catch (IllegalStateException e)
+		{
+			System.err.println("Problem saving particle system: "+e.getMessage());
+			return false;
+		}
+		catch (IOException e)
+		{
+			System.err.println("Problem writing particle system snapshot to "+fileName);
+			return false;
+		}
+		finally
+		{
+			close(file);
+		}
+		return true;
+	}
+
+	/** Creates a particle system from the snapshot stored in the file with the given name.
+	 *  @param fileName Name of file containing the snapshot.
+	 *  @return New particle system in the saved state, or null if the snapshot could not be read.
+	 */
+	public static ParticleSystem load(String fileName)
+	{
+		FileInputStream file = null;
+		try
+		{
+			file = new FileInputStream(new File(fileName));
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			ByteBuffer in;
+			if (size >= MAP_THRESHOLD)
+			{
+				in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			else
+			{
+				in = ByteBuffer.allocate((int)size);
+				while (in.hasRemaining() && (channel.read(in) >= 0))
+				{
+					// Keep reading until the buffer is full.
+				}
+				in.flip();
+			}
+			return read(in);
+		}
+		catch (BufferUnderflowException e)
+		{
+			System.err.println("Particle system snapshot "+fileName+" is truncated.");
+			return null;
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println("Particle system snapshot "+fileName+" is corrupt: "+e.getMessage());
+			return null;
+		}
+		catch (IOException e)
+		{
+			System.err.println("Problem reading particle system snapshot from "+fileName);
+			return null;
+		}
+		finally
+		{
+			close(file);
+		}
+	}
+
+	// ----------------------------- Private methods ------------------------------
+
+	/** Creates a particle system from the snapshot held in the given buffer.
+	 *  @param in Buffer holding the snapshot.
+	 *  @return New particle system in the saved state.
+	 *  @throws IllegalArgumentException if the buffer does not hold a valid snapshot.
+	 *  @throws BufferUnderflowException if the snapshot is truncated.
+	 */
+	private static ParticleSystem read(ByteBuffer in) throws IllegalArgumentException, BufferUnderflowException
+	{
+		if (in.getInt() != MAGIC)
+		{
+			throw new IllegalArgumentException("not a particle system snapshot.");
+		}
+		int version = in.getInt();
+		if (version != VERSION)
+		{
+			throw new IllegalArgumentException("unsupported snapshot version "+version+".");
+		}
+
+		// System settings.
+		float gx = in.getFloat(), gy = in.getFloat(), gz = in.getFloat();
+		ParticleSystem s = new ParticleSystem(gx, gy, gz, in.getFloat());
+		s.setDeltaT(in.getFloat());
+		int method = in.getInt();
+		if (method >= Integrator.METHOD.values().length)
+		{
+			throw new IllegalArgumentException("unknown integrator "+method+".");
+		}
+		if (method >= 0)
+		{
+			s.setIntegrator(Integrator.METHOD.values()[method]);
+		}
+
+		// Particles.
+		int n = readCount(in, PARTICLE_BYTES);
+		float[] x = getFloats(in, n), y = getFloats(in, n), z = getFloats(in, n);
+		float[] vx = getFloats(in, n), vy = getFloats(in, n), vz = getFloats(in, n);
+		float[] fx = getFloats(in, n), fy = getFloats(in, n), fz = getFloats(in, n);
+		float[] mass = getFloats(in, n), age = getFloats(in, n);
+		byte[] flags = new byte[n];
+		in.get(flags);
+		Particle[] particles = new Particle[n];
+		for (int i=0; i<n; i++)
+		{
+			Particle p = new Particle(mass[i]);
+			p.position.set(x[i], y[i], z[i]);
+			p.velocity.set(vx[i], vy[i], vz[i]);
+			p.getForce().set(fx[i], fy[i], fz[i]);
+			p.age = age[i];
+			p.isFixed = (flags[i] & FIXED) != 0;
+			p.isDead = (flags[i] & DEAD) != 0;
+			particles[i] = s.makeParticle(p);
+		}
+
+		// Springs.
+		int numSprings = readCount(in, SPRING_BYTES);
+		int[] ends1 = getInts(in, numSprings), ends2 = getInts(in, numSprings);
+		float[] ks = getFloats(in, numSprings), d = getFloats(in, numSprings), l = getFloats(in, numSprings);
+		byte[] on = new byte[numSprings];
+		in.get(on);
+		for (int k=0; k<numSprings; k++)
+		{
+			Spring spring = s.makeSpring(particle(particles, ends1[k]), particle(particles, ends2[k]), ks[k], d[k], l[k]);
+			if ((spring != null) && (on[k] == 0))
+			{
+				spring.turnOff();
+			}
+		}
+
+		// Attractions.
+		int numAttractions = readCount(in, ATTRACTION_BYTES);
+		ends1 = getInts(in, numAttractions);
+		ends2 = getInts(in, numAttractions);
+		float[] strength = getFloats(in, numAttractions), minDist = getFloats(in, numAttractions);
+		on = new byte[numAttractions];
+		in.get(on);
+		for (int k=0; k<numAttractions; k++)
+		{
+			Attraction attraction = s.makeAttraction(particle(particles, ends1[k]), particle(particles, ends2[k]), strength[k], minDist[k]);
+			if ((attraction != null) && (on[k] == 0))
+			{
+				attraction.turnOff();
+			}
+		}
+
+		// State carried between steps by the integrator.
+		int stateSize = readCount(in, 1);
+		if (stateSize > 0)
+		{
+			ParticleArrays a = new ParticleArrays();
+			a.load(s.getParticles());
+			ByteBuffer state = in.slice();
+			state.limit(stateSize);
+			s.getIntegrator().readState(state, a);
+		}
+		return s;
+	}
+
+	/** Reports the built-in integration method used by the given integrator.
+	 *  @param integrator Integrator to identify.
+	 *  @return Ordinal of the integrator's method, or -1 if it is not one of the built-in integrators.
+	 */
+	private static int methodOf(Integrator integrator)
+	{
+		Class<?> type = integrator.getClass();
+		if (type == RungeKuttaIntegrator.class)
+		{
+			return Integrator.METHOD.RUNGEKUTTA.ordinal();
+		}
+		if (type == BackwardEulerIntegrator.class)
+		{
+			return Integrator.METHOD.EULER.ordinal();
+		}
+		if (type == ModifiedEulerIntegrator.class)
+		{
+			return Integrator.METHOD.MODEULER.ordinal();
+		}
+		if (type == SettlingRungeKuttaIntegrator.class)
+		{
+			return Integrator.METHOD.SRUNGEKUTTA.ordinal();
+		}
+		if (type == AdaptiveRungeKuttaIntegrator.class)
+		{
+			return Integrator.METHOD.ADAPTIVE.ordinal();
+		}
+		if (type == VerletIntegrator.class)
+		{
+			return Integrator.METHOD.VERLET.ordinal();
+		}
+		if (type == PositionBasedIntegrator.class)
+		{
+			return Integrator.METHOD.POSITIONBASED.ordinal();
+		}
+		if (type == ImplicitEulerIntegrator.class)
+		{
+			return Integrator.METHOD.IMPLICIT.ordinal();
+		}
+		return -1;
+	}
+
+	/** Reports the index of a force's end particle within the particles being saved.
+	 *  @param a Arrays holding the particles being saved.
+	 *  @param p End particle of a spring or attraction.
+	 *  @return Index of the particle.
+	 *  @throws IllegalStateException if the particle is not part of the particle system.
+	 */
+	private static int endIndex(ParticleArrays a, Particle p) throws IllegalStateException
+	{
+		int i = a.indexOf(p);
+		if (i < 0)
+		{
+			throw new IllegalStateException("a spring or attraction is attached to a particle that is not part of the particle system.");
+		}
+		return i;
+	}
+
+	/** Provides the restored particle with the given index.
+	 *  @param particles Restored particles.
+	 *  @param i Index of the particle read from the snapshot.
+	 *  @return The particle with the given index.
+	 *  @throws IllegalArgumentException if the index is out of range.
+	 */
+	private static Particle particle(Particle[] particles, int i) throws IllegalArgumentException
+	{
+		if ((i < 0) || (i >= particles.length))
+		{
+			throw new IllegalArgumentException("force attached to unknown particle "+i+".");
+		}
+		return particles[i];
+	}
+
+	/** Reads a count of items and checks that the buffer is large enough to hold them.
+	 *  @param in Buffer from which to read the count.
+	 *  @param itemSize Number of bytes occupied by each item.
+	 *  @return Number of items.
+	 *  @throws IllegalArgumentException if the count is negative or too large for the buffer.
+	 */
+	private static int readCount(ByteBuffer in, int itemSize) throws IllegalArgumentException
+	{
+		int count = in.getInt();
+		if ((count < 0) || ((long)count*itemSize > in.remaining()))
+		{
+			throw new IllegalArgumentException("invalid item count "+count+".");
+		}
+		return count;
+	}
+
+	/** Writes the first n values of the given array to the buffer in a single bulk transfer.
+	 *  @param out Buffer to write to.
+	 *  @param values Values to write.
+	 *  @param n Number of values to write.
+	 */
+	private static void putFloats(ByteBuffer out, float[] values, int n)
+	{
+		out.asFloatBuffer().put(values, 0, n);
+		out.position(out.position()+4*n);
+	}
+
+	/** Writes the first n values of the given array to the buffer in a single bulk transfer.
+	 *  @param out Buffer to write to.
+	 *  @param values Values to write.
+	 *  @param n Number of values to write.
+	 */
+	private static void putInts(ByteBuffer out, int[] values, int n)
+	{
+		out.asIntBuffer().put(values, 0, n);
+		out.position(out.position()+4*n);
+	}
+
+	/** Reads n float values from the buffer in a single bulk transfer.
+	 *  @param in Buffer to read from.
+	 *  @param n Number of values to read.
+	 *  @return Values read from the buffer.
+	 */
+	private static float[] getFloats(ByteBuffer in, int n)
+	{
+		float[] values = new float[n];
+		in.asFloatBuffer().get(values);
+		in.position(in.position()+4*n);
+		return values;
+	}
+
+	/** Reads n int values from the buffer in a single bulk transfer.
+	 *  @param in Buffer to read from.
+	 *  @param n Number of values to read.
+	 *  @return Values read from the buffer.
+	 */
+	private static int[] getInts(ByteBuffer in, int n)
+	{
+		int[] values = new int[n];
+		in.asIntBuffer().get(values);
+		in.position(in.position()+4*n);
+		return values;
+	}
+
+	/** Closes the given file, ignoring any problems in doing so.
+	 *  @param file File to close, or null if it was never opened.
+	 */
+	private static void close(Closeable file)
+	{
+		if (file != null)
+		{
+			try
+			{
+				file.close();
+			}
+			catch (IOException e)
+			{
+				// Nothing more can be done if the file cannot be closed.
+			}
+		}
+	}
+}
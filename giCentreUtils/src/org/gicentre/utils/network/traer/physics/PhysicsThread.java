@@ -0,0 +1,279 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// *****************************************************************************************
+/** Ticks a particle system at a fixed rate on its own thread so that heavy force calculations
+ *  do not slow the rate at which a sketch is drawn. After each tick the particle positions are
+ *  published into a triple-buffered {@link PositionSnapshot}, which drawing code obtains with 
+ *  {@link #getSnapshot()} without any locking. Each snapshot also holds the positions from the
+ *  previous tick so that motion can be interpolated smoothly between ticks.
+ *  <p>While the thread is running, the particle system must not be modified or read directly by 
+ *  any other thread. Changes such as adding particles or springs should be passed to 
+ *  {@link #invokeLater(Runnable)}, which runs them on the physics thread between ticks.</p>
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class PhysicsThread implements Runnable
+{
+	// --------------------------- Class and object variables -----------------------------
+
+	/** Default number of ticks per second. */
+	public static final float DEFAULT_TICK_RATE = 60;
+	private static final int MAX_CATCH_UP = 5;		// Most ticks that can be made without pause to catch up after a delay.
+
+	private ParticleSystem s;
+	private long period;							// Time between ticks in nanoseconds.
+	private Thread thread;							// Thread doing the ticking, or null if stopped.
+	private volatile boolean isRunning;
+	private Queue<Runnable> tasks;					// Changes to make to the system between ticks.
+	private ParticleArrays arrays;					// Particle state used to take snapshots.
+	private PositionSnapshot back;					// Snapshot being written by the physics thread.
+	private PositionSnapshot last;					// Positions published at the previous tick.
+	private AtomicReference<PositionSnapshot> ready;// Most recently published snapshot not held by the reader.
+	private PositionSnapshot front;					// Snapshot held by the reader.
+	private volatile long numTicks;
+
+	// ---------------------------------- Constructors ------------------------------------
+
+	/** Creates a thread that will tick the given particle system at the default rate.
+	 *  @param s Particle system to tick.
+	 */
+	public PhysicsThread(ParticleSystem s)
+	{
+		this(s, DEFAULT_TICK_RATE);
+	}
+
+	/** Creates a thread that will tick the given particle system at the given rate. Each tick advances the
+	 *  system by its own time step (see {@link ParticleSystem#setDeltaT(float)}).
+	 *  @param s Particle system to tick.
+	 *  @param tickRate Number of ticks per second.
+	 *  @throws NullPointerException if the particle system is null.
+	 *  @throws IllegalArgumentException if the tick rate is not positive.
+	 */
+	public PhysicsThread(ParticleSystem s, float tickRate) throws NullPointerException, IllegalArgumentException
+	{
+		if (s == null)
+		{
+			throw new NullPointerException("Cannot create a physics thread for a null particle system.");
+		}
+		this.s = s;
+		setTickRate(tickRate);
+		tasks = new ConcurrentLinkedQueue<Runnable>();
+		arrays = new ParticleArrays();
+		back = new PositionSnapshot();
+		last = new PositionSnapshot();
+		front = new PositionSnapshot();
+		ready = new AtomicReference<PositionSnapshot>(new PositionSnapshot());
+	}
+
+	// ------------------------------------ Methods ---------------------------------------
+
+	/** Starts ticking the particle system on a new daemon thread. The current positions are published 
+	 *  before the first tick. Has no effect if the thread is already running.
+	 */
+	public synchronized void start()
+	{
+		if ((thread != null) && thread.isAlive())
+		{
+			return;
+		}
+		isRunning = true;
+		thread = new Thread(this, "PhysicsThread");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Stops ticking the particle system and waits for the current tick to complete, after which the
+	 *  system can be safely modified directly again. Any changes still waiting to be made are run on
+	 *  the calling thread. Has no effect if the thread is not running.
+	 */
+	public synchronized void stop()
+	{
+		if (thread == null)
+		{
+			return;
+		}
+		isRunning = false;
+		LockSupport.unpark(thread);
+		if (thread != Thread.currentThread())
+		{
+			boolean isInterrupted = false;
+			while (thread.isAlive())
+			{
+				try
+				{
+					thread.join();
+				}
+				catch (InterruptedException e)
+				{
+					isInterrupted = true;
+				}
+			}
+			if (isInterrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		thread = null;
+		runTasks();
+	}
+
+	/** Reports whether or not the particle system is being ticked on its own thread.
+	 *  @return True if the thread is running.
+	 */
+	public boolean isRunning()
+	{
+		return isRunning;
+	}
+
+	/** Sets the number of times per second that the particle system is ticked. If ticks take longer than 
+	 *  this allows, the thread makes up for the delay with a few ticks in quick succession, after which 
+	 *  any further lost ticks are skipped.
+	 *  @param tickRate Number of ticks per second.
+	 *  @throws IllegalArgumentException if the tick rate is not positive.
+	 */
+	public void setTickRate(float tickRate) throws IllegalArgumentException
+	{
+		if (tickRate <= 0)
+		{
+			throw new IllegalArgumentException("Tick rate is "+tickRate+"; it must be greater than 0.");
+		}
+		period = (long)(1e9/tickRate);
+	}
+
+	/** Reports the number of times per second that the particle system is ticked.
+	 *  @return Number of ticks per second.
+	 */
+	public float getTickRate()
+	{
+		return (float)(1e9/period);
+	}
+
+	/** Reports the number of ticks made since the thread was created.
+	 *  @return Number of ticks made.
+	 */
+	public long getNumTicks()
+	{
+		return numTicks;
+	}
+
+	/** Arranges for the given task to be run on the physics thread before the next tick. This is the way 
+	 *  to modify the particle system while the thread is running. If the thread is not running, the task 
+	 *  is run when it starts or is stopped.
+	 *  @param task Task to run.
+	 */
+	public void invokeLater(Runnable task)
+	{
+		if (task != null)
+		{
+			tasks.add(task);
+		}
+	}
+
+	/** Provides the most recently published positions of the particles. The snapshot is not changed by the 
+	 *  physics thread, so can be read without locking until this method is next called. This method should 
+	 *  be called from only one thread, usually once at the start of each frame.
+	 *  @return Latest snapshot of particle positions, which will be empty if none has yet been published.
+	 */
+	public PositionSnapshot getSnapshot()
+	{
+		if (ready.get().tickNumber > front.tickNumber)
+		{
+			front = ready.getAndSet(front);
+		}
+		return front;
+	}
+
+	/** Ticks the particle system at a fixed rate until stopped. This is called by the thread created with
+	 *  {@link #start()} so should not normally be called directly.
+	 */
+	public void run()
+	{
+		try
+		{
+			runTasks();
+			publish();
+			long nextTick = System.nanoTime();
+			while (isRunning)
+			{
+				nextTick += period;
+				long delay = nextTick-System.nanoTime();
+				if (delay > 0)
+				{
+					LockSupport.parkNanos(this, delay);
+					if (nextTick-System.nanoTime() > 0)
+					{
+						// Woken early, either to stop or spuriously.
+						nextTick -= period;
+						continue;
+					}
+				}
+				else if (-delay > MAX_CATCH_UP*period)
+				{
+					// Too far behind to catch up, so skip the lost ticks.
+					nextTick = System.nanoTime();
+				}
+
+				runTasks();
+				s.tick();
+				numTicks++;
+				publish();
+			}
+		}
+		catch (RuntimeException e)
+		{
+			System.err.println("Particle system stopped ticking: "+e);
+			e.printStackTrace();
+		}
+		finally
+		{
+			isRunning = false;
+		}
+	}
+
+	// -------------------------------- Private methods -----------------------------------
+
+	/** Runs any changes to the particle system that are waiting to be made.
+	 */
+	private void runTasks()
+	{
+		Runnable task;
+		while ((task = tasks.poll()) != null)
+		{
+			task.run();
+		}
+	}
+
+	/** Records the current positions of the particles and makes them available to the reader.
+	 */
+	private void publish()
+	{
+		arrays.load(s.getParticles());
+		back.record(arrays, last);
+		back.tickNumber = numTicks;
+		back.period = period;
+		back.time = System.nanoTime();
+		last.copyPositions(arrays);
+		back = ready.getAndSet(back);
+	}
+}
@@ -0,0 +1,461 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+// *****************************************************************************************
+/** Class capable of performing position based integration, in which springs are treated as
+ *  constraints on the distance between particles rather than as forces. Each step is divided
+ *  into a number of sub-steps, each of which first moves the particles under all the other 
+ *  forces in the system, then projects each pair of particles joined by a spring back towards
+ *  the spring's rest length a number of times, before deriving the new velocities from the 
+ *  distance each particle has moved. Because the projection can never overshoot, very stiff 
+ *  spring networks such as cloth remain stable with time steps many times larger than those 
+ *  needed by the force based integrators.
+ *  <br /><br />
+ *  Stable is not the same as stiff though. Each projection only passes corrections on to the
+ *  neighbouring particles, so the stretch of a stiff network depends strongly on the time step,
+ *  the number of sub-steps and iterations, and the size of the network, and for strong springs
+ *  is usually far greater than their strength alone would produce. A 30 by 30 cloth of strong
+ *  springs hanging from two corners settles with its springs stretched by up to 6% with the
+ *  default settings and a time step of 1, by ten times as much with a time step of 5, and by
+ *  175% when the same number of projections are made in a single sub-step. Sub-steps are the
+ *  most effective way to stiffen a network, as the stretch falls faster with them than with
+ *  iterations. Forces other than springs are evaluated once per step and held constant over 
+ *  its sub-steps, so the cost of a step grows with the number of sub-steps times iterations.
+ *  <br /><br />
+ *  Spring damping reduces the relative velocity of particles along each spring, and the drag
+ *  of the particle system is applied implicitly so that it remains stable too. Fixed particles
+ *  are never moved by the constraints.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class PositionBasedIntegrator extends Integrator
+{
+	// ------------------------------- Object variables --------------------------------
+
+								/** Default number of sub-steps into which each step is divided. */
+	public static final int DEFAULT_SUB_STEPS = 20;
+								/** Default number of times the constraints are projected in each sub-step. */
+	public static final int DEFAULT_ITERATIONS = 2;
+
+	private int subSteps;				// Number of sub-steps into which each step is divided.
+	private int iterations;				// Number of times the constraints are projected in each sub-step.
+	private float[] ox,oy,oz;			// Positions at the start of the sub-step.
+	private StepUpdate update;			// Update applied to ranges of particles.
+
+	// Constraints built from the springs of the system at the start of each step.
+	private int numConstraints;
+	private Spring[] springArray;
+	private int[] endI,endJ;			// Indices of the particles at each end of each constraint.
+	private float[] restLength;			// Rest length of each constraint.
+	private float[] compliance;			// Inverse strength of each constraint scaled by the square of the sub-step.
+	private float[] damping;			// Damping of each constraint.
+	private float[] lambda;				// Accumulated correction applied by each constraint in the current sub-step.
+
+	// --------------------------------- Constructors ----------------------------------
+
+	/** Sets up the integrator to be used by the given particle system with the default number of sub-steps 
+	 *  and iterations.
+	 *  @param s Particle system upon which to perform the integration.
+	 */
+	public PositionBasedIntegrator(ParticleSystem s)
+	{
+		this(s, DEFAULT_SUB_STEPS, DEFAULT_ITERATIONS);
+	}
+
+	/** Sets up the integrator to be used by the given particle system with the default number of sub-steps.
+	 *  @param s Particle system upon which to perform the integration.
+	 *  @param iterations Number of times the constraints are projected in each sub-step.
+	 *  @throws IllegalArgumentException if the number of iterations is less than 1.
+	 */
+	public PositionBasedIntegrator(ParticleSystem s, int iterations) throws IllegalArgumentException
+	{
+		this(s, DEFAULT_SUB_STEPS, iterations);
+	}
+
+	/** Sets up the integrator to be used by the given particle system.
+	 *  @param s Particle system upon which to perform the integration.
+	 *  @param subSteps Number of sub-steps into which each step is divided.
+	 *  @param iterations Number of times the constraints are projected in each sub-step.
+	 *  @throws IllegalArgumentException if the number of sub-steps or iterations is less than 1.
+	 */
+	public PositionBasedIntegrator(ParticleSystem s, int subSteps, int iterations) throws IllegalArgumentException
+	{
+		super(s);
+		setSubSteps(subSteps);
+		setIterations(iterations);
+		update = new StepUpdate();
+		springArray = new Spring[0];
+		allocateConstraints(16);
+	}
+
+	// ----------------------------------- Methods -------------------------------------
+
+	/** Advances the particles' positions and velocities over the given time step.
+	 *  @param deltaT Time step over which to update the particles.
+	 *  @return The integrator that updates the system.
+	 *  @throws IllegalStateException if a spring is attached to a particle not in the particle system.
+	 */
+	public PositionBasedIntegrator step(float deltaT) throws IllegalStateException
+	{
+		ParticleArrays a = loadArrays();
+
+		int n = a.size;
+		if ((ox == null) || (ox.length < n))
+		{
+			int capacity = Math.max(n, (ox == null) ? 16 : 2*ox.length);
+			ox = new float[capacity];
+			oy = new float[capacity];
+			oz = new float[capacity];
+		}
+
+		// Forces other than the springs are found once and held constant over all sub-steps.
+		applyForcesExceptSprings(a);
+		float h = deltaT/subSteps;
+		buildConstraints(a, h);
+		update.a = a;
+		update.deltaT = h;
+		update.drag = s.getDrag();
+
+		for (int subStep=0; subStep<subSteps; subStep++)
+		{
+			// Move the particles under the other forces, then pull them back towards the springs' rest lengths.
+			update.isPredicting = true;
+			update.isFirstSubStep = (subStep == 0);
+			s.updateArrays(n, update);
+
+			Arrays.fill(lambda, 0, numConstraints, 0);
+			for (int iteration=0; iteration<iterations; iteration++)
+			{
+				projectConstraints(a);
+			}
+
+			update.isPredicting = false;
+			s.updateArrays(n, update);
+			dampConstraints(a, h);
+		}
+		update.a = null;
+
+		// Release references to springs so that removed ones can be garbage collected.
+		Arrays.fill(springArray, 0, numConstraints, null);
+
+		storeArrays(a);
+		return this;
+	}
+
+	/** Sets the number of sub-steps into which each step is divided. The springs are enforced afresh in each
+	 *  sub-step, so this has the greatest effect on how stiff springs appear: the stretch of a stiff spring 
+	 *  network falls faster with more sub-steps than it does with more iterations. The forces other than 
+	 *  springs are only evaluated once per step, so the cost of each sub-step is mainly that of its iterations.
+	 *  @param subSteps Number of sub-steps.
+	 *  @return This integrator with its new number of sub-steps.
+	 *  @throws IllegalArgumentException if the number of sub-steps is less than 1.
+	 */
+	public PositionBasedIntegrator setSubSteps(int subSteps) throws IllegalArgumentException
+	{
+		if (subSteps < 1)
+		{
+			throw new IllegalArgumentException("Argument subSteps is "+subSteps+"; must make at least one sub-step per step.");
+		}
+		this.subSteps = subSteps;
+		return this;
+	}
+
+	/** Reports the number of sub-steps into which each step is divided.
+	 *  @return Number of sub-steps.
+	 */
+	public int getSubSteps()
+	{
+		return subSteps;
+	}
+
+	/** Sets the number of times the constraints are projected in each sub-step. More iterations make stiff
+	 *  springs closer to their rest lengths at the cost of speed, though less effectively than more sub-steps.
+	 *  @param iterations Number of iterations.
+	 *  @return This integrator with its new number of iterations.
+	 *  @throws IllegalArgumentException if the number of iterations is less than 1.
+	 */
+	public PositionBasedIntegrator setIterations(int iterations) throws IllegalArgumentException
+	{
+		if (iterations < 1)
+		{
+			throw new IllegalArgumentException("Argument iterations is "+iterations+"; must project constraints at least once per step.");
+		}
+		this.iterations = iterations;
+		return this;
+	}
+
+	/** Reports the number of times the constraints are projected in each sub-step.
+	 *  @return Number of iterations.
+	 */
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+	// ------------------------------ Package methods ---------------------------------
+
+	/** Reports the number of bytes needed to store the number of iterations and sub-steps of this integrator.
+	 *  @param a Arrays holding the particles of the system being saved.
+	 *  @return Number of bytes written by {@link #writeState(ByteBuffer, ParticleArrays)}.
+	 */
+	@Override
+	int getStateSize(ParticleArrays a)
+	{
+		return 8;
+	}
+
+	/** Writes the number of iterations and sub-steps so that a restored system enforces its constraints as 
+	 *  often as the original.
+	 *  @param out Buffer into which the state is written.
+	 *  @param a Arrays holding the particles of the system being saved.
+	 */
+	@Override
+	void writeState(ByteBuffer out, ParticleArrays a)
+	{
+		out.putInt(iterations).putInt(subSteps);
+	}
+
+	/** Reads the number of iterations and sub-steps previously written by {@link #writeState(ByteBuffer, ParticleArrays)}.
+	 *  Snapshots saved before sub-steps were introduced hold only the number of iterations, which was then
+	 *  applied to a single step.
+	 *  @param in Buffer from which the state is read.
+	 *  @param a Arrays holding the particles of the restored system.
+	 */
+	@Override
+	void readState(ByteBuffer in, ParticleArrays a)
+	{
+		setIterations(in.getInt());
+		setSubSteps(in.hasRemaining() ? in.getInt() : 1);
+	}
+
+	// ------------------------------- Private methods ---------------------------------
+
+	/** Builds a distance constraint for each active spring of the particle system that has at least one free end.
+	 *  @param a Arrays holding the state of the particles.
+	 *  @param deltaT Sub-step over which the particles are advanced between projections.
+	 *  @throws IllegalStateException if a spring is attached to a particle not held in the arrays.
+	 */
+	private void buildConstraints(ParticleArrays a, float deltaT) throws IllegalStateException
+	{
+		Collection<Spring> springs = s.getActiveSprings();
+		springArray = springs.toArray(springArray);
+		int numSprings = springs.size();
+		if (endI.length < numSprings)
+		{
+			allocateConstraints(Math.max(numSprings, 2*endI.length));
+		}
+
+		float dt2 = deltaT*deltaT;
+		numConstraints = 0;
+		for (int k=0; k<numSprings; k++)
+		{
+			Spring spring = springArray[k];
+			if (spring.isOff())
+			{
+				continue;
+			}
+			int i = a.indexOf(spring.getOneEnd());
+			int j = a.indexOf(spring.getTheOtherEnd());
+			if ((i < 0) || (j < 0))
+			{
+				throw new IllegalStateException("Spring is attached to a particle that is not part of the particle system.");
+			}
+			float springCompliance = 1/(spring.strength()*dt2);
+			if ((!a.free[i] && !a.free[j]) || Float.isInfinite(springCompliance))
+			{
+				// Springs too weak to have any effect over this step are ignored.
+				continue;
+			}
+			springArray[numConstraints] = spring;
+			endI[numConstraints] = i;
+			endJ[numConstraints] = j;
+			restLength[numConstraints] = spring.restLength();
+			compliance[numConstraints] = springCompliance;
+			damping[numConstraints] = spring.damping();
+			numConstraints++;
+		}
+		Arrays.fill(springArray, numConstraints, numSprings, null);
+	}
+
+	/** Moves each pair of constrained particles towards the rest length of their constraint. Particles are
+	 *  moved in inverse proportion to their mass and the corrections accumulated over the sub-step are limited
+	 *  by the compliance of each constraint.
+	 *  @param a Arrays holding the state of the particles.
+	 */
+	private void projectConstraints(ParticleArrays a)
+	{
+		float[] x = a.x, y = a.y, z = a.z;
+		for (int c=0; c<numConstraints; c++)
+		{
+			int i = endI[c];
+			int j = endJ[c];
+			float wi = a.free[i] ? 1/a.mass[i] : 0;
+			float wj = a.free[j] ? 1/a.mass[j] : 0;
+
+			float dx = x[i]-x[j];
+			float dy = y[i]-y[j];
+			float dz = z[i]-z[j];
+			float len = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+			if (len == 0)
+			{
+				// No direction in which to separate coincident particles.
+				continue;
+			}
+
+			float dLambda = (restLength[c]-len - compliance[c]*lambda[c])/(wi+wj+compliance[c]);
+			lambda[c] += dLambda;
+			float scale = dLambda/len;
+			dx *= scale;
+			dy *= scale;
+			dz *= scale;
+
+			x[i] += dx*wi;
+			y[i] += dy*wi;
+			z[i] += dz*wi;
+			x[j] -= dx*wj;
+			y[j] -= dy*wj;
+			z[j] -= dz*wj;
+		}
+	}
+
+	/** Reduces the relative velocity along each constraint of the particles at either end in proportion 
+	 *  to the damping of its spring.
+	 *  @param a Arrays holding the state of the particles.
+	 *  @param deltaT Sub-step over which the particles have been advanced.
+	 */
+	private void dampConstraints(ParticleArrays a, float deltaT)
+	{
+		for (int c=0; c<numConstraints; c++)
+		{
+			if (damping[c] == 0)
+			{
+				continue;
+			}
+			int i = endI[c];
+			int j = endJ[c];
+			float wi = a.free[i] ? 1/a.mass[i] : 0;
+			float wj = a.free[j] ? 1/a.mass[j] : 0;
+
+			float dx = a.x[i]-a.x[j];
+			float dy = a.y[i]-a.y[j];
+			float dz = a.z[i]-a.z[j];
+			float len = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+			if (len == 0)
+			{
+				continue;
+			}
+			dx /= len;
+			dy /= len;
+			dz /= len;
+
+			// Remove a proportion of the relative velocity along the constraint, never more than all of it.
+			float relSpeed = (a.vx[i]-a.vx[j])*dx + (a.vy[i]-a.vy[j])*dy + (a.vz[i]-a.vz[j])*dz;
+			float impulse = -relSpeed*Math.min(1, damping[c]*deltaT*(wi+wj))/(wi+wj);
+			dx *= impulse;
+			dy *= impulse;
+			dz *= impulse;
+
+			a.vx[i] += dx*wi;
+			a.vy[i] += dy*wi;
+			a.vz[i] += dz*wi;
+			a.vx[j] -= dx*wj;
+			a.vy[j] -= dy*wj;
+			a.vz[j] -= dz*wj;
+		}
+	}
+
+	/** Resizes the arrays used to hold constraints.
+	 *  @param capacity Number of constraints the arrays should be able to hold.
+	 */
+	private void allocateConstraints(int capacity)
+	{
+		endI = new int[capacity];
+		endJ = new int[capacity];
+		restLength = new float[capacity];
+		compliance = new float[capacity];
+		damping = new float[capacity];
+		lambda = new float[capacity];
+	}
+
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** Update that either moves a range of particles to their predicted positions or derives their velocities
+	 *  from the distance they have moved once the constraints have been projected.
+	 */
+	private class StepUpdate implements ArrayUpdate
+	{
+		ParticleArrays a;			// Arrays holding the state of the particles.
+		float deltaT;				// Sub-step over which to advance the particles.
+		float drag;					// Drag of the particle system.
+		boolean isPredicting;		// Whether to predict positions, or derive velocities from them.
+		boolean isFirstSubStep;		// Whether the drag force has still to be removed from the accumulated forces.
+
+		/** Carries out the current part of the step on the particles in the given range.
+		 *  @param start Index of the first particle to update.
+		 *  @param end Index one beyond the last particle to update.
+		 */
+		@SuppressWarnings("synthetic-access")
+		public void update(int start, int end)
+		{
+			if (isPredicting)
+			{
+				for (int i=start; i<end; i++)
+				{
+					ox[i] = a.x[i];
+					oy[i] = a.y[i];
+					oz[i] = a.z[i];
+					if (a.free[i])
+					{
+						if (isFirstSubStep)
+						{
+							// Drag is treated implicitly so that it cannot reverse velocities over large time steps.
+							a.fx[i] += drag*a.vx[i];
+							a.fy[i] += drag*a.vy[i];
+							a.fz[i] += drag*a.vz[i];
+						}
+						float forceStep = deltaT/a.mass[i];
+						float dragScale = 1/(1 + drag*forceStep);
+						a.vx[i] = (a.vx[i] + a.fx[i]*forceStep)*dragScale;
+						a.vy[i] = (a.vy[i] + a.fy[i]*forceStep)*dragScale;
+						a.vz[i] = (a.vz[i] + a.fz[i]*forceStep)*dragScale;
+						a.x[i]  += a.vx[i]*deltaT;
+						a.y[i]  += a.vy[i]*deltaT;
+						a.z[i]  += a.vz[i]*deltaT;
+					}
+				}
+				return;
+			}
+
+			float invT = 1/deltaT;
+			for (int i=start; i<end; i++)
+			{
+				if (a.free[i])
+				{
+					a.particles[i].age += deltaT;
+					a.vx[i] = (a.x[i]-ox[i])*invT;
+					a.vy[i] = (a.y[i]-oy[i])*invT;
+					a.vz[i] = (a.z[i]-oz[i])*invT;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package org.gicentre.utils.network.traer.physics;
+
+// *****************************************************************************************
+/** Positions of the particles in a system at the end of one tick, and at the end of the tick
+ *  before it, as published by a {@link PhysicsThread}. Drawing code can use either the latest
+ *  positions or interpolate between the two ticks for smooth motion when the display and 
+ *  physics rates differ. A snapshot remains unchanged until its reader next asks the physics 
+ *  thread for the latest snapshot.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class PositionSnapshot
+{
+	// ------------------------------- Object variables -------------------------------
+
+	int size;							// Number of particles in the snapshot.
+	Particle[] particles;				// Particle at each index.
+	float[] x,y,z;						// Positions at the end of the tick.
+	float[] px,py,pz;					// Positions at the end of the previous tick.
+	long tickNumber;					// Number of ticks made before this snapshot was taken, or -1 if empty.
+	long time;							// Time at which the snapshot was published, as given by System.nanoTime().
+	long period;						// Time between ticks in nanoseconds.
+
+	// --------------------------------- Constructor ----------------------------------
+
+	/** Creates an empty snapshot.
+	 */
+	PositionSnapshot()
+	{
+		particles = new Particle[0];
+		x  = new float[0];
+		y  = new float[0];
+		z  = new float[0];
+		px = new float[0];
+		py = new float[0];
+		pz = new float[0];
+		tickNumber = -1;
+	}
+
+	// ----------------------------------- Methods ------------------------------------
+
+	/** Reports the number of particles in this snapshot.
+	 *  @return Number of particles.
+	 */
+	public int getNumParticles()
+	{
+		return size;
+	}
+
+	/** Provides the particle at the given index in this snapshot. Particles are held in the order in 
+	 *  which they are stored in the particle system. The particle's own position may have changed since 
+	 *  the snapshot was taken, so should not be read while the physics thread is running.
+	 *  @param i Index of the particle.
+	 *  @return The particle at the given index.
+	 */
+	public Particle getParticle(int i)
+	{
+		return particles[i];
+	}
+
+	/** Reports the x position of the given particle at the end of the tick.
+	 *  @param i Index of the particle.
+	 *  @return x coordinate.
+	 */
+	public float getX(int i)
+	{
+		return x[i];
+	}
+
+	/** Reports the y position of the given particle at the end of the tick.
+	 *  @param i Index of the particle.
+	 *  @return y coordinate.
+	 */
+	public float getY(int i)
+	{
+		return y[i];
+	}
+
+	/** Reports the z position of the given particle at the end of the tick.
+	 *  @param i Index of the particle.
+	 *  @return z coordinate.
+	 */
+	public float getZ(int i)
+	{
+		return z[i];
+	}
+
+	/** Reports the x position of the given particle interpolated between the previous tick and this one.
+	 *  @param i Index of the particle.
+	 *  @param alpha Proportion of the way from the previous tick to this one, between 0 and 1.
+	 *  @return Interpolated x coordinate.
+	 */
+	public float getX(int i, float alpha)
+	{
+		return px[i] + alpha*(x[i]-px[i]);
+	}
+
+	/** Reports the y position of the given particle interpolated between the previous tick and this one.
+	 *  @param i Index of the particle.
+	 *  @param alpha Proportion of the way from the previous tick to this one, between 0 and 1.
+	 *  @return Interpolated y coordinate.
+	 */
+	public float getY(int i, float alpha)
+	{
+		return py[i] + alpha*(y[i]-py[i]);
+	}
+
+	/** Reports the z position of the given particle interpolated between the previous tick and this one.
+	 *  @param i Index of the particle.
+	 *  @param alpha Proportion of the way from the previous tick to this one, between 0 and 1.
+	 *  @return Interpolated z coordinate.
+	 */
+	public float getZ(int i, float alpha)
+	{
+		return pz[i] + alpha*(z[i]-pz[i]);
+	}
+
+	/** Reports how far to interpolate between the previous tick and this one so that motion appears smooth
+	 *  when drawn now. This is the time since the snapshot was published as a proportion of the time between 
+	 *  ticks, so drawn positions lag the physics by up to one tick.
+	 *  @return Interpolation proportion between 0 and 1.
+	 */
+	public float getAlpha()
+	{
+		if (period <= 0)
+		{
+			return 1;
+		}
+		return Math.max(0, Math.min(1, (System.nanoTime()-time)/(float)period));
+	}
+
+	/** Reports the number of ticks made by the physics thread before this snapshot was taken.
+	 *  @return Tick number, or -1 if no ticks have yet been published.
+	 */
+	public long getTickNumber()
+	{
+		return tickNumber;
+	}
+
+	// ------------------------------- Package methods --------------------------------
+
+	/** Records the positions of the given particles along with the positions they had at the previous tick.
+	 *  @param a Arrays holding the particles' current state.
+	 *  @param last Positions of the particles at the previous tick.
+	 */
+	void record(ParticleArrays a, PositionSnapshot last)
+	{
+		copyPositions(a);
+		for (int i=0; i<size; i++)
+		{
+			if ((i < last.size) && (last.particles[i] == particles[i]))
+			{
+				px[i] = last.x[i];
+				py[i] = last.y[i];
+				pz[i] = last.z[i];
+			}
+			else
+			{
+				// Particles with no previous position at the same index do not move when interpolated.
+				px[i] = x[i];
+				py[i] = y[i];
+				pz[i] = z[i];
+			}
+		}
+	}
+
+	/** Records the current positions of the given particles without updating their previous positions.
+	 *  @param a Arrays holding the particles' current state.
+	 */
+	void copyPositions(ParticleArrays a)
+	{
+		int n = a.size;
+		if (x.length < n)
+		{
+			int capacity = Math.max(n, 2*x.length);
+			particles = new Particle[capacity];
+			x  = new float[capacity];
+			y  = new float[capacity];
+			z  = new float[capacity];
+			px = new float[capacity];
+			py = new float[capacity];
+			pz = new float[capacity];
+		}
+		for (int i=n; i<size; i++)
+		{
+			particles[i] = null;
+		}
+		System.arraycopy(a.particles, 0, particles, 0, n);
+		System.arraycopy(a.x, 0, x, 0, n);
+		System.arraycopy(a.y, 0, y, 0, n);
+		System.arraycopy(a.z, 0, z, 0, n);
+		size = n;
+	}
+}
@@ -1,10 +1,12 @@
 package org.gicentre.utils.network.traer.physics;
 
-import java.util.*;
+import java.util.Map;
 
 //*****************************************************************************************
 /** Class capable of performing Runge Kutta integration. Compared to the Euler integrators,
- *  this one is slower but is more stable.
+ *  this one is slower but is more stable. The intermediate stages are accumulated into
+ *  scratch arrays indexed by particle that are reused between steps, so once the arrays
+ *  have grown to the size of the particle system, a step creates no new objects.
  *  @author Carl Pearson, Jeffrey Traer Bernstein and minor modifications by Jo Wood.
  */
 // *****************************************************************************************
@@ -15,39 +17,78 @@ import java.util.*;
  * Artistic Licence: http://dev.perl.org/licenses/
  */
 
-public class RungeKuttaIntegrator extends Integrator 
+public class RungeKuttaIntegrator extends Integrator
 {
 	// ------------------------------- Object variables --------------------------------
-	
-	private Map<Particle,Vector3D> originalPositions;
-	private Map<Particle,Vector3D> originalVelocities;
-	private Map<Particle,Vector3D> k1Forces;
-	private Map<Particle,Vector3D> k1Velocities;
-	private Map<Particle,Vector3D> k2Forces;
-	private Map<Particle,Vector3D> k2Velocities;
-	private Map<Particle,Vector3D> k3Forces;
-	private Map<Particle,Vector3D> k3Velocities;
-	private Map<Particle,Vector3D> k4Forces;
-	private Map<Particle,Vector3D> k4Velocities;
+
+	private float[] ox,oy,oz;			// Positions at the start of the step.
+	private float[] ovx,ovy,ovz;		// Velocities at the start of the step.
+	private float[] sx,sy,sz;			// Weighted sum of the stage velocities added to the original positions.
+	private float[] svx,svy,svz;		// Weighted sum of the stage accelerations added to the original velocities.
+	private StageUpdate update;			// Update applied to ranges of particles at each stage.
 
 	// --------------------------------- Constructor -----------------------------------
-	
+
 	/** Sets up the integrator to be used by the given particle system.
 	 *  @param s Particle system upon which to perform the integration.
 	 */
-	public RungeKuttaIntegrator(ParticleSystem s) 
-	{ 
+	public RungeKuttaIntegrator(ParticleSystem s)
+	{
 		super(s);
+		update = new StageUpdate();
 	}
 
 	// ----------------------------------- Methods -------------------------------------
-	
-	
-	/** Provides the function capable of performing the integration.
+
+	 /** Performs the incrementing of the particles' positions and velocities over the given time step.
+	  *  @param deltaT Time step over which to update the particles.
+	  *  @return The integrator that updates the system.
+	  */
+	public RungeKuttaIntegrator step(float deltaT)
+	{
+		ParticleArrays a = loadArrays();
+
+		int n = a.size;
+		if ((ox == null) || (ox.length < n))
+		{
+			allocate(Math.max(n, (ox == null) ? 16 : 2*ox.length));
+		}
+
+		update.a = a;
+		update.deltaT = deltaT;
+		update.stage = StageUpdate.START;
+		s.updateArrays(n, update);
+
+		// k1 evaluated at the start, k2 and k3 at the half step and k4 at the full step.
+		applyForces(a);
+		accumulateStage(a, deltaT/6.0f, 6.0f, deltaT, 0.5f*deltaT);
+		applyForces(a);
+		accumulateStage(a, deltaT/3.0f, 3.0f, deltaT, 0.5f*deltaT);
+		applyForces(a);
+		accumulateStage(a, deltaT/3.0f, 3.0f, deltaT, deltaT);
+		applyForces(a);
+		accumulateStage(a, deltaT/6.0f, 6.0f, deltaT, 0);
+
+		// Put them all together and what do you get?
+		update.stage = StageUpdate.FINISH;
+		s.updateArrays(n, update);
+		update.a = null;
+
+		storeArrays(a);
+		return this;
+	}
+
+	// ----------------------------- Deprecated methods --------------------------------
+
+	/** Provides the function that records the force and velocity of each particle at one stage of the
+	 *  integration and then clears its force.
 	 *  @param kForces Forces to be applied to particles during integration.
 	 *  @param kVelocities Velocities of particles.
 	 *  @return The function that performs the integration.
+	 *  @deprecated No longer used by {@link #step(float)}, which holds intermediate stages in reusable arrays.
+	 *              This will be removed in a future release.
 	 */
+	@Deprecated
 	protected static final Function<Particle,?> kFunctor(final Map<Particle, Vector3D> kForces, final Map<Particle,Vector3D> kVelocities) 
 	{
 		return new Function<Particle,Object>()
@@ -64,21 +105,24 @@ public class RungeKuttaIntegrator extends Integrator
 	}
 
 	/** Provides the function that applies the single increment of the particles' positions and velocities.
-	 * @param kForces Forces associated with the particles/
-	 * @param kVelocities Velocities of the particles.
-	 * @param originalPositions The original positions of the particles before integration.
-	 * @param originalVelocities The original velocities of the particles before integration. 
-	 * @param deltaT Time step over which to move the particles. 
-	 * @return The function that increments the particles.
+	 *  @param kForces Forces associated with the particles.
+	 *  @param kVelocities Velocities of the particles.
+	 *  @param originalPositions The original positions of the particles before integration.
+	 *  @param originalVelocities The original velocities of the particles before integration. 
+	 *  @param deltaT Time step over which to move the particles. 
+	 *  @return The function that increments the particles.
+	 *  @deprecated No longer used by {@link #step(float)}, which holds intermediate stages in reusable arrays.
+	 *              This will be removed in a future release.
 	 */
-	protected static final Function<Particle,?>	kApplier(final Map<Particle, Vector3D> kForces, final Map<Particle,	Vector3D> kVelocities, final Map<Particle,Vector3D> originalPositions, final Map<Particle,Vector3D> originalVelocities,	final float deltaT)
+	@Deprecated
+	protected static final Function<Particle,?> kApplier(final Map<Particle, Vector3D> kForces, final Map<Particle,Vector3D> kVelocities, final Map<Particle,Vector3D> originalPositions, final Map<Particle,Vector3D> originalVelocities, final float deltaT)
 	{
 		return new Function<Particle,Object>() 
 		{
 			@Override 
 			public Object apply(Particle p) 
 			{
-				p.position().set(kVelocities.get(p)).multiplyBy(0.5f*deltaT).add(originalPositions.get(p)); 			
+				p.position().set(kVelocities.get(p)).multiplyBy(0.5f*deltaT).add(originalPositions.get(p));
 				p.velocity().set(kForces.get(p)).multiplyBy(0.5f*deltaT/p.mass()).add(originalVelocities.get(p));
 				p.clearForce();
 				return null;
@@ -86,21 +130,24 @@ public class RungeKuttaIntegrator extends Integrator
 		};
 	}
 
-	/** Provides the function that updates the particles in the system.
-	 * @param k1Forces
-	 * @param k1Velocities
-	 * @param k2Forces
-	 * @param k2Velocities
-	 * @param k3Forces
-	 * @param k3Velocities
-	 * @param k4Forces
-	 * @param k4Velocities
-	 * @param originalPositions
-	 * @param originalVelocities
-	 * @param deltaT
-	 * @return Function that updates the particle positions.
+	/** Provides the function that combines the four stages of the integration to update each particle.
+	 *  Overriding this method no longer changes the behaviour of {@link #step(float)}.
+	 *  @param k1Forces Forces on the particles at the first stage.
+	 *  @param k1Velocities Velocities of the particles at the first stage.
+	 *  @param k2Forces Forces on the particles at the second stage.
+	 *  @param k2Velocities Velocities of the particles at the second stage.
+	 *  @param k3Forces Forces on the particles at the third stage.
+	 *  @param k3Velocities Velocities of the particles at the third stage.
+	 *  @param k4Forces Forces on the particles at the fourth stage.
+	 *  @param k4Velocities Velocities of the particles at the fourth stage.
+	 *  @param originalPositions The original positions of the particles before integration.
+	 *  @param originalVelocities The original velocities of the particles before integration.
+	 *  @param deltaT Time step over which to move the particles.
+	 *  @return Function that updates the particle positions.
+	 *  @deprecated No longer used by {@link #step(float)}, which holds intermediate stages in reusable arrays.
+	 *              This will be removed in a future release.
 	 */
-	@SuppressWarnings("hiding")
+	@Deprecated
 	protected Function<Particle,?> updater(final Map<Particle,Vector3D> k1Forces, final Map<Particle,Vector3D> k1Velocities, final Map<Particle,Vector3D> k2Forces, final Map<Particle,Vector3D> k2Velocities, final Map<Particle,Vector3D> k3Forces, final Map<Particle,Vector3D> k3Velocities, final Map<Particle,Vector3D> k4Forces, final Map<Particle,Vector3D> k4Velocities, final Map<Particle,Vector3D> originalPositions, final Map<Particle,Vector3D> originalVelocities, final float deltaT) 
 	{
 		return new Function<Particle,Object>() 
@@ -130,97 +177,145 @@ public class RungeKuttaIntegrator extends Integrator
 		};
 	}
 
-	/** Instantiates the original positions and velocities of the particles. This has the side-effect of 
-	 *  clearing all forces on particles.
+	/** Clears the forces on all free particles in the system. Earlier versions also recorded the original 
+	 *  positions and velocities of the particles here, which {@link #step(float)} now holds in reusable arrays.
+	 *  @deprecated No longer used by {@link #step(float)}. This will be removed in a future release.
 	 */
-	 protected final void allocateParticles() 
-	 {
-		originalPositions = new HashMap<Particle,Vector3D>();
-		originalVelocities = new HashMap<Particle,Vector3D>();
-		for (Particle p : s.getParticles() ) 
+	@Deprecated
+	protected final void allocateParticles() 
+	{
+		for (Particle p : s.getParticles()) 
 		{
 			if (p.isFree()) 
 			{
-				originalPositions.put(p, p.position().copy());
-				originalVelocities.put(p, p.velocity().copy());
 				p.clearForce();
 			}
 		}
 	}
 
-	 /** Performs the incrementing of the particles' positions and velocities over the given time step.
-	  *  @param deltaT Time step over which to update the particles.
-	  *  @return The integrator that updates the system.
-	  */
-	public RungeKuttaIntegrator step(float deltaT)
-	{      
-		allocateParticles();
-			
-		/////////////////////////////////               
-		// make k1
-		s.applyForces(); // apply forces
-
-			
-		// instantiate maps
-		k1Forces = new HashMap<Particle,Vector3D>();
-		k1Velocities = new HashMap<Particle,Vector3D>();
-
-		// side effect fill the builders, and clear forces
-		Function.functor(originalPositions.keySet(), kFunctor(k1Forces,k1Velocities));
-			
-		////////////////                
-		// make k2
-
-		// side effect particle positions/velocities from k1
-		Function.functor(originalPositions.keySet(), kApplier(k1Forces,k1Velocities,originalPositions,originalVelocities,deltaT));
-
-		//apply forces
-		s.applyForces();
-
-		//reset builders
-		k2Forces = new HashMap<Particle,Vector3D>();
-		k2Velocities = new HashMap<Particle,Vector3D>();                
-
-		//side effect fill builders and clear forces
-		Function.functor(originalPositions.keySet(), kFunctor(k2Forces,k2Velocities));
-
-		/////////////////////////////////////////////////////
-		// get k3 values
-
-		// side effect particle positions/velocities from k2
-		Function.functor(originalPositions.keySet(), kApplier(k2Forces,k2Velocities,originalPositions,originalVelocities,deltaT));
-
-		//apply forces
-		s.applyForces();
-		
-		//reset builders
-		k3Forces = new HashMap<Particle,Vector3D>();
-		k3Velocities = new HashMap<Particle,Vector3D>();                
-
-		//side effect fill builders and clear forces
-		Function.functor(originalPositions.keySet(), kFunctor(k3Forces,k3Velocities));
-
-		//////////////////////////////////////////////////
-		// get k4 values
-
-		// side effect particle positions/velocities from k2
-		Function.functor(originalPositions.keySet(), kApplier(k3Forces,k3Velocities,originalPositions,originalVelocities,deltaT*2));
-
-		//apply forces
-		s.applyForces();
-
-		//reset builders
-		k4Forces = new HashMap<Particle,Vector3D>();
-		k4Velocities = new HashMap<Particle,Vector3D>();                
-			
-		// Side effect fill builders and clear forces
-		Function.functor(originalPositions.keySet(), kFunctor(k4Forces,k4Velocities));
-
-		/////////////////////////////////////////////////////////////
-		// put them all together and what do you get?
-
-		Function.functor(originalPositions.keySet(), 
-				         updater(k1Forces, k1Velocities, k2Forces, k2Velocities, k3Forces, k3Velocities, k4Forces, k4Velocities, originalPositions, originalVelocities, deltaT));
-		return this;
+	// ------------------------------- Private methods ---------------------------------
+
+	/** Adds the contribution of one Runge Kutta stage to the weighted sums, then moves the free particles
+	 *  to the position at which the next stage is to be evaluated and clears their forces.
+	 *  @param a Arrays holding the state of the particles.
+	 *  @param velocityWeight Weight applied to the stage velocity in the final position.
+	 *  @param forceDivisor Divisor applied to the time step and mass when weighting the stage force.
+	 *  @param deltaT Full time step.
+	 *  @param nextStep Time from the start of the step at which the next stage is evaluated, or 0 if this is the last stage.
+	 */
+	private void accumulateStage(ParticleArrays a, float velocityWeight, float forceDivisor, float deltaT, float nextStep)
+	{
+		update.stage = StageUpdate.ACCUMULATE;
+		update.velocityWeight = velocityWeight;
+		update.forceDivisor = forceDivisor;
+		update.nextStep = nextStep;
+		s.updateArrays(a.size, update);
+		a.clearForces();
+	}
+
+	/** Resizes the scratch arrays used to hold intermediate stages.
+	 *  @param capacity Number of particles the scratch arrays should be able to hold.
+	 */
+	private void allocate(int capacity)
+	{
+		ox  = new float[capacity];
+		oy  = new float[capacity];
+		oz  = new float[capacity];
+		ovx = new float[capacity];
+		ovy = new float[capacity];
+		ovz = new float[capacity];
+		sx  = new float[capacity];
+		sy  = new float[capacity];
+		sz  = new float[capacity];
+		svx = new float[capacity];
+		svy = new float[capacity];
+		svz = new float[capacity];
+	}
+
+	// -------------------------------- Nested classes -----------------------------------
+
+	/** Update that carries out one part of a Runge Kutta step on a range of particles.
+	 */
+	private class StageUpdate implements ArrayUpdate
+	{
+		static final int START = 0;			// Record the state at the start of the step.
+		static final int ACCUMULATE = 1;	// Add a stage to the weighted sums and move to the next stage.
+		static final int FINISH = 2;		// Set the particles to the weighted sums.
+
+		int stage;							// Which part of the step to carry out.
+		ParticleArrays a;					// Arrays holding the state of the particles.
+		float deltaT;						// Full time step.
+		float velocityWeight;				// Weight applied to the stage velocity in the final position.
+		float forceDivisor;					// Divisor applied to the time step and mass when weighting the stage force.
+		float nextStep;						// Time at which the next stage is evaluated, or 0 if this is the last stage.
+
+		/** Carries out the current part of the step on the particles in the given range.
+		 *  @param start Index of the first particle to update.
+		 *  @param end Index one beyond the last particle to update.
+		 */
+		@SuppressWarnings("synthetic-access")
+		public void update(int start, int end)
+		{
+			switch (stage)
+			{
+				case START:
+					for (int i=start; i<end; i++)
+					{
+						sx[i]  = ox[i]  = a.x[i];
+						sy[i]  = oy[i]  = a.y[i];
+						sz[i]  = oz[i]  = a.z[i];
+						svx[i] = ovx[i] = a.vx[i];
+						svy[i] = ovy[i] = a.vy[i];
+						svz[i] = ovz[i] = a.vz[i];
+					}
+					break;
+
+				case ACCUMULATE:
+					for (int i=start; i<end; i++)
+					{
+						if (a.free[i])
+						{
+							float m = a.mass[i];
+							float vx = a.vx[i], vy = a.vy[i], vz = a.vz[i];
+							float fx = a.fx[i], fy = a.fy[i], fz = a.fz[i];
+
+							sx[i] += vx*velocityWeight;
+							sy[i] += vy*velocityWeight;
+							sz[i] += vz*velocityWeight;
+							float forceWeight = deltaT/(forceDivisor*m);
+							svx[i] += fx*forceWeight;
+							svy[i] += fy*forceWeight;
+							svz[i] += fz*forceWeight;
+
+							if (nextStep > 0)
+							{
+								float forceStep = nextStep/m;
+								a.x[i]  = vx*nextStep + ox[i];
+								a.y[i]  = vy*nextStep + oy[i];
+								a.z[i]  = vz*nextStep + oz[i];
+								a.vx[i] = fx*forceStep + ovx[i];
+								a.vy[i] = fy*forceStep + ovy[i];
+								a.vz[i] = fz*forceStep + ovz[i];
+							}
+						}
+					}
+					break;
+
+				default:
+					for (int i=start; i<end; i++)
+					{
+						if (a.free[i])
+						{
+							a.particles[i].age += deltaT;
+							a.x[i]  = sx[i];
+							a.y[i]  = sy[i];
+							a.z[i]  = sz[i];
+							a.vx[i] = svx[i];
+							a.vy[i] = svy[i];
+							a.vz[i] = svz[i];
+						}
+					}
+			}
+		}
 	}
-}
\ No newline at end of file
+}
@@ -1,7 +1,5 @@
 package org.gicentre.utils.network.traer.physics;
 
-import java.util.*;
-
 //*****************************************************************************************
 /** Class capable of performing a settling Runge Kutta integration. Compared to the 
  *  Euler integrators this one is slower but is more stable. This version can be forced to 
@@ -45,57 +43,37 @@ public class SettlingRungeKuttaIntegrator extends RungeKuttaIntegrator
 		this(s, DEFAULT_SETTLING_AGE);
 	}
 
-	/** Provides the function that updates the particles in the system.
-	 * @param k1Forces
-	 * @param k1Velocities
-	 * @param k2Forces
-	 * @param k2Velocities
-	 * @param k3Forces
-	 * @param k3Velocities
-	 * @param k4Forces
-	 * @param k4Velocities
-	 * @param originalPositions
-	 * @param originalVelocities
-	 * @param deltaT
-	 * @return Function that updates the particle positions.
+	// ----------------------------------- Methods -------------------------------------
+	
+	/** Performs the incrementing of the particles' positions and velocities over the given time step,
+	 *  then fixes any particle whose velocity has remained negligible for longer than the settling age.
+	 *  @param deltaT Time step over which to update the particles.
+	 *  @return The integrator that updates the system.
 	 */
-	@Override 
-	protected Function<Particle,?> updater(final Map<Particle,Vector3D> k1Forces, final Map<Particle,Vector3D> k1Velocities, final Map<Particle,Vector3D> k2Forces, final Map<Particle,Vector3D> k2Velocities, final Map<Particle,Vector3D> k3Forces, final Map<Particle,Vector3D> k3Velocities, final Map<Particle,Vector3D> k4Forces, final Map<Particle,Vector3D> k4Velocities, final Map<Particle,Vector3D> originalPositions, final Map<Particle,Vector3D> originalVelocities,	final float deltaT) 
+	@Override
+	public SettlingRungeKuttaIntegrator step(float deltaT)
 	{
-		final Function<Particle,?> superUpdater = super.updater(k1Forces, 
-																k1Velocities,
-																k2Forces,
-																k2Velocities,
-																k3Forces,
-																k3Velocities,
-																k4Forces,
-																k4Velocities,
-																originalPositions,
-																originalVelocities,
-																deltaT);
-
-		return new Function<Particle,Object>() 
+		super.step(deltaT);
+		
+		for (Particle p : s.getParticles())
 		{
-			@SuppressWarnings("synthetic-access")
-			@Override public Object apply(Particle from) 
+			if (p.isFree())
 			{
-				superUpdater.apply(from);
-
-				if (from.velocity().length()<epsilon)
+				if (p.velocity().length()<epsilon)
 				{
-					from.age+=1;
+					p.age+=1;
 				} 
 				else 
 				{
-					from.age=0;
+					p.age=0;
 				}
 
-				if (from.age > settlingAge) 
+				if (p.age > settlingAge) 
 				{
-					from.makeFixed();
+					p.makeFixed();
 				}
-				return null;
 			}
-		};
+		}
+		return this;
 	}
-}
\ No newline at end of file
+}
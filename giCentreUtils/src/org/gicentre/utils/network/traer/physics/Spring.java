@@ -77,6 +77,7 @@ public class Spring extends TwoBodyForce
 			throw new IllegalArgumentException("Rest length l is negative; spring ideal length must be positive.");
 		}
 		this.l = Math.max(Float.MIN_VALUE, l);
+		numChanges++;
 		return this;
 	}
 
@@ -101,6 +102,7 @@ public class Spring extends TwoBodyForce
 			throw new IllegalArgumentException("Spring strength ks is negative; spring strength must be positive.");
 		}
 		this.ks = Math.max(Float.MIN_VALUE,ks); 
+		numChanges++;
 		return this;
 	}
 	
@@ -123,7 +125,9 @@ public class Spring extends TwoBodyForce
 		{
 			throw new IllegalArgumentException("Spring damping is < 0; damping constant must be positive.");
 		}
-		this.d = d; return this;
+		this.d = d; 
+		numChanges++;
+		return this;
 	}
 
 	/** Calculates the spring forces on each of the particles at either end of the spring.
@@ -148,4 +152,78 @@ public class Spring extends TwoBodyForce
 		
 		return equalAndOpposite(springForce); 	   // Apply the springForce to oneEnd, and -springForce to theOtherEnd.
 	}
+
+	/** Applies this spring to particles held in primitive array storage. The calculation is identical
+	 *  to that of {@link #forcePair()} but reads and writes the arrays directly without creating any
+	 *  intermediate vectors.
+	 *  @param a Array storage holding both end particles.
+	 *  @param fx Array into which the x component of the force on each particle is accumulated.
+	 *  @param fy Array into which the y component of the force on each particle is accumulated.
+	 *  @param fz Array into which the z component of the force on each particle is accumulated.
+	 *  @throws IllegalStateException if either end particle is not held in the array storage.
+	 */
+	final void applyArrays(ParticleArrays a, float[] fx, float[] fy, float[] fz) throws IllegalStateException
+	{
+		if (isOff())
+		{
+			return;
+		}
+		int i = a.indexOf(getOneEnd());
+		int j = a.indexOf(getTheOtherEnd());
+		if ((i < 0) || (j < 0))
+		{
+			throw new IllegalStateException("Spring is attached to a particle that is not part of the particle system.");
+		}
+		boolean isFreeI = a.free[i];
+		boolean isFreeJ = a.free[j];
+		if (!isFreeI && !isFreeJ)
+		{
+			return;
+		}
+
+		// Spring force scaled by the difference between the current and ideal lengths.
+		float sx = a.x[i]-a.x[j];
+		float sy = a.y[i]-a.y[j];
+		float sz = a.z[i]-a.z[j];
+		float len = (float)Math.sqrt(sx*sx + sy*sy + sz*sz);
+		if (len == 0)
+		{
+			sx = 0;
+			sy = 0;
+			sz = 0;
+		}
+		else
+		{
+			float scale = -(len-l)/len;
+			sx = sx*scale*ks;
+			sy = sy*scale*ks;
+			sz = sz*scale*ks;
+		}
+
+		// Damping force from the relative velocity projected in the direction of the spring.
+		float springLen = (float)Math.sqrt(sx*sx + sy*sy + sz*sz);
+		if (springLen != 0)
+		{
+			float dvx = a.vx[i]-a.vx[j];
+			float dvy = a.vy[i]-a.vy[j];
+			float dvz = a.vz[i]-a.vz[j];
+			float scale = ((sx*dvx + sy*dvy + sz*dvz)/springLen)/springLen;
+			sx += sx*scale*-d;
+			sy += sy*scale*-d;
+			sz += sz*scale*-d;
+		}
+
+		if (isFreeI)
+		{
+			fx[i] += sx;
+			fy[i] += sy;
+			fz[i] += sz;
+		}
+		if (isFreeJ)
+		{
+			fx[j] -= sx;
+			fy[j] -= sy;
+			fz[j] -= sz;
+		}
+	}
 }
@@ -0,0 +1,453 @@
+package org.gicentre.utils.network.traer.physics;
+
+import java.util.Arrays;
+
+// *****************************************************************************************
+/** Holds a large number of springs in a single force. Rather than creating a {@link Spring}
+ *  object for each spring, the end particles, rest lengths, strengths and damping constants
+ *  are stored in arrays and all springs are applied in a single loop that creates no new 
+ *  objects. The force on each spring is identical to that of the equivalent {@link Spring}.
+ *  Springs are identified by their position in the set, which follows the order in which 
+ *  they were added; removing a spring moves those after it down by one place. A spring set
+ *  is added to a particle system with {@link ParticleSystem#addCustomForce(AbstractForce)}.
+ *  Where the particle system uses array storage, the springs act directly on the arrays.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class SpringSet extends TargetedForce
+{
+	// ------------------------------- Object variables --------------------------------
+
+	private int size;						// Number of springs in the set.
+	private Particle[] oneEnd;				// Particle at one end of each spring.
+	private Particle[] theOtherEnd;			// Particle at the other end of each spring.
+	private float[] restLength;				// Ideal length of each spring; always > 0.
+	private float[] strength;				// Spring constant of each spring; always > 0.
+	private float[] damping;				// Damping constant of each spring; always >= 0.
+	private float forceX,forceY,forceZ;		// Force on one end of the most recently calculated spring.
+
+	// --------------------------------- Constructor -----------------------------------
+
+	/** Creates an empty set of springs.
+	 */
+	public SpringSet()
+	{
+		super();
+		allocate(16);
+	}
+
+	// ----------------------------------- Methods -------------------------------------
+
+	/** Adds a spring between the given particles with the given strength, damping and rest length. 
+	 *  This is equivalent to {@link ParticleSystem#makeSpring(Particle, Particle, float, float, float)}.
+	 *  @param a First particle to be joined with the spring.
+	 *  @param b Second particle to be joined with the spring.
+	 *  @param ks Strength of the spring.
+	 *  @param d Damping constant of the spring.
+	 *  @param l Rest length of the spring.
+	 *  @return Position of the new spring in the set, or -1 if particles a and b are identical.
+	 *  @throws NullPointerException if either of the particles is null.
+	 *  @throws IllegalArgumentException if the strength, damping or rest length is negative.
+	 */
+	public int add(Particle a, Particle b, float ks, float d, float l) throws NullPointerException, IllegalArgumentException
+	{
+		if ((a == null) || (b == null))
+		{
+			throw new NullPointerException("Cannot add a spring to a null particle.");
+		}
+		if (a.equals(b))
+		{
+			return -1;
+		}
+		checkStrength(ks);
+		checkDamping(d);
+		checkRestLength(l);
+
+		if (size == oneEnd.length)
+		{
+			allocate(2*size);
+		}
+		oneEnd[size] = a;
+		theOtherEnd[size] = b;
+		strength[size] = Math.max(Float.MIN_VALUE, ks);
+		damping[size] = d;
+		restLength[size] = Math.max(Float.MIN_VALUE, l);
+		return size++;
+	}
+
+	/** Removes the spring at the given position in the set. Springs after it move down by one place.
+	 *  @param i Position of the spring to remove.
+	 *  @return This spring set with the spring removed.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 */
+	public SpringSet remove(int i) throws IndexOutOfBoundsException
+	{
+		checkIndex(i);
+		int numMoved = size-i-1;
+		System.arraycopy(oneEnd, i+1, oneEnd, i, numMoved);
+		System.arraycopy(theOtherEnd, i+1, theOtherEnd, i, numMoved);
+		System.arraycopy(strength, i+1, strength, i, numMoved);
+		System.arraycopy(damping, i+1, damping, i, numMoved);
+		System.arraycopy(restLength, i+1, restLength, i, numMoved);
+		size--;
+		oneEnd[size] = null;
+		theOtherEnd[size] = null;
+		return this;
+	}
+
+	/** Removes all springs from the set.
+	 *  @return This empty spring set.
+	 */
+	public SpringSet clear()
+	{
+		Arrays.fill(oneEnd, 0, size, null);
+		Arrays.fill(theOtherEnd, 0, size, null);
+		size = 0;
+		return this;
+	}
+
+	/** Finds the first spring joining the two given particles in either direction.
+	 *  @param a Particle at one end of the spring.
+	 *  @param b Particle at the other end of the spring.
+	 *  @return Position of the spring in the set, or -1 if the particles are not joined.
+	 */
+	public int indexOf(Particle a, Particle b)
+	{
+		for (int i=0; i<size; i++)
+		{
+			if (((oneEnd[i] == a) && (theOtherEnd[i] == b)) || ((oneEnd[i] == b) && (theOtherEnd[i] == a)))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** Reports the number of springs in the set.
+	 *  @return Number of springs.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/** Reports the particle at one end of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @return Particle at one end of the spring.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 */
+	public Particle getOneEnd(int i) throws IndexOutOfBoundsException
+	{
+		checkIndex(i);
+		return oneEnd[i];
+	}
+
+	/** Reports the particle at the other end of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @return Particle at the other end of the spring.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 */
+	public Particle getTheOtherEnd(int i) throws IndexOutOfBoundsException
+	{
+		checkIndex(i);
+		return theOtherEnd[i];
+	}
+
+	/** Reports the current length of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @return Distance between the particles at either end of the spring.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 */
+	public float currentLength(int i) throws IndexOutOfBoundsException
+	{
+		checkIndex(i);
+		return oneEnd[i].position().distanceTo(theOtherEnd[i].position());
+	}
+
+	/** Reports the ideal length of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @return Rest length of the spring.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 */
+	public float restLength(int i) throws IndexOutOfBoundsException
+	{
+		checkIndex(i);
+		return restLength[i];
+	}
+
+	/** Sets the ideal length of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @param l New rest length; must not be negative.
+	 *  @return This spring set with the new rest length.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 *  @throws IllegalArgumentException if the rest length is negative.
+	 */
+	public SpringSet setRestLength(int i, float l) throws IndexOutOfBoundsException, IllegalArgumentException
+	{
+		checkIndex(i);
+		checkRestLength(l);
+		restLength[i] = Math.max(Float.MIN_VALUE, l);
+		return this;
+	}
+
+	/** Reports the spring constant of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @return Strength of the spring.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 */
+	public float strength(int i) throws IndexOutOfBoundsException
+	{
+		checkIndex(i);
+		return strength[i];
+	}
+
+	/** Sets the spring constant of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @param ks New strength; must not be negative.
+	 *  @return This spring set with the new strength.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 *  @throws IllegalArgumentException if the strength is negative.
+	 */
+	public SpringSet setStrength(int i, float ks) throws IndexOutOfBoundsException, IllegalArgumentException
+	{
+		checkIndex(i);
+		checkStrength(ks);
+		strength[i] = Math.max(Float.MIN_VALUE, ks);
+		return this;
+	}
+
+	/** Reports the damping constant of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @return Damping constant of the spring.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 */
+	public float damping(int i) throws IndexOutOfBoundsException
+	{
+		checkIndex(i);
+		return damping[i];
+	}
+
+	/** Sets the damping constant of the given spring.
+	 *  @param i Position of the spring in the set.
+	 *  @param d New damping constant. Must not be negative but can be 0 for no damping.
+	 *  @return This spring set with the new damping constant.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 *  @throws IllegalArgumentException if the damping constant is negative.
+	 */
+	public SpringSet setDamping(int i, float d) throws IndexOutOfBoundsException, IllegalArgumentException
+	{
+		checkIndex(i);
+		checkDamping(d);
+		damping[i] = d;
+		return this;
+	}
+
+	/** Applies all springs in the set to the particles at their ends.
+	 *  @return This spring set.
+	 */
+	public SpringSet apply()
+	{
+		if (isOff())
+		{
+			return this;
+		}
+		for (int k=0; k<size; k++)
+		{
+			Particle p = oneEnd[k];
+			Particle q = theOtherEnd[k];
+			boolean isFreeP = !p.isFixed;
+			boolean isFreeQ = !q.isFixed;
+			if (isFreeP || isFreeQ)
+			{
+				Vector3D pPos = p.position, qPos = q.position;
+				Vector3D pVel = p.velocity, qVel = q.velocity;
+				calcForce(k, pPos.getX()-qPos.getX(), pPos.getY()-qPos.getY(), pPos.getZ()-qPos.getZ(),
+							 pVel.getX()-qVel.getX(), pVel.getY()-qVel.getY(), pVel.getZ()-qVel.getZ());
+				if (isFreeP)
+				{
+					p.getForce().add(forceX, forceY, forceZ);
+				}
+				if (isFreeQ)
+				{
+					q.getForce().add(-forceX, -forceY, -forceZ);
+				}
+			}
+		}
+		return this;
+	}
+
+	// -------------------------------- Package methods ---------------------------------
+
+	/** Reports that this spring set can be applied directly to particles held in array storage.
+	 *  @return True.
+	 */
+	@Override
+	boolean isArrayForce()
+	{
+		return true;
+	}
+
+	/** Applies all springs in the set to particles held in array storage.
+	 *  @param a Array storage holding the end particles of all springs.
+	 *  @throws IllegalStateException if an end particle is not held in the array storage.
+	 */
+	@Override
+	void applyToArrays(ParticleArrays a) throws IllegalStateException
+	{
+		if (isOff())
+		{
+			return;
+		}
+		float[] x = a.x, y = a.y, z = a.z;
+		float[] vx = a.vx, vy = a.vy, vz = a.vz;
+		float[] fx = a.fx, fy = a.fy, fz = a.fz;
+		boolean[] free = a.free;
+		for (int k=0; k<size; k++)
+		{
+			int i = a.indexOf(oneEnd[k]);
+			int j = a.indexOf(theOtherEnd[k]);
+			if ((i < 0) || (j < 0))
+			{
+				throw new IllegalStateException("Spring "+k+" is attached to a particle that is not part of the particle system.");
+			}
+			if (free[i] || free[j])
+			{
+				calcForce(k, x[i]-x[j], y[i]-y[j], z[i]-z[j], vx[i]-vx[j], vy[i]-vy[j], vz[i]-vz[j]);
+				if (free[i])
+				{
+					fx[i] += forceX;
+					fy[i] += forceY;
+					fz[i] += forceZ;
+				}
+				if (free[j])
+				{
+					fx[j] -= forceX;
+					fy[j] -= forceY;
+					fz[j] -= forceZ;
+				}
+			}
+		}
+	}
+
+	// -------------------------------- Private methods ---------------------------------
+
+	/** Calculates the force on one end of the given spring, storing the result in forceX, forceY and forceZ.
+	 *  The calculation is identical to that of {@link Spring#forcePair()}.
+	 *  @param k Position of the spring in the set.
+	 *  @param sx x component of the separation of the spring's ends.
+	 *  @param sy y component of the separation of the spring's ends.
+	 *  @param sz z component of the separation of the spring's ends.
+	 *  @param dvx x component of the relative velocity of the spring's ends.
+	 *  @param dvy y component of the relative velocity of the spring's ends.
+	 *  @param dvz z component of the relative velocity of the spring's ends.
+	 */
+	private void calcForce(int k, float sx, float sy, float sz, float dvx, float dvy, float dvz)
+	{
+		// Spring force scaled by the difference between the current and ideal lengths.
+		float len = (float)Math.sqrt(sx*sx + sy*sy + sz*sz);
+		if (len == 0)
+		{
+			sx = 0;
+			sy = 0;
+			sz = 0;
+		}
+		else
+		{
+			float scale = -(len-restLength[k])/len;
+			float ks = strength[k];
+			sx = sx*scale*ks;
+			sy = sy*scale*ks;
+			sz = sz*scale*ks;
+		}
+
+		// Damping force from the relative velocity projected in the direction of the spring.
+		float springLen = (float)Math.sqrt(sx*sx + sy*sy + sz*sz);
+		if (springLen != 0)
+		{
+			float scale = ((sx*dvx + sy*dvy + sz*dvz)/springLen)/springLen;
+			float d = damping[k];
+			sx += sx*scale*-d;
+			sy += sy*scale*-d;
+			sz += sz*scale*-d;
+		}
+		forceX = sx;
+		forceY = sy;
+		forceZ = sz;
+	}
+
+	/** Checks that the given position refers to a spring in this set.
+	 *  @param i Position to check.
+	 *  @throws IndexOutOfBoundsException if there is no spring at the given position.
+	 */
+	private void checkIndex(int i) throws IndexOutOfBoundsException
+	{
+		if ((i < 0) || (i >= size))
+		{
+			throw new IndexOutOfBoundsException("Spring index "+i+" is outside the range 0-"+(size-1)+".");
+		}
+	}
+
+	/** Checks that the given spring strength is valid.
+	 *  @param ks Strength to check.
+	 *  @throws IllegalArgumentException if the strength is negative.
+	 */
+	private static void checkStrength(float ks) throws IllegalArgumentException
+	{
+		if (ks < 0)
+		{
+			throw new IllegalArgumentException("Spring strength ks is negative; spring strength must be positive.");
+		}
+	}
+
+	/** Checks that the given damping constant is valid.
+	 *  @param d Damping constant to check.
+	 *  @throws IllegalArgumentException if the damping constant is negative.
+	 */
+	private static void checkDamping(float d) throws IllegalArgumentException
+	{
+		if (d < 0)
+		{
+			throw new IllegalArgumentException("Spring damping is < 0; damping constant must be positive.");
+		}
+	}
+
+	/** Checks that the given rest length is valid.
+	 *  @param l Rest length to check.
+	 *  @throws IllegalArgumentException if the rest length is negative.
+	 */
+	private static void checkRestLength(float l) throws IllegalArgumentException
+	{
+		if (l < 0)
+		{
+			throw new IllegalArgumentException("Rest length l is negative; spring ideal length must be positive.");
+		}
+	}
+
+	/** Resizes the arrays holding the springs, retaining those already stored.
+	 *  @param capacity Number of springs the arrays should be able to hold.
+	 */
+	private void allocate(int capacity)
+	{
+		oneEnd = (oneEnd == null) ? new Particle[capacity] : Arrays.copyOf(oneEnd, capacity);
+		theOtherEnd = (theOtherEnd == null) ? new Particle[capacity] : Arrays.copyOf(theOtherEnd, capacity);
+		strength = (strength == null) ? new float[capacity] : Arrays.copyOf(strength, capacity);
+		damping = (damping == null) ? new float[capacity] : Arrays.copyOf(damping, capacity);
+		restLength = (restLength == null) ? new float[capacity] : Arrays.copyOf(restLength, capacity);
+	}
+}
@@ -0,0 +1,186 @@
+package org.gicentre.utils.network.traer.physics;
+
+// *****************************************************************************************
+/** Timings and telemetry recorded during a single tick of a particle system. Times are
+ *  accumulated over all the force evaluations made by the integrator during the tick.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class TickProfile
+{
+	// ------------------------------- Object variables -------------------------------
+
+	private long tickNumber;			// Number of profiled ticks before this one.
+	private long[] phaseTimes;			// Time in nanoseconds spent in each phase.
+	private long tickTime;				// Total time of the tick in nanoseconds.
+	private float kineticEnergy;		// Total kinetic energy of the free particles at the end of the tick.
+	private float maxSpeed;				// Largest speed of any free particle at the end of the tick.
+	private int numFree, numFixed;		// Number of free and fixed particles at the end of the tick.
+
+	// --------------------------------- Constructors ---------------------------------
+
+	/** Creates an empty profile.
+	 */
+	TickProfile()
+	{
+		phaseTimes = new long[TickProfiler.PHASE.values().length];
+	}
+
+	/** Creates a copy of the given profile.
+	 *  @param profile Profile to copy.
+	 */
+	public TickProfile(TickProfile profile)
+	{
+		tickNumber = profile.tickNumber;
+		phaseTimes = profile.phaseTimes.clone();
+		tickTime = profile.tickTime;
+		kineticEnergy = profile.kineticEnergy;
+		maxSpeed = profile.maxSpeed;
+		numFree = profile.numFree;
+		numFixed = profile.numFixed;
+	}
+
+	// ----------------------------------- Methods ------------------------------------
+
+	/** Reports the number of ticks profiled before this one.
+	 *  @return Position of this tick in the sequence of profiled ticks, starting at 0.
+	 */
+	public long getTickNumber()
+	{
+		return tickNumber;
+	}
+
+	/** Reports the time spent in the given phase of the tick.
+	 *  @param phase Phase of the tick to report.
+	 *  @return Time in nanoseconds.
+	 */
+	public long getTime(TickProfiler.PHASE phase)
+	{
+		return phaseTimes[phase.ordinal()];
+	}
+
+	/** Reports the total time taken by the tick.
+	 *  @return Time in nanoseconds.
+	 */
+	public long getTickTime()
+	{
+		return tickTime;
+	}
+
+	/** Reports the total kinetic energy of the free particles at the end of the tick.
+	 *  @return Kinetic energy.
+	 */
+	public float getKineticEnergy()
+	{
+		return kineticEnergy;
+	}
+
+	/** Reports the largest speed of any free particle at the end of the tick.
+	 *  @return Maximum speed.
+	 */
+	public float getMaxSpeed()
+	{
+		return maxSpeed;
+	}
+
+	/** Reports the number of free particles at the end of the tick.
+	 *  @return Number of free particles.
+	 */
+	public int getNumFree()
+	{
+		return numFree;
+	}
+
+	/** Reports the number of fixed particles at the end of the tick.
+	 *  @return Number of fixed particles.
+	 */
+	public int getNumFixed()
+	{
+		return numFixed;
+	}
+
+	/** Provides a textual summary of this profile.
+	 *  @return Text describing the timings and telemetry of the tick.
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuffer text = new StringBuffer("Tick "+tickNumber+": "+tickTime+"ns (");
+		for (TickProfiler.PHASE phase : TickProfiler.PHASE.values())
+		{
+			text.append(phase.name().toLowerCase()+" "+phaseTimes[phase.ordinal()]+"ns");
+			text.append(phase.ordinal() < phaseTimes.length-1 ? ", " : ") ");
+		}
+		text.append("KE "+kineticEnergy+", max speed "+maxSpeed+", "+numFree+" free, "+numFixed+" fixed");
+		return text.toString();
+	}
+
+	// ------------------------------- Package methods --------------------------------
+
+	/** Clears the times recorded in this profile ready for a new tick.
+	 *  @param tickNumber Number of profiled ticks before this one.
+	 */
+	void start(long tickNumber)
+	{
+		this.tickNumber = tickNumber;
+		for (int i=0; i<phaseTimes.length; i++)
+		{
+			phaseTimes[i] = 0;
+		}
+	}
+
+	/** Adds the given time to the given phase.
+	 *  @param phase Ordinal of the phase.
+	 *  @param time Time in nanoseconds.
+	 */
+	void addTime(int phase, long time)
+	{
+		phaseTimes[phase] += time;
+	}
+
+	/** Completes this profile by recording the total time and the state of the given particles.
+	 *  @param tickTime Total time of the tick in nanoseconds.
+	 *  @param particles Particles in the system at the end of the tick.
+	 */
+	void finish(long tickTime, Iterable<Particle> particles)
+	{
+		this.tickTime = tickTime;
+
+		float energy = 0, maxSpeedSq = 0;
+		numFree = 0;
+		numFixed = 0;
+		for (Particle p : particles)
+		{
+			if (p.isFixed)
+			{
+				numFixed++;
+			}
+			else
+			{
+				Vector3D v = p.velocity;
+				float speedSq = v.getX()*v.getX() + v.getY()*v.getY() + v.getZ()*v.getZ();
+				energy += 0.5f*p.mass()*speedSq;
+				maxSpeedSq = Math.max(maxSpeedSq, speedSq);
+				numFree++;
+			}
+		}
+		kineticEnergy = energy;
+		maxSpeed = (float)Math.sqrt(maxSpeedSq);
+	}
+}
@@ -0,0 +1,31 @@
+package org.gicentre.utils.network.traer.physics;
+
+//******************************************************************************************
+/** Interface for objects that need to respond to each profiled tick of a particle system.
+ *  @author giCentre, City University London.
+ *  @version 4.2, 17th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of giCentre utilities library. gicentre.utils is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * gicentre.utils is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public interface TickProfileListener
+{
+	/** Method that is called at the end of each profiled tick. The profile is reused once it drops out 
+	 *  of the profiler's rolling window, so should be copied if it is to be kept.
+	 *  @param profile Timings and telemetry recorded during the tick.
+	 */
+	public void tickProfiled(TickProfile profile);
+}
@@ -66,6 +66,8 @@ public class LikertChart
     private float interp;
     
     private float animSpeed;                // Animation speed (1/numFrames to complete)
+    private long animDurationNanos;         // Time to complete a transition, or 0 if timed by frames.
+    private long lastAnimNanos;             // Time at which animation was last advanced.
     private float textSize;                 // Size of text or <0 if calculated automatically.
     private float textPadding;              // Extra text padding between title and chart.
 
@@ -139,6 +141,8 @@ public class LikertChart
         order = 0;
         interp = 1;
         animSpeed = 1f/25;
+        animDurationNanos = 0;
+        lastAnimNanos = System.nanoTime();
         textSize = -1;
         textPadding = 0;
         
@@ -214,6 +218,7 @@ public class LikertChart
     public void draw(PApplet parent, Rectangle2D bounds, PFont font)
     {
         this.lastBounds = bounds;
+        float animStep = getAnimationStep();
     
         parent.pushStyle();     // Preserve any style settings in applet.
         parent.strokeWeight(0.2f); 
@@ -258,7 +263,7 @@ public class LikertChart
         
         if (interp < 1)
         {
-            interp += animSpeed;
+            interp += animStep;
             
             if (chart2 != null)
             {
@@ -371,7 +376,7 @@ public class LikertChart
         
         if (animateToBars)
         {
-            heightScale += animSpeed;
+            heightScale += animStep;
             if (heightScale >=1)
             {
                 heightScale = 1;
@@ -380,7 +385,7 @@ public class LikertChart
         }
         else if (animateFromBars)
         {
-            heightScale -= animSpeed;
+            heightScale -= animStep;
             if (heightScale <= 0)
             {
                 heightScale = 0;
@@ -813,6 +818,7 @@ public class LikertChart
     {
         this.animateToBars = true;
         this.animateFromBars = false;
+        lastAnimNanos = System.nanoTime();
     }
     
     /** Triggers an animation away from a histogram representation to the summary state.
@@ -821,6 +827,7 @@ public class LikertChart
     {
         this.animateFromBars = true;
         this.animateToBars = false;
+        lastAnimNanos = System.nanoTime();
     }
     
     /** Provides an animated transition to the given set of values.
@@ -834,6 +841,7 @@ public class LikertChart
         resetTarget();
         this.targetFrequencies = newFrequencies;
         interp =0;  // Signals that a transition will be required.
+        lastAnimNanos = System.nanoTime();
         
         // Find the range of values in the distribution.
         for (int i=0; i<numBars; i++)
@@ -967,11 +975,14 @@ public class LikertChart
         this.order = order;
     }
     
-    /** Sets the animation speed for all transitions (e.g. animation to new data).
+    /** Sets the animation speed for all transitions (e.g. animation to new data). Transitions will 
+     *  be timed by the number of frames drawn, replacing any duration set with 
+     *  <code>setAnimationDuration()</code>.
      *  @param numFrames Number of frames to complete a transition.
      */
     public void setAnimationSpeed(float numFrames)
     {
+        this.animDurationNanos = 0;
         if (numFrames <=0)
         {
             this.animSpeed = 1;
@@ -990,6 +1001,25 @@ public class LikertChart
         return (1/animSpeed);
     }
     
+    /** Sets the time taken for all transitions (e.g. animation to new data). Unlike 
+     *  <code>setAnimationSpeed()</code>, transitions last the same time regardless of the frame rate, so 
+     *  they are not slowed when frames are dropped or only drawn on demand.
+     *  @param durationMillis Time to complete a transition in milliseconds, or 0 or less to time 
+     *                        transitions by the number of frames set with <code>setAnimationSpeed()</code>.
+     */
+    public void setAnimationDuration(float durationMillis)
+    {
+        this.animDurationNanos = Math.max(0, (long)(durationMillis*1000000.0));
+    }
+    
+    /** Reports the time taken for all transitions (e.g. animation to new data).
+     *  @return Time to complete a transition in milliseconds, or 0 if transitions are timed by frames.
+     */
+    public float getAnimationDuration()
+    {
+        return animDurationNanos/1000000f;
+    }
+    
     /** Sets the size of the title text in pixels or -1 if text size is to be calculated automatically.
      *  @param size Title text size in pixels.
      */
@@ -1045,6 +1075,24 @@ public class LikertChart
         targetConsensus = 0;
     }
     
+    /** Reports the proportion of a transition to complete in the frame about to be drawn. This is either
+     *  a fixed proportion per frame or, if an animation duration has been set, the proportion of that 
+     *  duration that has passed since the last frame was drawn or the transition was triggered.
+     *  @return Proportion of a transition to complete in this frame.
+     */
+    private float getAnimationStep()
+    {
+        long now = System.nanoTime();
+        long elapsedNanos = now-lastAnimNanos;
+        lastAnimNanos = now;
+        
+        if (animDurationNanos <= 0)
+        {
+            return animSpeed;
+        }
+        return Math.min(1, elapsedNanos/(float)animDurationNanos);
+    }
+    
     // --------------------------- Static sorting classes --------------------------
     
     /** Provides a custom comparator that can be used for sorting Likert charts in the